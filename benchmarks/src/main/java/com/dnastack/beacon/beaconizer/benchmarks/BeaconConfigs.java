@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.benchmarks;
+
+import com.dnastack.beacon.beaconizer.dao.impl.BeaconizerDaoImpl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Writes synthetic beacon definitions to disk, in each of the layouts BeaconizerDaoImpl can read
+ */
+public class BeaconConfigs {
+
+    public static final int SHARD_SIZE = 250;
+
+    public enum Layout {
+        /**
+         * All definitions in a single beacons.json file
+         */
+        FILE,
+        /**
+         * One file per definition
+         */
+        DIRECTORY,
+        /**
+         * Files of {@value #SHARD_SIZE} definitions each
+         */
+        SHARDS
+    }
+
+    private BeaconConfigs() {
+    }
+
+    /**
+     * Write the definitions under the passed directory
+     *
+     * @param root   directory to write to
+     * @param layout how to split the definitions into files
+     * @param count  number of definitions
+     * @return path to use as the beaconizer.config property
+     * @throws IOException if the files could not be written
+     */
+    public static Path write(Path root, Layout layout, int count) throws IOException {
+        if (layout == Layout.FILE) {
+            Path file = root.resolve("beacons.json");
+            writeShard(file, 0, count, true);
+            return file;
+        }
+
+        int size = layout == Layout.DIRECTORY ? 1 : SHARD_SIZE;
+        for (int first = 0; first < count; first += size) {
+            writeShard(root.resolve(String.format("beacons-%06d.json", first)),
+                       first,
+                       Math.min(count, first + size),
+                       layout == Layout.SHARDS);
+        }
+        return root;
+    }
+
+    /**
+     * Create a BeaconizerDaoImpl reading its definitions from the passed path
+     *
+     * @param path file or directory written by {@link #write(Path, Layout, int)}
+     * @return initialized dao
+     */
+    public static BeaconizerDaoImpl open(Path path) {
+        System.setProperty(BeaconizerDaoImpl.CONFIG_PATH_PROPERTY, path.toString());
+        BeaconizerDaoImpl dao = new BeaconizerDaoImpl();
+        dao.init();
+        return dao;
+    }
+
+    /**
+     * Delete the files written by {@link #write(Path, Layout, int)}, and the directory itself
+     *
+     * @param root directory passed to write
+     * @throws IOException if a file could not be deleted
+     */
+    public static void delete(Path root) throws IOException {
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(root);
+    }
+
+    private static void writeShard(Path file, int first, int end, boolean array) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (array) {
+                writer.write('[');
+            }
+            for (int i = first; i < end; i++) {
+                if (i > first) {
+                    writer.write(',');
+                }
+                writer.write("{\"name\":\"beacon_" + i + "\",\"adapterClass\":\"" + StubBeaconAdapter.class.getName()
+                                     + "\",\"configValues\":[{\"name\":\"beaconizer.replicaGroup\",\"value\":\"group_"
+                                     + (i / 2) + "\"},{\"name\":\"beaconizer.adapter.timeout\",\"value\":\"5000\"}]}");
+            }
+            if (array) {
+                writer.write(']');
+            }
+        }
+    }
+}
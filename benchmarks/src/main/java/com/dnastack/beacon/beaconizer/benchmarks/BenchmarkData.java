@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.benchmarks;
+
+import org.ga4gh.beacon.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed beacon model objects used by the benchmarks
+ */
+public class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static BeaconAlleleRequest alleleRequest() {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName("1");
+        request.setStart(10000L);
+        request.setReferenceBases("A");
+        request.setAlternateBases("C");
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Arrays.asList("sample-1", "sample-2"));
+        request.setIncludeDatasetResponses(true);
+        return request;
+    }
+
+    /**
+     * @param datasets number of dataset responses to include
+     * @return allele response for {@link #alleleRequest()}
+     */
+    public static BeaconAlleleResponse alleleResponse(int datasets) {
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId("beacon_id");
+        response.setExists(true);
+        response.setAlleleRequest(alleleRequest());
+
+        List<BeaconDatasetAlleleResponse> datasetResponses = new ArrayList<>(datasets);
+        for (int i = 0; i < datasets; i++) {
+            BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+            datasetResponse.setDatasetId("sample-" + i);
+            datasetResponse.setExists(i % 2 == 0);
+            datasetResponse.setFrequency(1.0 / (i + 1));
+            datasetResponse.setVariantCount((long) i);
+            datasetResponse.setCallCount(2L * i);
+            datasetResponse.setSampleCount(3L * i);
+            datasetResponse.setNote("Dataset response " + i);
+            datasetResponse.setExternalUrl("http://example.org/datasets/" + i);
+            datasetResponse.setInfo(Collections.singletonMap("source", "benchmark"));
+            datasetResponses.add(datasetResponse);
+        }
+        response.setDatasetAlleleResponses(datasetResponses);
+        return response;
+    }
+
+    public static Beacon beacon(String id) {
+        BeaconOrganization organization = new BeaconOrganization();
+        organization.setId("dnastack");
+        organization.setName("DNAstack");
+
+        BeaconDataset dataset = new BeaconDataset();
+        dataset.setId("sample-1");
+        dataset.setName("Sample dataset");
+        dataset.setAssemblyId("grch37");
+        dataset.setCreateDateTime("2016-01-01T00:00:00Z");
+        dataset.setUpdateDateTime("2016-01-01T00:00:00Z");
+        dataset.setInfo(Collections.emptyMap());
+
+        Beacon beacon = new Beacon();
+        beacon.setId(id);
+        beacon.setName(id);
+        beacon.setApiVersion("0.3.0");
+        beacon.setOrganization(organization);
+        beacon.setDatasets(Collections.singletonList(dataset));
+        beacon.setSampleAlleleRequests(Collections.singletonList(alleleRequest()));
+        beacon.setInfo(Collections.emptyMap());
+        return beacon;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.benchmarks;
+
+import com.dnastack.beacon.beaconizer.dao.impl.BeaconizerDaoImpl;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reports the startup time and retained heap of a registry of synthetic beacons in each configuration layout, right
+ * after startup and after every beacon has been looked up once. Heap use is the difference in used heap after a full gc,
+ * so it is an estimate; run with a fixed heap size (e.g. -Xms1g -Xmx1g) for stable numbers.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar com.dnastack.beacon.beaconizer.benchmarks.RegistryFootprint [beacons]}
+ */
+public class RegistryFootprint {
+
+    private static final int DEFAULT_BEACONS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        int beacons = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BEACONS;
+
+        System.out.printf("%-10s %8s %12s %12s %12s%n", "layout", "beacons", "startup ms", "heap KiB", "used KiB");
+        for (BeaconConfigs.Layout layout : BeaconConfigs.Layout.values()) {
+            Path root = Files.createTempDirectory("beaconizer-config");
+            try {
+                measure(layout, BeaconConfigs.write(root, layout, beacons));
+            } finally {
+                BeaconConfigs.delete(root);
+            }
+        }
+    }
+
+    private static void measure(BeaconConfigs.Layout layout, Path path) throws BeaconNotFoundException {
+        // warm up the parsers so class loading is not counted against the first layout
+        BeaconConfigs.open(path);
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        BeaconizerDaoImpl dao = BeaconConfigs.open(path);
+        long startup = System.nanoTime() - start;
+        long loaded = usedHeap();
+
+        for (String name : dao.listRegisteredBeacons()) {
+            dao.find(name);
+        }
+        long used = usedHeap();
+
+        System.out.printf("%-10s %8d %12.1f %12d %12d%n",
+                          layout,
+                          dao.listRegisteredBeacons().size(),
+                          startup / 1e6,
+                          (loaded - before) / 1024,
+                          (used - before) / 1024);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.benchmarks;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
+import com.dnastack.beacon.utils.AdapterConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory BeaconizerDao registering a number of beacons backed by the StubBeaconAdapter
+ */
+public class StubBeaconizerDao implements BeaconizerDao {
+
+    private final Map<String, AdapterConfig> beacons = new HashMap<>();
+
+    public StubBeaconizerDao(int count) {
+        for (int i = 0; i < count; i++) {
+            String name = "beacon_" + i;
+            String json = "{\"name\":\"" + name + "\",\"adapterClass\":\"" + StubBeaconAdapter.class.getName() + "\",\"configValues\":[]}";
+            beacons.put(name, JsonUtils.getGson().fromJson(json, AdapterConfig.class));
+        }
+    }
+
+    @Override
+    public AdapterConfig find(String name) throws BeaconNotFoundException {
+        AdapterConfig config = beacons.get(name);
+        if (config == null) {
+            throw new BeaconNotFoundException("Could not find beacon with name: " + name);
+        }
+        return config;
+    }
+
+    @Override
+    public List<String> listRegisteredBeacons() {
+        return new ArrayList<>(beacons.keySet());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.dao.impl;
+
+import com.dnastack.beacon.beaconizer.benchmarks.BeaconConfigs;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of a registry of synthetic beacons in each configuration layout, and lookups once it has started. The
+ * retained heap of each layout is reported by {@link com.dnastack.beacon.beaconizer.benchmarks.RegistryFootprint}.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BeaconizerDaoImplBenchmark {
+
+    @Param({"10000"})
+    public int beacons;
+
+    @Param({"FILE", "DIRECTORY", "SHARDS"})
+    public BeaconConfigs.Layout layout;
+
+    private Path root;
+    private Path path;
+    private BeaconizerDaoImpl dao;
+    private List<String> names;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("beaconizer-config");
+        path = BeaconConfigs.write(root, layout, beacons);
+        dao = BeaconConfigs.open(path);
+        names = dao.listRegisteredBeacons();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BeaconConfigs.delete(root);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public BeaconizerDaoImpl startup() {
+        return BeaconConfigs.open(path);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public AdapterConfig find(Cursor cursor) throws BeaconNotFoundException {
+        return dao.find(names.get(cursor.next++ % names.size()));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import com.dnastack.beacon.beaconizer.benchmarks.BenchmarkData;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading allele requests and writing small and large allele responses through the message body handler, as the
+ * container does on the query hot path
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonMessageBodyHandlerBenchmark {
+
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+
+    @Param({"0", "500"})
+    public int datasets;
+
+    private GsonMessageBodyHandler handler;
+    private BeaconAlleleResponse response;
+    private ByteArrayInputStream requestStream;
+    private ByteArrayOutputStream responseStream;
+
+    @Setup
+    public void setUp() {
+        handler = new GsonMessageBodyHandler();
+        response = BenchmarkData.alleleResponse(datasets);
+        requestStream = new ByteArrayInputStream(JsonUtils.getGson()
+                                                          .toJson(BenchmarkData.alleleRequest())
+                                                          .getBytes(StandardCharsets.UTF_8));
+        responseStream = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object readFrom() throws IOException {
+        requestStream.reset();
+        return handler.readFrom((Class<Object>) (Class<?>) BeaconAlleleRequest.class,
+                                BeaconAlleleRequest.class,
+                                ANNOTATIONS,
+                                MediaType.APPLICATION_JSON_TYPE,
+                                null,
+                                requestStream);
+    }
+
+    @Benchmark
+    public int writeTo() throws IOException {
+        responseStream.reset();
+        handler.writeTo(response,
+                        BeaconAlleleResponse.class,
+                        BeaconAlleleResponse.class,
+                        ANNOTATIONS,
+                        MediaType.APPLICATION_JSON_TYPE,
+                        null,
+                        responseStream);
+        return responseStream.size();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.rest.impl;
+
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.exceptions.InvalidAlleleRequestException;
+import com.dnastack.beacon.beaconizer.util.ErrorLog;
+import com.dnastack.beacon.exceptions.BeaconAlleleRequestException;
+import com.dnastack.beacon.utils.Reason;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the common client errors into error responses, including creating the exceptions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormBeaconErrorBenchmark {
+
+    private final BeaconizerImpl beaconizer = new BeaconizerImpl();
+
+    @Setup
+    public void setUp() {
+        beaconizer.errorLog = new ErrorLog();
+    }
+
+    @Benchmark
+    public Response invalidRequest() {
+        return beaconizer.formBeaconError("beacon_id", new InvalidAlleleRequestException("Reference bases cannot be null"));
+    }
+
+    @Benchmark
+    public Response alleleRequestError() {
+        return beaconizer.formBeaconError("beacon_id",
+                                          new BeaconAlleleRequestException(Reason.ERROR, "Could not query the beacon"));
+    }
+
+    @Benchmark
+    public Response notFound() {
+        return beaconizer.formBeaconError("INVALID", new BeaconNotFoundException("Could not find beacon with name: INVALID"));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.service.impl;
+
+import com.dnastack.beacon.beaconizer.benchmarks.BenchmarkData;
+import com.dnastack.beacon.exceptions.BeaconAlleleRequestException;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating valid and invalid allele requests
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateRequestBenchmark {
+
+    private BeaconizerServiceImpl service;
+    private BeaconAlleleRequest request;
+
+    @Setup
+    public void setUp() {
+        service = new BeaconizerServiceImpl();
+        request = BenchmarkData.alleleRequest();
+    }
+
+    @Benchmark
+    public void validRequest() throws BeaconAlleleRequestException {
+        service.validateRequest("beacon_id",
+                                request.getReferenceName(),
+                                request.getStart(),
+                                request.getReferenceBases(),
+                                request.getAlternateBases(),
+                                request.getAssemblyId(),
+                                request.getDatasetIds(),
+                                request.getIncludeDatasetResponses());
+    }
+
+    @Benchmark
+    public void invalidRequest(Blackhole blackhole) {
+        try {
+            service.validateRequest("beacon_id",
+                                    null,
+                                    request.getStart(),
+                                    request.getReferenceBases(),
+                                    request.getAlternateBases(),
+                                    request.getAssemblyId(),
+                                    request.getDatasetIds(),
+                                    request.getIncludeDatasetResponses());
+        } catch (BeaconAlleleRequestException e) {
+            blackhole.consume(e);
+        }
+    }
+}
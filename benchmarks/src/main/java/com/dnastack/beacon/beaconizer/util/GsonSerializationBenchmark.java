@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.beaconizer.benchmarks.BenchmarkData;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson's reflective adapters compared with the streaming adapters of BeaconTypeAdapterFactory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonSerializationBenchmark {
+
+    @Param({"reflective", "streaming"})
+    public String adapters;
+
+    @Param({"0", "500"})
+    public int datasets;
+
+    private Gson gson;
+    private BeaconAlleleResponse response;
+    private String requestJson;
+
+    @Setup
+    public void setUp() {
+        gson = "streaming".equals(adapters) ? JsonUtils.getGson() : new GsonBuilder().create();
+        response = BenchmarkData.alleleResponse(datasets);
+        requestJson = gson.toJson(BenchmarkData.alleleRequest());
+    }
+
+    @Benchmark
+    public String serializeAlleleResponse() {
+        return gson.toJson(response, BeaconAlleleResponse.class);
+    }
+
+    @Benchmark
+    public BeaconAlleleRequest deserializeAlleleRequest() {
+        return gson.fromJson(requestJson, BeaconAlleleRequest.class);
+    }
+}
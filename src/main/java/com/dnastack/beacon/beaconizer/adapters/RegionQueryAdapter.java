@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters;
+
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.exceptions.BeaconException;
+
+/**
+ * Optional capability of a BeaconAdapter which can answer region requests natively, e.g. with a single range scan of
+ * its backend instead of a lookup per position. Region requests to beacons whose adapter does not implement it are
+ * answered with NOT_IMPLEMENTED.
+ */
+public interface RegionQueryAdapter {
+
+    /**
+     * Find out whether the requested datasets have variants in a region, and optionally how many. The request has been
+     * validated: reference name, start, end and assembly are set, and start is not after end.
+     *
+     * @param request region request
+     * @return region response
+     * @throws BeaconException if the request could not be answered
+     */
+    BeaconRegionResponse getBeaconRegionResponse(BeaconRegionRequest request) throws BeaconException;
+}
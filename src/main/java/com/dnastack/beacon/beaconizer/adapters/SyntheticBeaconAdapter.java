@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters;
+
+import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.dnastack.beacon.utils.Reason;
+import org.ga4gh.beacon.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Synthetic BeaconAdapter for load and failure testing. It has no backend: answers are derived from a hash of the
+ * requested variant, so the same request always gets the same answer, while latency, errors and timeouts are injected
+ * according to its configuration. Region requests are answered the same way, with a variant count per dataset derived
+ * from a hash of the region. Every setting is an optional config value of its AdapterConfig:
+ * <ul>
+ * <li><b>latency</b>: mean latency of every call in milliseconds. Defaults to 0</li>
+ * <li><b>latencyDistribution</b>: one of fixed, uniform (between 0 and twice the mean), exponential or lognormal.
+ * Defaults to fixed</li>
+ * <li><b>latencySigma</b>: standard deviation of the logarithm of the latency for the lognormal distribution.
+ * Defaults to 1</li>
+ * <li><b>errorRate</b>: fraction of calls, between 0 and 1, which fail with an error. Defaults to 0</li>
+ * <li><b>timeoutRate</b>: fraction of calls, between 0 and 1, which hang for the timeout before failing. Defaults to
+ * 0</li>
+ * <li><b>timeout</b>: how long a hanging call hangs in milliseconds. Defaults to 60000</li>
+ * <li><b>failMetadata</b>: whether metadata requests fail and hang like queries, rather than only taking the latency.
+ * Defaults to true</li>
+ * <li><b>existsRate</b>: fraction of variants, between 0 and 1, which exist. Defaults to 0.5</li>
+ * <li><b>datasets</b>: number of datasets of the beacon, and of dataset responses when they are requested. Defaults to
+ * 1</li>
+ * </ul>
+ */
+public class SyntheticBeaconAdapter implements BeaconAdapter, RegionQueryAdapter {
+
+    private static final String API_VERSION = "0.3.0";
+
+    private String name;
+    private long latency;
+    private LatencyDistribution latencyDistribution;
+    private double latencySigma;
+    private double errorRate;
+    private double timeoutRate;
+    private long timeout;
+    private boolean failMetadata;
+    private double existsRate;
+    private int datasets;
+    private Beacon beacon;
+
+    private enum LatencyDistribution {
+        FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL
+    }
+
+    @Override
+    public void initAdapter(AdapterConfig adapterConfig) {
+        name = adapterConfig.getName();
+        latency = ConfigUtils.getLongConfigValue(adapterConfig, "latency", 0L);
+        latencySigma = ConfigUtils.getDoubleConfigValue(adapterConfig, "latencySigma", 1.0);
+        errorRate = ConfigUtils.getDoubleConfigValue(adapterConfig, "errorRate", 0.0);
+        timeoutRate = ConfigUtils.getDoubleConfigValue(adapterConfig, "timeoutRate", 0.0);
+        timeout = ConfigUtils.getLongConfigValue(adapterConfig, "timeout", 60000L);
+        String metadataFailures = ConfigUtils.getConfigValue(adapterConfig, "failMetadata");
+        failMetadata = metadataFailures == null || Boolean.parseBoolean(metadataFailures.trim());
+        existsRate = ConfigUtils.getDoubleConfigValue(adapterConfig, "existsRate", 0.5);
+        datasets = (int) ConfigUtils.getLongConfigValue(adapterConfig, "datasets", 1L);
+
+        String distribution = ConfigUtils.getConfigValue(adapterConfig, "latencyDistribution");
+        latencyDistribution = distribution == null ? LatencyDistribution.FIXED : LatencyDistribution.valueOf(
+                distribution.trim().toUpperCase(Locale.ROOT));
+
+        beacon = createBeacon();
+    }
+
+    @Override
+    public BeaconAlleleResponse getBeaconAlleleResponse(BeaconAlleleRequest request) throws BeaconException {
+        simulateCall();
+
+        long variantHash = hash(request.getReferenceName(),
+                                request.getStart(),
+                                request.getReferenceBases(),
+                                request.getAlternateBases(),
+                                request.getAssemblyId());
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId(name);
+        response.setAlleleRequest(request);
+        response.setExists(exists(variantHash));
+
+        if (Boolean.TRUE.equals(request.getIncludeDatasetResponses())) {
+            List<BeaconDatasetAlleleResponse> datasetResponses = new ArrayList<>(datasets);
+            for (int i = 0; i < datasets; i++) {
+                String datasetId = datasetId(i);
+                long datasetHash = mix(variantHash ^ datasetId.hashCode());
+
+                BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+                datasetResponse.setDatasetId(datasetId);
+                datasetResponse.setExists(exists(datasetHash));
+                datasetResponse.setFrequency((datasetHash >>> 11) / (double) (1L << 53));
+                datasetResponse.setVariantCount(datasetHash >>> 54);
+                datasetResponses.add(datasetResponse);
+            }
+            response.setDatasetAlleleResponses(datasetResponses);
+        }
+        return response;
+    }
+
+    @Override
+    public BeaconAlleleResponse getBeaconAlleleResponse(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName(referenceName);
+        request.setStart(start);
+        request.setReferenceBases(referenceBases);
+        request.setAlternateBases(alternateBases);
+        request.setAssemblyId(assemblyId);
+        request.setDatasetIds(datasetIds);
+        request.setIncludeDatasetResponses(includeDatasetResponses);
+        return getBeaconAlleleResponse(request);
+    }
+
+    @Override
+    public BeaconRegionResponse getBeaconRegionResponse(BeaconRegionRequest request) throws BeaconException {
+        simulateCall();
+
+        long regionHash = mix(hash(request.getReferenceName(),
+                                   request.getStart(),
+                                   null,
+                                   null,
+                                   request.getAssemblyId()) * 31 + Objects.hashCode(request.getEnd()));
+
+        long variantCount = 0;
+        List<BeaconDatasetAlleleResponse> datasetResponses = new ArrayList<>(datasets);
+        for (int i = 0; i < datasets; i++) {
+            String datasetId = datasetId(i);
+            long datasetHash = mix(regionHash ^ datasetId.hashCode());
+            long datasetCount = exists(datasetHash) ? 1 + (datasetHash >>> 54) : 0;
+            variantCount += datasetCount;
+
+            BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+            datasetResponse.setDatasetId(datasetId);
+            datasetResponse.setExists(datasetCount > 0);
+            datasetResponse.setVariantCount(datasetCount);
+            datasetResponses.add(datasetResponse);
+        }
+
+        BeaconRegionResponse response = new BeaconRegionResponse();
+        response.setBeaconId(name);
+        response.setRegionRequest(request);
+        response.setExists(variantCount > 0);
+        response.setVariantCount(variantCount);
+        if (Boolean.TRUE.equals(request.getIncludeDatasetResponses())) {
+            response.setDatasetRegionResponses(datasetResponses);
+        }
+        return response;
+    }
+
+    @Override
+    public Beacon getBeacon() throws BeaconException {
+        if (!failMetadata) {
+            sleep(nextLatency(ThreadLocalRandom.current()));
+            return beacon;
+        }
+        simulateCall();
+        return beacon;
+    }
+
+    /**
+     * Sleep for the configured latency, then fail or hang if this call is chosen to
+     */
+    private void simulateCall() throws BeaconException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        sleep(nextLatency(random));
+
+        if (random.nextDouble() < timeoutRate) {
+            sleep(timeout);
+            throw new BeaconException(Reason.ERROR, "Synthetic timeout after " + timeout + " ms");
+        }
+        if (random.nextDouble() < errorRate) {
+            throw new BeaconException(Reason.ERROR, "Synthetic error");
+        }
+    }
+
+    private long nextLatency(ThreadLocalRandom random) {
+        if (latency <= 0) {
+            return 0;
+        }
+        switch (latencyDistribution) {
+            case UNIFORM:
+                return random.nextLong(2 * latency + 1);
+            case EXPONENTIAL:
+                return (long) (-latency * Math.log(1.0 - random.nextDouble()));
+            case LOGNORMAL:
+                // Choose mu so that the mean of the distribution is the configured latency
+                double mu = Math.log(latency) - latencySigma * latencySigma / 2;
+                return (long) Math.exp(mu + latencySigma * random.nextGaussian());
+            default:
+                return latency;
+        }
+    }
+
+    private void sleep(long millis) throws BeaconException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BeaconException(Reason.ERROR, "Interrupted");
+        }
+    }
+
+    private boolean exists(long hash) {
+        return (hash >>> 11) / (double) (1L << 53) < existsRate;
+    }
+
+    private String datasetId(int index) {
+        return name + "-dataset-" + index;
+    }
+
+    private Beacon createBeacon() {
+        BeaconOrganization organization = new BeaconOrganization();
+        organization.setId("synthetic");
+        organization.setName("Synthetic Beacons");
+        organization.setInfo(Collections.emptyMap());
+
+        List<BeaconDataset> beaconDatasets = new ArrayList<>(datasets);
+        List<String> datasetIds = new ArrayList<>(datasets);
+        for (int i = 0; i < datasets; i++) {
+            BeaconDataset dataset = new BeaconDataset();
+            dataset.setId(datasetId(i));
+            dataset.setName(datasetId(i));
+            dataset.setAssemblyId("grch37");
+            dataset.setCreateDateTime("2016-01-01T00:00:00Z");
+            dataset.setUpdateDateTime("2016-01-01T00:00:00Z");
+            dataset.setInfo(Collections.emptyMap());
+            beaconDatasets.add(dataset);
+            datasetIds.add(dataset.getId());
+        }
+
+        BeaconAlleleRequest sampleRequest = new BeaconAlleleRequest();
+        sampleRequest.setReferenceName("1");
+        sampleRequest.setStart(10000L);
+        sampleRequest.setReferenceBases("A");
+        sampleRequest.setAlternateBases("C");
+        sampleRequest.setAssemblyId("grch37");
+        sampleRequest.setDatasetIds(datasetIds);
+        sampleRequest.setIncludeDatasetResponses(true);
+
+        Beacon beacon = new Beacon();
+        beacon.setId(name);
+        beacon.setName(name);
+        beacon.setApiVersion(API_VERSION);
+        beacon.setOrganization(organization);
+        beacon.setDescription("Synthetic beacon for load and failure testing");
+        beacon.setDatasets(beaconDatasets);
+        beacon.setSampleAlleleRequests(Collections.singletonList(sampleRequest));
+        beacon.setInfo(Collections.emptyMap());
+        return beacon;
+    }
+
+    private static long hash(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId) {
+        long hash = Objects.hashCode(referenceName);
+        hash = mix(hash * 31 + Objects.hashCode(start));
+        hash = mix(hash * 31 + Objects.hashCode(referenceBases));
+        hash = mix(hash * 31 + Objects.hashCode(alternateBases));
+        return mix(hash * 31 + Objects.hashCode(assemblyId));
+    }
+
+    /**
+     * 64 bit finalizer of MurmurHash3, spreads the bits of the hash evenly
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
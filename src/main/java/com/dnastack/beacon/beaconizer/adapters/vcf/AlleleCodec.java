@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters.vcf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Encoding of a reference and alternate allele pair as a single long. Pairs of up to 26 bases in total, using only A, C,
+ * G and T, are packed at 2 bits per base together with the length of each allele. Any other pair is stored in the
+ * dictionary of the index, and encoded as its dictionary id with the sign bit set, so packed and dictionary keys never
+ * collide.
+ */
+final class AlleleCodec {
+
+    /**
+     * Returned by {@link #pack(String, String)} for pairs which cannot be packed
+     */
+    static final long NOT_PACKED = -1L;
+
+    private static final int MAX_PACKED_BASES = 26;
+    private static final int MAX_ALLELE_LENGTH = 31;
+    private static final int REF_LENGTH_SHIFT = 57;
+    private static final int ALT_LENGTH_SHIFT = 52;
+
+    private AlleleCodec() {
+    }
+
+    /**
+     * @param ref reference bases, upper case
+     * @param alt alternate bases, upper case
+     * @return packed key of the pair, or {@link #NOT_PACKED}
+     */
+    static long pack(String ref, String alt) {
+        int refLength = ref.length();
+        int altLength = alt.length();
+        if (refLength > MAX_ALLELE_LENGTH || altLength > MAX_ALLELE_LENGTH || refLength + altLength > MAX_PACKED_BASES) {
+            return NOT_PACKED;
+        }
+
+        long bases = 0;
+        int shift = 0;
+        for (int i = 0; i < refLength + altLength; i++, shift += 2) {
+            int code = code(i < refLength ? ref.charAt(i) : alt.charAt(i - refLength));
+            if (code < 0) {
+                return NOT_PACKED;
+            }
+            bases |= (long) code << shift;
+        }
+        return (long) refLength << REF_LENGTH_SHIFT | (long) altLength << ALT_LENGTH_SHIFT | bases;
+    }
+
+    static boolean isDictionaryKey(long key) {
+        return key < 0;
+    }
+
+    static long dictionaryKey(int id) {
+        return Long.MIN_VALUE | id;
+    }
+
+    static int dictionaryId(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @param ref reference bases, upper case
+     * @param alt alternate bases, upper case
+     * @return dictionary entry of the pair
+     */
+    static byte[] dictionaryEntry(String ref, String alt) {
+        return (ref + '\t' + alt).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Normalize bases for encoding
+     *
+     * @param bases bases as given in a VCF file or a request
+     * @return upper case bases
+     */
+    static String normalizeBases(String bases) {
+        return bases.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalize a contig name, so that "chr1" and "1" name the same contig
+     *
+     * @param name contig name as given in a VCF file or a request
+     * @return normalized name
+     */
+    static String normalizeContig(String name) {
+        String contig = name.trim();
+        if (contig.regionMatches(true, 0, "chr", 0, 3)) {
+            contig = contig.substring(3);
+        }
+        return contig.toUpperCase(Locale.ROOT);
+    }
+
+    private static int code(char base) {
+        switch (base) {
+            case 'A':
+                return 0;
+            case 'C':
+                return 1;
+            case 'G':
+                return 2;
+            case 'T':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters.vcf;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only view of an index written by {@link VcfIndexBuilder}. The sections of every contig and the allele dictionary
+ * are memory-mapped, so the heap only holds the footer: dataset ids and the name and offsets of each contig. Lookups
+ * binary search the positions of a contig and compare allele keys at the matching positions, and are safe to run from
+ * many threads since they only use absolute reads.
+ */
+public class VariantIndex {
+
+    private final String assemblyId;
+    private final List<String> datasetIds;
+    private final long[] variantCounts;
+    private final Map<String, Contig> contigs;
+    private final IntBuffer dictionaryOffsets;
+    private final ByteBuffer dictionary;
+
+    private VariantIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != VcfIndexBuilder.MAGIC || header.getInt(4) != VcfIndexBuilder.VERSION) {
+            throw new IOException("Not a variant index, or written by an incompatible version");
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(8);
+        readFully(channel, trailer, size - 8);
+        long footerOffset = trailer.getLong(0);
+        ByteBuffer footer = ByteBuffer.allocate((int) (size - 8 - footerOffset));
+        readFully(channel, footer, footerOffset);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+        assemblyId = in.readUTF();
+        int datasetCount = in.readInt();
+        List<String> ids = new ArrayList<>(datasetCount);
+        variantCounts = new long[datasetCount];
+        for (int dataset = 0; dataset < datasetCount; dataset++) {
+            ids.add(in.readUTF());
+            variantCounts[dataset] = in.readLong();
+        }
+        datasetIds = Collections.unmodifiableList(ids);
+
+        int contigCount = in.readInt();
+        Map<String, Contig> map = new HashMap<>();
+        for (int i = 0; i < contigCount; i++) {
+            String name = in.readUTF();
+            int count = in.readInt();
+            long positionsOffset = in.readLong();
+            long allelesOffset = in.readLong();
+            long bitmapsOffset = in.readLong();
+            int words = (count + 63) >>> 6;
+            map.put(name,
+                    new Contig(count,
+                               channel.map(MapMode.READ_ONLY, positionsOffset, 4L * count).asIntBuffer(),
+                               channel.map(MapMode.READ_ONLY, allelesOffset, 8L * count).asLongBuffer(),
+                               channel.map(MapMode.READ_ONLY, bitmapsOffset, 8L * words * datasetCount).asLongBuffer(),
+                               words));
+        }
+        contigs = map;
+
+        int dictionaryCount = in.readInt();
+        long offsetsOffset = in.readLong();
+        long blobOffset = in.readLong();
+        dictionaryOffsets = channel.map(MapMode.READ_ONLY, offsetsOffset, 4L * (dictionaryCount + 1)).asIntBuffer();
+        dictionary = channel.map(MapMode.READ_ONLY, blobOffset, footerOffset - blobOffset);
+    }
+
+    /**
+     * Map an index file. The file stays mapped until the index is garbage collected.
+     *
+     * @param path index file
+     * @return index
+     * @throws IOException if the file could not be read or is not an index
+     */
+    public static VariantIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new VariantIndex(channel);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of variant index");
+            }
+        }
+    }
+
+    public String getAssemblyId() {
+        return assemblyId;
+    }
+
+    public List<String> getDatasetIds() {
+        return datasetIds;
+    }
+
+    /**
+     * @param dataset position of the dataset in {@link #getDatasetIds()}
+     * @return number of variants in the dataset
+     */
+    public long getVariantCount(int dataset) {
+        return variantCounts[dataset];
+    }
+
+    /**
+     * @param referenceName name of the contig, with or without a chr prefix
+     * @return contig, or null if the index has no variants on it
+     */
+    public Contig getContig(String referenceName) {
+        return referenceName == null ? null : contigs.get(AlleleCodec.normalizeContig(referenceName));
+    }
+
+    private boolean dictionaryEquals(int id, byte[] entry) {
+        int from = dictionaryOffsets.get(id);
+        if (dictionaryOffsets.get(id + 1) - from != entry.length) {
+            return false;
+        }
+        for (int i = 0; i < entry.length; i++) {
+            if (dictionary.get(from + i) != entry[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Variants of a single contig
+     */
+    public class Contig {
+
+        private final int count;
+        private final IntBuffer positions;
+        private final LongBuffer alleles;
+        private final LongBuffer bitmaps;
+        private final int words;
+
+        private Contig(int count, IntBuffer positions, LongBuffer alleles, LongBuffer bitmaps, int words) {
+            this.count = count;
+            this.positions = positions;
+            this.alleles = alleles;
+            this.bitmaps = bitmaps;
+            this.words = words;
+        }
+
+        /**
+         * Find a variant
+         *
+         * @param start          0-based position
+         * @param referenceBases reference bases
+         * @param alternateBases alternate bases
+         * @return number of the variant within the contig, or -1 if it is not in the index
+         */
+        public int find(long start, String referenceBases, String alternateBases) {
+            if (start < 0 || start > Integer.MAX_VALUE || referenceBases == null || alternateBases == null) {
+                return -1;
+            }
+            String ref = AlleleCodec.normalizeBases(referenceBases);
+            String alt = AlleleCodec.normalizeBases(alternateBases);
+            long key = AlleleCodec.pack(ref, alt);
+            byte[] entry = key == AlleleCodec.NOT_PACKED ? AlleleCodec.dictionaryEntry(ref, alt) : null;
+
+            for (int i = lowerBound(start); i < count && positions.get(i) == start; i++) {
+                long candidate = alleles.get(i);
+                if (entry == null ? candidate == key : AlleleCodec.isDictionaryKey(candidate) && dictionaryEquals(
+                        AlleleCodec.dictionaryId(candidate),
+                        entry)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param variant number of the variant within the contig
+         * @param dataset position of the dataset in {@link #getDatasetIds()}
+         * @return true if the dataset has the variant
+         */
+        public boolean inDataset(int variant, int dataset) {
+            return (bitmaps.get(dataset * words + (variant >>> 6)) & 1L << (variant & 63)) != 0;
+        }
+
+        /**
+         * Find the first variant at or after a position. Variants are sorted by position, so the variants of a region
+         * are the ones between the lower bounds of its start and end.
+         *
+         * @param position 0-based position
+         * @return number of the first variant at or after the position, or the number of variants in the contig if
+         * there is none
+         */
+        public int lowerBound(long position) {
+            if (position <= 0) {
+                return 0;
+            } else if (position > Integer.MAX_VALUE) {
+                return count;
+            }
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (positions.get(middle) < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Count the variants in a range which are in at least one of the passed datasets, a word of the dataset
+         * bitmaps at a time
+         *
+         * @param from     number of the first variant, inclusive
+         * @param to       number of the last variant, exclusive
+         * @param datasets positions of the datasets in {@link #getDatasetIds()}
+         * @return number of variants
+         */
+        public long count(int from, int to, int[] datasets) {
+            if (from >= to || datasets.length == 0) {
+                return 0;
+            }
+            long total = 0;
+            int last = (to - 1) >>> 6;
+            for (int word = from >>> 6; word <= last; word++) {
+                long bits = 0;
+                for (int dataset : datasets) {
+                    bits |= bitmaps.get(dataset * words + word);
+                }
+                if (word == from >>> 6) {
+                    bits &= -1L << (from & 63);
+                }
+                if (word == last) {
+                    bits &= -1L >>> (63 - ((to - 1) & 63));
+                }
+                total += Long.bitCount(bits);
+            }
+            return total;
+        }
+    }
+}
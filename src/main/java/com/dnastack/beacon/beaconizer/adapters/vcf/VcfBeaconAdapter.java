@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters.vcf;
+
+import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.adapters.RegionQueryAdapter;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.dnastack.beacon.utils.Reason;
+import org.ga4gh.beacon.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * BeaconAdapter answering allele requests from a variant index built offline by {@link VcfIndexBuilder}. The index is
+ * memory-mapped, so a query is a binary search over the positions of one contig without touching the heap or any
+ * other backend. Every setting is a config value of its AdapterConfig:
+ * <ul>
+ * <li><b>index</b>: path of the index file. Required</li>
+ * <li><b>assembly</b>: assembly id the beacon serves. Must match the assembly the index was built for, defaults to
+ * it</li>
+ * <li><b>datasets</b>: comma separated ids of the datasets of the index to serve. Defaults to all of them</li>
+ * <li><b>organization</b>: name of the organization running the beacon. Defaults to the name of the beacon</li>
+ * <li><b>description</b>: description of the beacon</li>
+ * </ul>
+ * Requests for another assembly are rejected as invalid. A variant exists if any of the requested datasets has it, or
+ * any served dataset if the request names none. Region requests are answered natively with the number of variants in
+ * the region, counted from the dataset bitmaps of the variants between the bounds of the region.
+ */
+public class VcfBeaconAdapter implements BeaconAdapter, RegionQueryAdapter {
+
+    private static final String API_VERSION = "0.3.0";
+
+    private String name;
+    private VariantIndex index;
+    private String assemblyId;
+    private List<String> datasetIds;
+    private Map<String, Integer> datasets;
+    private int[] servedDatasets;
+    private Beacon beacon;
+
+    @Override
+    public void initAdapter(AdapterConfig adapterConfig) {
+        name = adapterConfig.getName();
+        String path = ConfigUtils.getConfigValue(adapterConfig, "index");
+        if (path == null) {
+            throw new IllegalArgumentException("Beacon " + name + " needs an index config value");
+        }
+        try {
+            index = VariantIndex.open(Paths.get(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open variant index " + path + " of beacon " + name, e);
+        }
+
+        assemblyId = ConfigUtils.getConfigValue(adapterConfig, "assembly");
+        if (assemblyId == null) {
+            assemblyId = index.getAssemblyId();
+        } else if (!assemblyId.equalsIgnoreCase(index.getAssemblyId())) {
+            throw new IllegalArgumentException("Variant index " + path + " was built for " + index.getAssemblyId() + ", not " + assemblyId);
+        }
+
+        List<String> indexed = index.getDatasetIds();
+        String served = ConfigUtils.getConfigValue(adapterConfig, "datasets");
+        datasetIds = new ArrayList<>();
+        if (served == null) {
+            datasetIds.addAll(indexed);
+        } else {
+            for (String datasetId : served.split(",")) {
+                if (!indexed.contains(datasetId.trim())) {
+                    throw new IllegalArgumentException("Variant index " + path + " has no dataset " + datasetId.trim());
+                }
+                datasetIds.add(datasetId.trim());
+            }
+        }
+
+        datasets = new HashMap<>();
+        servedDatasets = new int[datasetIds.size()];
+        for (int i = 0; i < servedDatasets.length; i++) {
+            servedDatasets[i] = indexed.indexOf(datasetIds.get(i));
+            datasets.put(datasetIds.get(i), servedDatasets[i]);
+        }
+
+        beacon = createBeacon(ConfigUtils.getConfigValue(adapterConfig, "organization"),
+                              ConfigUtils.getConfigValue(adapterConfig, "description"));
+    }
+
+    @Override
+    public BeaconAlleleResponse getBeaconAlleleResponse(BeaconAlleleRequest request) throws BeaconException {
+        checkAssembly(request.getAssemblyId());
+
+        int[] requested = getRequestedDatasets(request.getDatasetIds());
+        VariantIndex.Contig contig = index.getContig(request.getReferenceName());
+        int variant = contig == null || request.getStart() == null ? -1 : contig.find(request.getStart(),
+                                                                                       request.getReferenceBases(),
+                                                                                       request.getAlternateBases());
+
+        boolean exists = false;
+        List<BeaconDatasetAlleleResponse> datasetResponses = null;
+        if (Boolean.TRUE.equals(request.getIncludeDatasetResponses())) {
+            datasetResponses = new ArrayList<>(requested.length);
+        }
+        for (int dataset : requested) {
+            boolean inDataset = variant >= 0 && contig.inDataset(variant, dataset);
+            exists |= inDataset;
+            if (datasetResponses != null) {
+                BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+                datasetResponse.setDatasetId(index.getDatasetIds().get(dataset));
+                datasetResponse.setExists(inDataset);
+                datasetResponses.add(datasetResponse);
+            }
+        }
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId(name);
+        response.setAlleleRequest(request);
+        response.setExists(exists);
+        response.setDatasetAlleleResponses(datasetResponses);
+        return response;
+    }
+
+    @Override
+    public BeaconAlleleResponse getBeaconAlleleResponse(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName(referenceName);
+        request.setStart(start);
+        request.setReferenceBases(referenceBases);
+        request.setAlternateBases(alternateBases);
+        request.setAssemblyId(assemblyId);
+        request.setDatasetIds(datasetIds);
+        request.setIncludeDatasetResponses(includeDatasetResponses);
+        return getBeaconAlleleResponse(request);
+    }
+
+    @Override
+    public BeaconRegionResponse getBeaconRegionResponse(BeaconRegionRequest request) throws BeaconException {
+        checkAssembly(request.getAssemblyId());
+
+        int[] requested = getRequestedDatasets(request.getDatasetIds());
+        VariantIndex.Contig contig = index.getContig(request.getReferenceName());
+        int from = contig == null ? 0 : contig.lowerBound(request.getStart());
+        int to = contig == null ? 0 : contig.lowerBound(request.getEnd());
+
+        long variantCount = contig == null ? 0 : contig.count(from, to, requested);
+        List<BeaconDatasetAlleleResponse> datasetResponses = null;
+        if (Boolean.TRUE.equals(request.getIncludeDatasetResponses())) {
+            datasetResponses = new ArrayList<>(requested.length);
+            for (int dataset : requested) {
+                long datasetCount = contig == null ? 0 : contig.count(from, to, new int[]{dataset});
+                BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+                datasetResponse.setDatasetId(index.getDatasetIds().get(dataset));
+                datasetResponse.setExists(datasetCount > 0);
+                datasetResponse.setVariantCount(datasetCount);
+                datasetResponses.add(datasetResponse);
+            }
+        }
+
+        BeaconRegionResponse response = new BeaconRegionResponse();
+        response.setBeaconId(name);
+        response.setRegionRequest(request);
+        response.setExists(variantCount > 0);
+        response.setVariantCount(variantCount);
+        response.setDatasetRegionResponses(datasetResponses);
+        return response;
+    }
+
+    @Override
+    public Beacon getBeacon() throws BeaconException {
+        return beacon;
+    }
+
+    /**
+     * @param requestedAssemblyId assembly id of the request, may be null
+     * @throws BeaconException if the request is for another assembly than the one the beacon serves
+     */
+    private void checkAssembly(String requestedAssemblyId) throws BeaconException {
+        if (requestedAssemblyId != null && !assemblyId.equalsIgnoreCase(requestedAssemblyId)) {
+            throw new BeaconException(Reason.INVALID_REQUEST,
+                                      "Beacon " + name + " serves assembly " + assemblyId + ", not " + requestedAssemblyId);
+        }
+    }
+
+    /**
+     * @param requestedIds dataset ids of the request
+     * @return positions in the index of the served datasets which were requested, or of every served dataset if none
+     * were
+     */
+    private int[] getRequestedDatasets(List<String> requestedIds) {
+        if (requestedIds == null || requestedIds.isEmpty()) {
+            return servedDatasets;
+        }
+        int[] requested = new int[requestedIds.size()];
+        int count = 0;
+        for (String datasetId : requestedIds) {
+            Integer dataset = datasets.get(datasetId);
+            if (dataset != null) {
+                requested[count++] = dataset;
+            }
+        }
+        return Arrays.copyOf(requested, count);
+    }
+
+    private Beacon createBeacon(String organizationName, String description) {
+        BeaconOrganization organization = new BeaconOrganization();
+        organization.setId(organizationName == null ? name : organizationName);
+        organization.setName(organizationName == null ? name : organizationName);
+        organization.setInfo(Collections.emptyMap());
+
+        List<BeaconDataset> beaconDatasets = new ArrayList<>(datasetIds.size());
+        for (String datasetId : datasetIds) {
+            BeaconDataset dataset = new BeaconDataset();
+            dataset.setId(datasetId);
+            dataset.setName(datasetId);
+            dataset.setAssemblyId(assemblyId);
+            dataset.setVariantCount(index.getVariantCount(datasets.get(datasetId)));
+            dataset.setInfo(Collections.emptyMap());
+            beaconDatasets.add(dataset);
+        }
+
+        Beacon beacon = new Beacon();
+        beacon.setId(name);
+        beacon.setName(name);
+        beacon.setApiVersion(API_VERSION);
+        beacon.setOrganization(organization);
+        beacon.setDescription(description);
+        beacon.setDatasets(beaconDatasets);
+        beacon.setInfo(Collections.emptyMap());
+        return beacon;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters.vcf;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Offline builder of the variant index served by the VcfBeaconAdapter. Every input VCF file (plain text, gzip or bgzip
+ * compressed) is one dataset: a variant exists in a dataset if the file has a record for it. Multi-allelic records are
+ * split into one variant per alternate allele, and symbolic alleles are skipped. Contig names are normalized so that
+ * "chr1" and "1" are the same contig, and positions are stored 0-based like the start of a beacon request.
+ * <p>
+ * The index is a single file of sections which are memory-mapped by {@link VariantIndex}:
+ * <pre>
+ * header      int magic, int version
+ * per contig  int[n] sorted positions, long[n] allele keys (see AlleleCodec), and for every dataset a bitmap of n bits
+ *             marking the variants present in it
+ * dictionary  int[count + 1] offsets into a blob of the allele pairs which could not be packed
+ * footer      assembly id, dataset ids and variant counts, contig names, sizes and section offsets
+ * trailer     long offset of the footer
+ * </pre>
+ * Usage: {@code java -cp <classpath> com.dnastack.beacon.beaconizer.adapters.vcf.VcfIndexBuilder <index> <assemblyId>
+ * <datasetId>=<vcf> [<datasetId>=<vcf> ...]}
+ */
+public class VcfIndexBuilder {
+
+    static final int MAGIC = 0x42564958;
+    static final int VERSION = 1;
+
+    private final String assemblyId;
+    private final List<String> datasetIds = new ArrayList<>();
+    private final Map<String, ContigBuilder> contigs = new LinkedHashMap<>();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<byte[]> dictionaryEntries = new ArrayList<>();
+    private long skipped;
+
+    public VcfIndexBuilder(String assemblyId) {
+        this.assemblyId = assemblyId;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: VcfIndexBuilder <index> <assemblyId> <datasetId>=<vcf> [<datasetId>=<vcf> ...]");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        VcfIndexBuilder builder = new VcfIndexBuilder(args[1]);
+        for (int i = 2; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected <datasetId>=<vcf>, got " + args[i]);
+            }
+            builder.addDataset(args[i].substring(0, separator), Paths.get(args[i].substring(separator + 1)));
+        }
+        long variants = builder.write(Paths.get(args[0]));
+        System.out.printf("Indexed %d variants of %d datasets in %.1f s, skipped %d alleles%n",
+                          variants,
+                          builder.datasetIds.size(),
+                          (System.nanoTime() - start) / 1e9,
+                          builder.skipped);
+    }
+
+    /**
+     * Read the variants of a dataset from a VCF file
+     *
+     * @param datasetId id of the dataset
+     * @param vcf       VCF file, compressed if its name ends with .gz or .bgz
+     * @throws IOException if the file could not be read or is not a valid VCF file
+     */
+    public void addDataset(String datasetId, Path vcf) throws IOException {
+        if (datasetIds.contains(datasetId)) {
+            throw new IllegalArgumentException("Dataset " + datasetId + " is added more than once");
+        }
+        int dataset = datasetIds.size();
+        datasetIds.add(datasetId);
+
+        try (BufferedReader reader = open(vcf)) {
+            String line;
+            for (long number = 1; (line = reader.readLine()) != null; number++) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] fields = line.split("\t", 6);
+                if (fields.length < 5) {
+                    throw new IOException(vcf + ":" + number + ": expected at least 5 columns");
+                }
+                long start;
+                try {
+                    start = Long.parseLong(fields[1]) - 1;
+                } catch (NumberFormatException e) {
+                    throw new IOException(vcf + ":" + number + ": invalid position " + fields[1]);
+                }
+                addRecord(AlleleCodec.normalizeContig(fields[0]), start, fields[3], fields[4], dataset);
+            }
+        }
+    }
+
+    private void addRecord(String contig, long start, String ref, String alts, int dataset) {
+        if (start < 0 || start > Integer.MAX_VALUE) {
+            skipped++;
+            return;
+        }
+        String referenceBases = AlleleCodec.normalizeBases(ref);
+        for (String alt : alts.split(",")) {
+            String alternateBases = AlleleCodec.normalizeBases(alt);
+            if (alternateBases.isEmpty() || alternateBases.equals(".") || isSymbolic(alternateBases)) {
+                skipped++;
+                continue;
+            }
+            contigs.computeIfAbsent(contig, name -> new ContigBuilder())
+                   .add((int) start, encode(referenceBases, alternateBases), dataset);
+        }
+    }
+
+    private static boolean isSymbolic(String alt) {
+        return alt.indexOf('<') >= 0 || alt.indexOf('[') >= 0 || alt.indexOf(']') >= 0 || alt.equals("*");
+    }
+
+    private long encode(String ref, String alt) {
+        long key = AlleleCodec.pack(ref, alt);
+        if (key != AlleleCodec.NOT_PACKED) {
+            return key;
+        }
+        Integer id = dictionary.get(ref + '\t' + alt);
+        if (id == null) {
+            id = dictionaryEntries.size();
+            dictionary.put(ref + '\t' + alt, id);
+            dictionaryEntries.add(AlleleCodec.dictionaryEntry(ref, alt));
+        }
+        return AlleleCodec.dictionaryKey(id);
+    }
+
+    private static BufferedReader open(Path vcf) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(vcf), 1 << 16);
+        String name = vcf.getFileName().toString();
+        if (name.endsWith(".gz") || name.endsWith(".bgz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Write the index
+     *
+     * @param index path of the index file
+     * @return number of distinct variants in the index
+     * @throws IOException if the index could not be written
+     */
+    public long write(Path index) throws IOException {
+        long[] variantCounts = new long[datasetIds.size()];
+        long variants = 0;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long offset = 8;
+
+            List<long[]> sections = new ArrayList<>();
+            for (ContigBuilder contig : contigs.values()) {
+                int n = contig.sortAndMerge(datasetIds.size());
+                long positionsOffset = offset;
+                for (int i = 0; i < n; i++) {
+                    out.writeInt(contig.positions[i]);
+                }
+                offset += 4L * n;
+                if (n % 2 == 1) {
+                    out.writeInt(0);
+                    offset += 4;
+                }
+
+                long allelesOffset = offset;
+                for (int i = 0; i < n; i++) {
+                    out.writeLong(contig.keys[i]);
+                }
+                offset += 8L * n;
+
+                long bitmapsOffset = offset;
+                for (int dataset = 0; dataset < datasetIds.size(); dataset++) {
+                    long[] bitmap = contig.bitmaps[dataset];
+                    for (long word : bitmap) {
+                        out.writeLong(word);
+                        variantCounts[dataset] += Long.bitCount(word);
+                    }
+                    offset += 8L * bitmap.length;
+                }
+
+                sections.add(new long[]{n, positionsOffset, allelesOffset, bitmapsOffset});
+                variants += n;
+                contig.release();
+            }
+
+            long dictionaryOffset = offset;
+            int blobOffset = 0;
+            for (byte[] entry : dictionaryEntries) {
+                out.writeInt(blobOffset);
+                blobOffset += entry.length;
+            }
+            out.writeInt(blobOffset);
+            offset += 4L * (dictionaryEntries.size() + 1);
+            long blobStart = offset;
+            for (byte[] entry : dictionaryEntries) {
+                out.write(entry);
+            }
+            offset += blobOffset;
+
+            long footerOffset = offset;
+            out.writeUTF(assemblyId);
+            out.writeInt(datasetIds.size());
+            for (int dataset = 0; dataset < datasetIds.size(); dataset++) {
+                out.writeUTF(datasetIds.get(dataset));
+                out.writeLong(variantCounts[dataset]);
+            }
+            out.writeInt(contigs.size());
+            Iterator<long[]> section = sections.iterator();
+            for (String name : contigs.keySet()) {
+                long[] values = section.next();
+                out.writeUTF(name);
+                out.writeInt((int) values[0]);
+                out.writeLong(values[1]);
+                out.writeLong(values[2]);
+                out.writeLong(values[3]);
+            }
+            out.writeInt(dictionaryEntries.size());
+            out.writeLong(dictionaryOffset);
+            out.writeLong(blobStart);
+            out.writeLong(footerOffset);
+        }
+        return variants;
+    }
+
+    /**
+     * Variants of a contig, collected in growable primitive arrays as they are read
+     */
+    private static class ContigBuilder {
+
+        private int size;
+        private int[] positions = new int[1024];
+        private long[] keys = new long[1024];
+        private int[] datasets = new int[1024];
+        private long[][] bitmaps;
+
+        void add(int position, long key, int dataset) {
+            if (size == positions.length) {
+                int capacity = size + (size >> 1);
+                positions = Arrays.copyOf(positions, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                datasets = Arrays.copyOf(datasets, capacity);
+            }
+            positions[size] = position;
+            keys[size] = key;
+            datasets[size] = dataset;
+            size++;
+        }
+
+        /**
+         * Sort the records by position and allele key, and merge the records of the same variant into one variant with
+         * a bit set in the bitmap of every dataset it was found in
+         *
+         * @return number of distinct variants
+         */
+        int sortAndMerge(int datasetCount) {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            sort(order, new int[size], 0, size);
+
+            int[] sortedPositions = new int[size];
+            long[] sortedKeys = new long[size];
+            int[] variantOf = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int record = order[i];
+                if (n == 0 || sortedPositions[n - 1] != positions[record] || sortedKeys[n - 1] != keys[record]) {
+                    sortedPositions[n] = positions[record];
+                    sortedKeys[n] = keys[record];
+                    n++;
+                }
+                variantOf[i] = n - 1;
+            }
+
+            bitmaps = new long[datasetCount][(n + 63) >>> 6];
+            for (int i = 0; i < size; i++) {
+                int variant = variantOf[i];
+                bitmaps[datasets[order[i]]][variant >>> 6] |= 1L << (variant & 63);
+            }
+            positions = sortedPositions;
+            keys = sortedKeys;
+            datasets = null;
+            return n;
+        }
+
+        void release() {
+            positions = null;
+            keys = null;
+            bitmaps = null;
+        }
+
+        /**
+         * Merge sort of record numbers by position, then allele key
+         */
+        private void sort(int[] order, int[] buffer, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sort(order, buffer, from, middle);
+            sort(order, buffer, middle, to);
+            if (compare(order[middle - 1], order[middle]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            for (int i = from, left = from, right = middle; i < to; i++) {
+                if (right >= to || left < middle && compare(buffer[left], buffer[right]) <= 0) {
+                    order[i] = buffer[left++];
+                } else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+
+        private int compare(int a, int b) {
+            int result = Integer.compare(positions[a], positions[b]);
+            return result != 0 ? result : Long.compare(keys[a], keys[b]);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import com.dnastack.beacon.beaconizer.cache.AlleleResponseCache.Loader;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight coalescing of identical allele requests. While a call to a beacon's adapter is in progress, requests
+ * with the same normalized key join it and receive its response or its error instead of calling the adapter again.
+ * Requests only join a call which started less than {@value #WINDOW_PROPERTY} milliseconds ago, so a slow call does not
+ * hold back fresh answers for longer than that; a window of 0 disables coalescing. The call is forgotten as soon as it
+ * completes, so nothing is kept beyond what the response cache decides to keep.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AlleleRequestCoalescer {
+
+    public static final String WINDOW_PROPERTY = "beaconizer.coalesce.window";
+
+    private static final long DEFAULT_WINDOW = 2000L;
+
+    private final Map<AlleleRequestKey, Call> calls = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> coalesced = new ConcurrentHashMap<>();
+
+    private long windowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW);
+
+    @PostConstruct
+    public void init() {
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(ConfigUtils.getLongProperty(WINDOW_PROPERTY, DEFAULT_WINDOW));
+    }
+
+    /**
+     * Call the loader, or join an identical call which is already in progress
+     *
+     * @param key    normalized request
+     * @param loader call to the adapter
+     * @return future of the allele response of the call
+     */
+    public CompletableFuture<BeaconAlleleResponse> load(AlleleRequestKey key, Loader loader) {
+        if (windowNanos <= 0) {
+            return loader.load();
+        }
+
+        long now = System.nanoTime();
+        Call own = new Call(now);
+        Call call = calls.compute(key, (k, current) -> current != null && now - current.started < windowNanos ? current : own);
+        if (call != own) {
+            coalesced.computeIfAbsent(key.getBeaconName(), name -> new LongAdder()).increment();
+            // A dependent stage, so that a caller which gives up cannot cancel the call for the others
+            return call.thenApply(response -> response);
+        }
+
+        CompletableFuture<BeaconAlleleResponse> loaded;
+        try {
+            loaded = loader.load();
+        } catch (RuntimeException | Error e) {
+            loaded = FutureUtils.failed(e);
+        }
+        loaded.whenComplete((response, failure) -> {
+            calls.remove(key, own);
+            if (failure == null) {
+                own.complete(response);
+            } else {
+                own.completeExceptionally(FutureUtils.unwrap(failure));
+            }
+        });
+        return call.thenApply(response -> response);
+    }
+
+    /**
+     * Stop new requests from joining the calls in progress to the passed beacons, e.g. because their adapters changed.
+     * Requests which already joined still receive the result.
+     *
+     * @param beaconNames names of beacons
+     */
+    public void invalidateAll(Set<String> beaconNames) {
+        calls.keySet().removeIf(key -> beaconNames.contains(key.getBeaconName()));
+    }
+
+    /**
+     * @return number of requests per beacon which joined a call in progress instead of calling the adapter, sorted by
+     * beacon name
+     */
+    public Map<String, Long> getCoalesced() {
+        Map<String, Long> counts = new TreeMap<>();
+        coalesced.forEach((name, count) -> counts.put(name, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Call to an adapter in progress
+     */
+    private static class Call extends CompletableFuture<BeaconAlleleResponse> {
+
+        private final long started;
+
+        private Call(long started) {
+            this.started = started;
+        }
+    }
+}
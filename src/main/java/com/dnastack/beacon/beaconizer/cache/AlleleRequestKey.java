@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Normalized form of an allele request sent to a specific beacon. Requests which only differ in the order of their
+ * dataset ids, or in a missing versus false includeDatasetResponses flag, produce equal keys, so GET and POST queries
+ * share the same cache entries.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class AlleleRequestKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String beaconName;
+    private final String referenceName;
+    private final Long start;
+    private final String referenceBases;
+    private final String alternateBases;
+    private final String assemblyId;
+    private final List<String> datasetIds;
+    private final boolean includeDatasetResponses;
+
+    private AlleleRequestKey(String beaconName, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) {
+        this.beaconName = beaconName;
+        this.referenceName = referenceName;
+        this.start = start;
+        this.referenceBases = referenceBases;
+        this.alternateBases = alternateBases;
+        this.assemblyId = assemblyId;
+        this.datasetIds = sorted(datasetIds);
+        this.includeDatasetResponses = Boolean.TRUE.equals(includeDatasetResponses);
+    }
+
+    public static AlleleRequestKey of(String beaconName, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) {
+        return new AlleleRequestKey(beaconName,
+                                    referenceName,
+                                    start,
+                                    referenceBases,
+                                    alternateBases,
+                                    assemblyId,
+                                    datasetIds,
+                                    includeDatasetResponses);
+    }
+
+    public static AlleleRequestKey of(String beaconName, BeaconAlleleRequest request) {
+        return new AlleleRequestKey(beaconName,
+                                    request.getReferenceName(),
+                                    request.getStart(),
+                                    request.getReferenceBases(),
+                                    request.getAlternateBases(),
+                                    request.getAssemblyId(),
+                                    request.getDatasetIds(),
+                                    request.getIncludeDatasetResponses());
+    }
+
+    private static List<String> sorted(List<String> datasetIds) {
+        if (datasetIds == null || datasetIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> copy = new ArrayList<>(datasetIds);
+        Collections.sort(copy);
+        return Collections.unmodifiableList(copy);
+    }
+}
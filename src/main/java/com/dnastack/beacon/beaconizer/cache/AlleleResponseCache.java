@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconDatasetAlleleResponse;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory cache of allele responses, keyed by beacon name and normalized request. Eviction uses Caffeine's
+ * W-TinyLFU policy, which only admits new entries that are requested more often than the entries they would replace,
+ * so a skewed workload keeps its popular variants cached.
+ * <p>
+ * The cache is bounded by the number of entries ({@value #MAX_ENTRIES_PROPERTY}), or by an estimate of the retained
+ * bytes if {@value #MAX_BYTES_PROPERTY} is set. The time to live defaults to {@value #TTL_PROPERTY} and can be
+ * overridden per beacon with a config value of the same name in its AdapterConfig. A time to live of 0 disables caching
+ * for that beacon.
+ * <p>
+ * Behind the local cache sits the cluster-wide {@link SharedAlleleResponseCache}, which is consulted before the adapter
+ * is called whenever the application server is clustered.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AlleleResponseCache {
+
+    public static final String MAX_ENTRIES_PROPERTY = "beaconizer.cache.maxEntries";
+    public static final String MAX_BYTES_PROPERTY = "beaconizer.cache.maxBytes";
+    public static final String TTL_PROPERTY = "beaconizer.cache.ttl";
+
+    private static final long DEFAULT_MAX_ENTRIES = 10000L;
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+
+    @Inject
+    BeaconizerDao dao;
+
+    @Inject
+    AlleleRequestCoalescer alleleRequestCoalescer;
+
+    @Inject
+    SharedAlleleResponseCache sharedAlleleResponseCache;
+
+    Ticker ticker = Ticker.systemTicker();
+
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+
+    private Cache<AlleleRequestKey, BeaconAlleleResponse> cache;
+
+    private long defaultTtl;
+
+    @PostConstruct
+    public void init() {
+        defaultTtl = ConfigUtils.getLongProperty(TTL_PROPERTY, DEFAULT_TTL);
+        long maxBytes = ConfigUtils.getLongProperty(MAX_BYTES_PROPERTY, 0L);
+
+        Caffeine<AlleleRequestKey, BeaconAlleleResponse> builder = Caffeine.newBuilder()
+                                                                           .expireAfter(new TtlExpiry())
+                                                                           .ticker(ticker)
+                                                                           .recordStats();
+        if (maxBytes > 0) {
+            builder.maximumWeight(maxBytes).weigher(AlleleResponseCache::estimateSize);
+        } else {
+            builder.maximumSize(ConfigUtils.getLongProperty(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES));
+        }
+        cache = builder.build();
+    }
+
+    /**
+     * Return the cached response for the key, or call the loader and cache its result. Responses carrying an error are
+     * never cached. Identical requests which miss at the same time share a single call to the loader. On a local miss
+     * the response is first looked up in the cluster, and responses of the loader are shared with the cluster.
+     * <p>
+     * Cached and coalesced responses are shared between requests, so every caller gets its own shallow copy, which
+     * echoes the caller's request rather than the one which loaded the response.
+     *
+     * @param key     normalized request
+     * @param request request of the caller
+     * @param loader  call to the adapter
+     * @return future of the allele response, failed if the loader fails
+     */
+    public CompletableFuture<BeaconAlleleResponse> get(AlleleRequestKey key, BeaconAlleleRequest request, Loader loader) {
+        long ttl = getTtl(key.getBeaconName());
+        if (ttl <= 0) {
+            return alleleRequestCoalescer.load(key, loader).thenApply(response -> copyFor(response, request));
+        }
+
+        BeaconAlleleResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(copyFor(cached, request));
+        }
+        return alleleRequestCoalescer.load(key, () -> sharedAlleleResponseCache.get(key).thenCompose(shared -> {
+            if (shared != null) {
+                return CompletableFuture.completedFuture(shared);
+            }
+            return loader.load().thenApply(response -> {
+                sharedAlleleResponseCache.put(key, response, ttl);
+                return response;
+            });
+        })).thenApply(response -> {
+            if (response != null && response.getError() == null) {
+                cache.put(key, response);
+            }
+            return copyFor(response, request);
+        });
+    }
+
+    /**
+     * Shallow copy of a shared response, answering the passed request
+     */
+    private static BeaconAlleleResponse copyFor(BeaconAlleleResponse response, BeaconAlleleRequest request) {
+        if (response == null) {
+            return null;
+        }
+
+        BeaconAlleleResponse copy = new BeaconAlleleResponse();
+        copy.setBeaconId(response.getBeaconId());
+        copy.setExists(response.getExists());
+        copy.setError(response.getError());
+        copy.setAlleleRequest(request);
+        copy.setDatasetAlleleResponses(response.getDatasetAlleleResponses());
+        return copy;
+    }
+
+    /**
+     * Remove all of the cached responses of a beacon, forget its configured time to live, and stop new requests from
+     * joining its calls in progress
+     *
+     * @param beaconName name of beacon
+     */
+    public void invalidate(String beaconName) {
+        ttls.remove(beaconName);
+        alleleRequestCoalescer.invalidateAll(Collections.singleton(beaconName));
+        sharedAlleleResponseCache.invalidateAll(Collections.singleton(beaconName));
+        cache.asMap().keySet().removeIf(key -> key.getBeaconName().equals(beaconName));
+    }
+
+    /**
+     * Remove all of the cached responses of the passed beacons in a single pass over the cache, forget their configured
+     * time to live, and stop new requests from joining their calls in progress
+     *
+     * @param beaconNames names of beacons
+     */
+    public void invalidateAll(Set<String> beaconNames) {
+        ttls.keySet().removeAll(beaconNames);
+        alleleRequestCoalescer.invalidateAll(beaconNames);
+        sharedAlleleResponseCache.invalidateAll(beaconNames);
+        cache.asMap().keySet().removeIf(key -> beaconNames.contains(key.getBeaconName()));
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return approximate number of cached responses
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    private long getTtl(String beaconName) {
+        return ttls.computeIfAbsent(beaconName, name -> {
+            try {
+                AdapterConfig config = dao.find(name);
+                return ConfigUtils.getLongConfigValue(config, TTL_PROPERTY, defaultTtl);
+            } catch (BeaconException e) {
+                return defaultTtl;
+            }
+        });
+    }
+
+    /**
+     * Rough estimate of the bytes retained by a cached response, used when the cache is bounded in bytes
+     */
+    private static int estimateSize(AlleleRequestKey key, BeaconAlleleResponse response) {
+        int size = 256 + sizeOf(key.getReferenceBases()) + sizeOf(key.getAlternateBases());
+        if (response.getDatasetAlleleResponses() != null) {
+            for (BeaconDatasetAlleleResponse datasetResponse : response.getDatasetAlleleResponses()) {
+                size += 128 + sizeOf(datasetResponse.getDatasetId()) + sizeOf(datasetResponse.getNote()) + sizeOf(
+                        datasetResponse.getExternalUrl());
+            }
+        }
+        return size;
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    /**
+     * Call to the adapter made when a response is not cached. Failures are reported through the returned future.
+     */
+    public interface Loader {
+
+        CompletableFuture<BeaconAlleleResponse> load();
+    }
+
+    /**
+     * Expires entries after the time to live of the beacon they belong to
+     */
+    private class TtlExpiry implements Expiry<AlleleRequestKey, BeaconAlleleResponse> {
+
+        @Override
+        public long expireAfterCreate(AlleleRequestKey key, BeaconAlleleResponse value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(getTtl(key.getBeaconName()));
+        }
+
+        @Override
+        public long expireAfterUpdate(AlleleRequestKey key, BeaconAlleleResponse value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(AlleleRequestKey key, BeaconAlleleResponse value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.resilience.AdapterInvoker;
+import com.dnastack.beacon.beaconizer.util.BeaconAdapterFactory;
+import com.dnastack.beacon.beaconizer.util.BeaconExecutor;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import lombok.Getter;
+import org.ga4gh.beacon.Beacon;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Refresh-ahead cache of beacon metadata. Each beacon is loaded from its adapter on first use and stored together with
+ * its serialized JSON, so metadata requests never call the adapter or serialize the beacon again. The cached beacons
+ * are reloaded in the background every {@value #REFRESH_INTERVAL_PROPERTY} milliseconds, and the previous value keeps
+ * being served while a reload is running or if it fails. Concurrent requests for a beacon which is not cached yet share
+ * a single call to its adapter.
+ * <p>
+ * The JSON of each beacon is kept as a {@link CachedRepresentation} with its ETag and gzip encoding, which are computed
+ * again only when a reload changes the JSON. Its Cache-Control header is {@value #CACHE_CONTROL_PROPERTY}, which can be
+ * overridden per beacon with a config value of the same name. The listing of every beacon is kept the same way, and is
+ * rebuilt in the background whenever a beacon is loaded, changes on reload or is invalidated, so listing requests only
+ * hash and compress the JSON while some beacons are not cached yet.
+ * <p>
+ * Every invalidation of a beacon moves it to a new generation. Loads and reloads only store their result if the beacon
+ * is still in the generation they started in, so a call to the old adapter which completes after the invalidation
+ * cannot put its beacon back into the cache.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BeaconMetadataCache {
+
+    public static final String REFRESH_INTERVAL_PROPERTY = "beaconizer.metadata.refreshInterval";
+
+    public static final String CACHE_CONTROL_PROPERTY = "beaconizer.metadata.cacheControl";
+
+    private static final long DEFAULT_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String DEFAULT_CACHE_CONTROL = "no-cache";
+
+    private static final Logger LOGGER = Logger.getLogger(BeaconMetadataCache.class.getName());
+
+    @Inject
+    BeaconizerDao dao;
+
+    @Inject
+    BeaconAdapterFactory beaconAdapterFactory;
+
+    @Inject
+    BeaconExecutor beaconExecutor;
+
+    @Inject
+    AdapterInvoker adapterInvoker;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    private final Map<String, CachedBeacon> beacons = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<CachedBeacon>> loading = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean listingScheduled = new AtomicBoolean();
+
+    private final Object listingLock = new Object();
+
+    private ScheduledFuture<?> refreshTask;
+
+    private volatile CachedRepresentation listing;
+
+    @PostConstruct
+    public void init() {
+        long interval = ConfigUtils.getLongProperty(REFRESH_INTERVAL_PROPERTY, DEFAULT_REFRESH_INTERVAL);
+        if (interval > 0) {
+            refreshTask = scheduler.scheduleWithFixedDelay(this::refreshAll, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+    }
+
+    /**
+     * Return the cached beacon, loading it from its adapter if it has not been cached yet. The adapter is called on the
+     * adapter pool, so the calling thread does not wait for it, and requests which arrive while it is being loaded wait
+     * for the same call.
+     *
+     * @param name name of beacon
+     * @return future of the cached beacon, failed if the beacon is not cached and could not be loaded
+     */
+    public CompletableFuture<CachedBeacon> get(String name) {
+        long generation = getGeneration(name);
+        CachedBeacon cached = beacons.get(name);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<CachedBeacon> own = new CompletableFuture<>();
+        CompletableFuture<CachedBeacon> current = loading.putIfAbsent(name, own);
+        if (current != null) {
+            // A dependent stage, so that a caller which gives up cannot cancel the load for the others
+            return current.thenApply(beacon -> beacon);
+        }
+
+        cached = beacons.get(name);
+        if (cached != null) {
+            // Stored just before the previous load was forgotten
+            loading.remove(name, own);
+            own.complete(cached);
+            return own;
+        }
+
+        CompletableFuture<CachedBeacon> loaded;
+        try {
+            BeaconAdapter adapter = beaconAdapterFactory.getAdapter(name);
+            loaded = adapterInvoker.invokeAsync(name, adapter::getBeacon)
+                                   .thenApply(beacon -> store(name, beacon, generation));
+        } catch (BeaconException | RuntimeException e) {
+            loaded = FutureUtils.failed(e);
+        }
+        loaded.whenComplete((beacon, failure) -> {
+            loading.remove(name, own);
+            if (failure == null) {
+                own.complete(beacon);
+            } else {
+                own.completeExceptionally(FutureUtils.unwrap(failure));
+            }
+        });
+        return own.thenApply(beacon -> beacon);
+    }
+
+    /**
+     * Return the cached beacon without loading it
+     *
+     * @param name name of beacon
+     * @return cached beacon, or null if it has not been cached yet
+     */
+    public CachedBeacon getIfPresent(String name) {
+        return beacons.get(name);
+    }
+
+    /**
+     * Drop the cached beacon, so that it is loaded again on next use. Loads which are still running when the beacon is
+     * invalidated complete for their callers, but are not cached.
+     *
+     * @param name name of beacon
+     */
+    public void invalidate(String name) {
+        generations.merge(name, 1L, Long::sum);
+        loading.remove(name);
+        beacons.remove(name);
+        scheduleListing();
+    }
+
+    private long getGeneration(String name) {
+        return generations.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Return the representation of the listing of every registered beacon, as built after the last change to the
+     * cached beacons. The listing uses the global {@value #CACHE_CONTROL_PROPERTY}.
+     *
+     * @return cached representation of the listing, or null if some beacons are not cached yet
+     */
+    public CachedRepresentation getListing() {
+        return listing;
+    }
+
+    /**
+     * Form the representation of a listing which could not be served from the cache, because some of its beacons are
+     * not cached or had to be replaced by placeholders
+     *
+     * @param entries CachedBeacons and placeholder Beacons, in registration order
+     * @return representation of the listing
+     */
+    public CachedRepresentation formListing(List<?> entries) {
+        return CachedRepresentation.of(toJson(entries), System.getProperty(CACHE_CONTROL_PROPERTY, DEFAULT_CACHE_CONTROL));
+    }
+
+    private CachedBeacon load(String name, long generation) throws BeaconException {
+        BeaconAdapter adapter = beaconAdapterFactory.getAdapter(name);
+        return store(name, adapterInvoker.invoke(name, adapter::getBeacon), generation);
+    }
+
+    /**
+     * Serialize a beacon loaded from its adapter and replace the cached one, reusing its representation if the JSON is
+     * unchanged. The beacon is not cached if it was invalidated since the load started.
+     */
+    private CachedBeacon store(String name, Beacon beacon, long generation) {
+        byte[] json = JsonUtils.toJsonBytes(beacon);
+        AdapterConfig config = null;
+        try {
+            config = dao.find(name);
+        } catch (BeaconException e) {
+            // Removed while loading, the global setting applies until the beacon is invalidated
+        }
+        String cacheControl = ConfigUtils.getSetting(config, CACHE_CONTROL_PROPERTY, DEFAULT_CACHE_CONTROL);
+
+        CachedBeacon previous = beacons.get(name);
+        CachedRepresentation representation;
+        if (previous == null) {
+            representation = CachedRepresentation.of(json, cacheControl);
+        } else {
+            representation = previous.getRepresentation().update(json, cacheControl);
+        }
+        CachedBeacon cached = new CachedBeacon(beacon, representation);
+
+        // Invalidations move the beacon to a new generation before they remove it, and the removal waits for this update
+        CachedBeacon stored = beacons.compute(name, (key, current) -> getGeneration(name) == generation ? cached : current);
+        if (stored == cached && (previous == null || previous.getRepresentation() != representation)) {
+            scheduleListing();
+        }
+        return cached;
+    }
+
+    /**
+     * Rebuild the listing on the scheduler, unless a rebuild is already waiting to run
+     */
+    private void scheduleListing() {
+        if (!listingScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(this::buildListing);
+        } catch (RejectedExecutionException e) {
+            listingScheduled.set(false);
+            listing = null;
+        }
+    }
+
+    /**
+     * Build the listing from the cached beacons, reusing the previous representation if the JSON is unchanged. The
+     * listing is dropped while some registered beacons are not cached, and listing requests load them instead.
+     */
+    private void buildListing() {
+        synchronized (listingLock) {
+            listingScheduled.set(false);
+
+            List<String> names = dao.listRegisteredBeacons();
+            CachedBeacon[] entries = new CachedBeacon[names.size()];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = beacons.get(names.get(i));
+                if (entries[i] == null) {
+                    listing = null;
+                    return;
+                }
+            }
+
+            byte[] json = toJson(Arrays.asList(entries));
+            String cacheControl = System.getProperty(CACHE_CONTROL_PROPERTY, DEFAULT_CACHE_CONTROL);
+            CachedRepresentation previous = listing;
+            listing = previous == null ? CachedRepresentation.of(json, cacheControl) : previous.update(json, cacheControl);
+        }
+    }
+
+    /**
+     * Concatenate the JSON of the passed CachedBeacons and placeholder Beacons into a JSON array
+     */
+    private static byte[] toJson(List<?> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+        boolean first = true;
+        for (Object entry : entries) {
+            if (!first) {
+                out.write(',');
+            }
+            byte[] json = entry instanceof CachedBeacon ? ((CachedBeacon) entry).getJson() : JsonUtils.toJsonBytes(entry);
+            out.write(json, 0, json.length);
+            first = false;
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * Reload every cached beacon on the adapter executor. A beacon whose previous reload is still running is skipped.
+     */
+    private void refreshAll() {
+        for (String name : beacons.keySet()) {
+            if (!refreshing.add(name)) {
+                continue;
+            }
+            long generation = getGeneration(name);
+            try {
+                beaconExecutor.submit(() -> {
+                    try {
+                        return load(name, generation);
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Could not refresh beacon " + name + ": " + e.getMessage());
+                        return null;
+                    } finally {
+                        refreshing.remove(name);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                refreshing.remove(name);
+            }
+        }
+    }
+
+    /**
+     * A Beacon together with its cached JSON representation
+     */
+    @Getter
+    public static final class CachedBeacon {
+
+        private final Beacon beacon;
+        private final CachedRepresentation representation;
+
+        CachedBeacon(Beacon beacon, CachedRepresentation representation) {
+            this.beacon = beacon;
+            this.representation = representation;
+        }
+
+        /**
+         * @return UTF-8 encoded JSON of the beacon
+         */
+        public byte[] getJson() {
+            return representation.getJson();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A JSON body which is served as it is over and over, together with everything needed to serve it cheaply: a strong
+ * ETag derived from a hash of the JSON, the JSON compressed with gzip, and the Cache-Control header to send with it.
+ * Both are computed once when the representation is created, and kept for as long as the JSON does not change.
+ */
+@Getter
+public final class CachedRepresentation {
+
+    private final byte[] json;
+
+    /**
+     * JSON compressed with gzip, or null if compression does not make it any smaller
+     */
+    private final byte[] gzip;
+
+    private final String etag;
+
+    private final String gzipEtag;
+
+    private final String cacheControl;
+
+    private CachedRepresentation(byte[] json, byte[] gzip, String etag, String gzipEtag, String cacheControl) {
+        this.json = json;
+        this.gzip = gzip;
+        this.etag = etag;
+        this.gzipEtag = gzipEtag;
+        this.cacheControl = cacheControl;
+    }
+
+    /**
+     * Create the representation of a JSON body, hashing and compressing it
+     *
+     * @param json         UTF-8 encoded JSON
+     * @param cacheControl value of the Cache-Control header, or null to send none
+     * @return cached representation
+     */
+    public static CachedRepresentation of(byte[] json, String cacheControl) {
+        String hash = hash(json);
+        byte[] gzip = gzip(json);
+        return new CachedRepresentation(json,
+                                        gzip.length < json.length ? gzip : null,
+                                        '"' + hash + '"',
+                                        '"' + hash + "-gzip\"",
+                                        cacheControl);
+    }
+
+    /**
+     * Return this representation if the JSON and Cache-Control are unchanged, or a new one if they are not, so that
+     * unchanged bodies are not hashed and compressed again
+     *
+     * @param json         UTF-8 encoded JSON
+     * @param cacheControl value of the Cache-Control header, or null to send none
+     * @return cached representation of the JSON
+     */
+    public CachedRepresentation update(byte[] json, String cacheControl) {
+        if (!Arrays.equals(this.json, json)) {
+            return of(json, cacheControl);
+        } else if (!Objects.equals(this.cacheControl, cacheControl)) {
+            return new CachedRepresentation(this.json, gzip, etag, gzipEtag, cacheControl);
+        }
+        return this;
+    }
+
+    /**
+     * Find out whether the client already has this representation, in either encoding. ETags are compared weakly, as
+     * required for If-None-Match.
+     *
+     * @param ifNoneMatch value of the If-None-Match header, may be null
+     * @return true if one of the listed ETags is the ETag of this representation, or the header is *
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return first 128 bits of the SHA-256 hash of the passed bytes, in hex
+     */
+    private static String hash(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        StringBuilder hex = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) {
+            hex.append(Character.forDigit(digest[i] >> 4 & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Compress the passed bytes at the best compression level, which is worth it for bodies compressed only once
+     */
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
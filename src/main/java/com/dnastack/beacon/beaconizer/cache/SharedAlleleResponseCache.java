@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import com.dnastack.beacon.beaconizer.util.AvroUtils;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.infinispan.AdvancedCache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.manager.EmbeddedCacheManager;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cluster-wide tier of the allele response cache, stored in a distributed Infinispan cache of one of the application
+ * server's cache containers, looked up under the JNDI name set in {@value #CONTAINER_PROPERTY}. Every node of the
+ * cluster sees the responses cached by the others, so a popular variant is only requested from a beacon once per
+ * cluster rather than once per node.
+ * <p>
+ * Keys are the normalized requests written out as strings and values are the responses in the Avro binary encoding, so
+ * that entries can be read by every node without application classes on the container's class path. Entries live for
+ * at most {@value #LIFESPAN_PROPERTY} milliseconds, and each node keeps at most {@value #MAX_ENTRIES_PROPERTY} of them.
+ * If the container cannot be found or has no cluster transport, or the lifespan is 0, the tier is disabled and only the
+ * local cache is used. The distributed cache belongs to the container, which stops it along with the application.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SharedAlleleResponseCache {
+
+    public static final String CONTAINER_PROPERTY = "beaconizer.sharedCache.container";
+    public static final String LIFESPAN_PROPERTY = "beaconizer.sharedCache.lifespan";
+    public static final String MAX_ENTRIES_PROPERTY = "beaconizer.sharedCache.maxEntries";
+
+    static final String CACHE_NAME = "beaconizer-allele-responses";
+
+    private static final String DEFAULT_CONTAINER = "java:jboss/infinispan/container/web";
+    private static final long DEFAULT_LIFESPAN = TimeUnit.MINUTES.toMillis(5);
+    private static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final Logger LOGGER = Logger.getLogger(SharedAlleleResponseCache.class.getName());
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private AdvancedCache<String, byte[]> cache;
+
+    private long lifespan;
+
+    @PostConstruct
+    public void init() {
+        if (ConfigUtils.getLongProperty(LIFESPAN_PROPERTY, DEFAULT_LIFESPAN) <= 0) {
+            return;
+        }
+
+        String container = System.getProperty(CONTAINER_PROPERTY, DEFAULT_CONTAINER);
+
+        EmbeddedCacheManager cacheManager;
+        try {
+            cacheManager = InitialContext.doLookup(container);
+        } catch (NamingException | ClassCastException e) {
+            LOGGER.info("Cache container " + container + " is not available, allele responses are only cached locally");
+            return;
+        }
+        start(cacheManager);
+    }
+
+    /**
+     * Start the distributed cache in the passed cache container, unless the container is not clustered
+     *
+     * @param cacheManager cache container
+     */
+    void start(EmbeddedCacheManager cacheManager) {
+        lifespan = ConfigUtils.getLongProperty(LIFESPAN_PROPERTY, DEFAULT_LIFESPAN);
+        if (lifespan <= 0) {
+            return;
+        }
+        if (cacheManager.getCacheManagerConfiguration().transport().transport() == null) {
+            LOGGER.info("Cache container is not clustered, allele responses are only cached locally");
+            return;
+        }
+
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.clustering()
+               .cacheMode(CacheMode.DIST_ASYNC)
+               .stateTransfer()
+               .awaitInitialTransfer(false);
+        builder.eviction()
+               .strategy(EvictionStrategy.LRU)
+               .maxEntries(ConfigUtils.getIntProperty(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES));
+        builder.expiration().lifespan(lifespan);
+        cacheManager.defineConfiguration(CACHE_NAME, builder.build());
+
+        cache = cacheManager.<String, byte[]>getCache(CACHE_NAME).getAdvancedCache();
+        LOGGER.info("Sharing allele responses with " + (cacheManager.getMembers().size() - 1) + " other nodes of cluster " + cacheManager
+                .getClusterName());
+    }
+
+    /**
+     * @return true if responses are shared with the cluster
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Find a response cached by any node of the cluster. The lookup does not block the calling thread. Entries which
+     * cannot be read, and failures to reach the cluster, count as misses.
+     *
+     * @param key normalized request
+     * @return future of the cached response, or of null if there is none
+     */
+    public CompletableFuture<BeaconAlleleResponse> get(AlleleRequestKey key) {
+        AdvancedCache<String, byte[]> cache = this.cache;
+        if (cache == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<BeaconAlleleResponse> result = new CompletableFuture<>();
+        try {
+            cache.getAsync(toString(key)).attachListener(future -> result.complete(decode(key, future)));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not read shared allele response for " + key, e);
+            misses.increment();
+            result.complete(null);
+        }
+        return result;
+    }
+
+    private BeaconAlleleResponse decode(AlleleRequestKey key, Future<byte[]> future) {
+        BeaconAlleleResponse response = null;
+        try {
+            byte[] bytes = future.get();
+            if (bytes != null) {
+                response = AvroUtils.fromBytes(bytes, BeaconAlleleResponse.class);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not read shared allele response for " + key, e);
+        }
+
+        if (response == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return response;
+    }
+
+    /**
+     * Share a response with the cluster without waiting for the other nodes. Responses carrying an error are never
+     * shared, and failures to reach the cluster are ignored.
+     *
+     * @param key      normalized request
+     * @param response response of the adapter
+     * @param ttl      time to live of the beacon's responses in milliseconds, capped by the lifespan of the tier
+     */
+    public void put(AlleleRequestKey key, BeaconAlleleResponse response, long ttl) {
+        AdvancedCache<String, byte[]> cache = this.cache;
+        if (cache == null || response == null || response.getError() != null || ttl <= 0) {
+            return;
+        }
+
+        try {
+            cache.withFlags(Flag.IGNORE_RETURN_VALUES)
+                 .putAsync(toString(key), AvroUtils.toBytes(response), Math.min(ttl, lifespan), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not share allele response for " + key, e);
+        }
+    }
+
+    /**
+     * Remove the responses of the passed beacons held by this node from every node of the cluster. Responses which this
+     * node does not own are left to the nodes owning them, which invalidate the beacons when they see them change too,
+     * so a stale response outlives the change by at most the lifespan of the tier.
+     *
+     * @param beaconNames names of beacons
+     */
+    public void invalidateAll(Set<String> beaconNames) {
+        AdvancedCache<String, byte[]> cache = this.cache;
+        if (cache == null) {
+            return;
+        }
+
+        try {
+            List<String> keys = new ArrayList<>();
+            for (String key : cache.withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_REMOTE_LOOKUP).keySet()) {
+                if (beaconNames.contains(key.substring(0, Math.max(key.indexOf(SEPARATOR), 0)))) {
+                    keys.add(key);
+                }
+            }
+            for (String key : keys) {
+                cache.withFlags(Flag.IGNORE_RETURN_VALUES, Flag.SKIP_REMOTE_LOOKUP).remove(key);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not invalidate shared allele responses", e);
+        }
+    }
+
+    /**
+     * @return number of responses found in the cluster
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of responses not found in the cluster
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static String toString(AlleleRequestKey key) {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append(key.getBeaconName())
+               .append(SEPARATOR)
+               .append(key.getReferenceName())
+               .append(SEPARATOR)
+               .append(key.getStart())
+               .append(SEPARATOR)
+               .append(key.getReferenceBases())
+               .append(SEPARATOR)
+               .append(key.getAlternateBases())
+               .append(SEPARATOR)
+               .append(key.getAssemblyId())
+               .append(SEPARATOR)
+               .append(key.isIncludeDatasetResponses());
+        for (String datasetId : key.getDatasetIds()) {
+            builder.append(SEPARATOR).append(datasetId);
+        }
+        return builder.toString();
+    }
+}
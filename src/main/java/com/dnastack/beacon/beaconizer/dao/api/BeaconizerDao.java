@@ -24,9 +24,15 @@
 package com.dnastack.beacon.beaconizer.dao.api;
 
 import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
 import com.dnastack.beacon.utils.AdapterConfig;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Data access interface which provides basic methods for getting information beacons that the beaconizer is configured
@@ -37,6 +43,11 @@ import java.util.List;
  */
 public interface BeaconizerDao {
 
+    /**
+     * Config value naming the group of beacons which serve the same data
+     */
+    String REPLICA_GROUP_PROPERTY = "beaconizer.replicaGroup";
+
     /**
      * Find a named beacon resource and return a new BeaconRequester object wrapping the resource
      *
@@ -53,4 +64,46 @@ public interface BeaconizerDao {
      */
     List<String> listRegisteredBeacons();
 
+    /**
+     * Check whether a beacon is registered without loading its definition
+     *
+     * @param name name of beacon
+     * @return true if a beacon with the name is registered
+     */
+    default boolean isRegistered(String name) {
+        return listRegisteredBeacons().contains(name);
+    }
+
+    /**
+     * Load the beacon definitions again if their source has changed. The new definitions replace the old ones
+     * atomically, and are only used if they are valid.
+     *
+     * @return names of the beacons which were added, removed or changed, or an empty set if nothing changed
+     * @throws BeaconException if the source has changed but could not be loaded
+     */
+    default Set<String> reload() throws BeaconException {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Map the beacons which declare a {@value #REPLICA_GROUP_PROPERTY} config value to that value. Implementations
+     * should collect the values when they load the definitions, the default implementation looks up every beacon.
+     *
+     * @return replica group of each beacon which has one
+     */
+    default Map<String, String> getReplicaGroups() {
+        Map<String, String> groups = new HashMap<>();
+        for (String name : listRegisteredBeacons()) {
+            try {
+                String group = ConfigUtils.getConfigValue(find(name), REPLICA_GROUP_PROPERTY);
+                if (group != null) {
+                    groups.put(name, group);
+                }
+            } catch (BeaconNotFoundException e) {
+                // Removed while listing
+            }
+        }
+        return groups;
+    }
+
 }
@@ -25,95 +25,128 @@ package com.dnastack.beacon.beaconizer.dao.impl;
 
 import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
 import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
 import com.dnastack.beacon.exceptions.BeaconException;
 import com.dnastack.beacon.utils.AdapterConfig;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.lang.reflect.Type;
-import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.logging.Logger;
 
 /**
  * BeaconizerDao implementation. Default implementation which loads into memory a list of beacons defined
  * in a json configuration file.
+ * <p>
+ * The file is read from the path given by the {@value #CONFIG_PATH_PROPERTY} system property, or from the class path
+ * if the property is not set. A file on disk can be reloaded: when its size or modification time changes, the new
+ * definitions are parsed, validated and swapped in as a whole, so readers see either the old or the new registry and
+ * never take a lock.
+ * <p>
+ * If the path is a directory, definitions are read from every .json file in it by a {@link DirectoryBeaconizerDao},
+ * which only keeps an index of names in memory and parses definitions when they are first used. This suits registries
+ * with many thousands of beacons, at most {@value #CACHE_SIZE_PROPERTY} of which are kept parsed at a time.
  *
  * @author patmagee
  * @author Miro Cupak (mirocupak@gmail.com)
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class BeaconizerDaoImpl implements BeaconizerDao {
 
+    public static final String CONFIG_PATH_PROPERTY = "beaconizer.config";
+    public static final String CACHE_SIZE_PROPERTY = "beaconizer.config.cacheSize";
+
     private static final String CONFIG_FILE = "beacons.json";
-    Map<String, AdapterConfig> beacons;
 
-    /**
-     * Parse the resource file containing the beacon definition and convert it to a json string
-     *
-     * @return JSON string
-     * @throws URISyntaxException
-     * @throws IOException
-     */
-    private String resourceParser() throws IOException {
-        ClassLoader cl = getClass().getClassLoader();
+    private static final long DEFAULT_CACHE_SIZE = 1000;
 
-        InputStream stream = cl.getResource(CONFIG_FILE).openStream();
-        InputStreamReader reader = new InputStreamReader(stream);
-        BufferedReader br = new BufferedReader(reader);
+    private static final Logger LOGGER = Logger.getLogger(BeaconizerDaoImpl.class.getName());
 
-        String line;
-        String jsonString = "";
-        while ((line = br.readLine()) != null) {
-            jsonString += line;
-        }
+    private final Gson gson = new GsonBuilder().create();
 
-        return jsonString;
-    }
+    private volatile Registry registry;
+
+    private DirectoryBeaconizerDao directory;
 
     /**
-     * Given a json string, parse the input and convert it to BeaconDTO objects
+     * Given a reader over the json configuration, parse the input and convert it to AdapterConfig objects
      *
-     * @param json json string from resourceParser
-     * @return List of BeaconDTO's
+     * @param reader reader over the configuration
+     * @return List of AdapterConfigs
      */
-    private List<AdapterConfig> parseBeacons(String json) {
-        JsonParser parser = new JsonParser();
-        Gson gson = new GsonBuilder().create();
+    private List<AdapterConfig> parseBeacons(Reader reader) {
         Type type = new TypeToken<List<AdapterConfig>>() {
 
         }.getType();
 
-        List<AdapterConfig> adapters = gson.fromJson(json, type);
+        return gson.fromJson(reader, type);
+    }
 
-        return adapters;
+    /**
+     * Build a registry from the parsed definitions, rejecting definitions which could not be served
+     *
+     * @param adapters parsed definitions
+     * @param version  size and modification time of the source, or null if it cannot change
+     * @return new registry
+     * @throws BeaconException if the definitions are not valid
+     */
+    private Registry newRegistry(List<AdapterConfig> adapters, String version) throws BeaconException {
+        if (adapters == null || adapters.size() < 1) {
+            throw new BeaconException("No beacons defined in beacon.json");
+        }
+
+        Map<String, AdapterConfig> beacons = new HashMap<>();
+        Map<String, String> definitions = new HashMap<>();
+        Map<String, String> groups = new HashMap<>();
+        for (AdapterConfig adapter : adapters) {
+            if (adapter.getName() == null || adapter.getAdapterClass() == null) {
+                throw new BeaconException("Every beacon must have a name and an adapterClass");
+            }
+            if (beacons.put(adapter.getName(), adapter) != null) {
+                throw new BeaconException("Beacon " + adapter.getName() + " is defined more than once");
+            }
+            definitions.put(adapter.getName(), gson.toJson(adapter));
+            String group = ConfigUtils.getConfigValue(adapter, REPLICA_GROUP_PROPERTY);
+            if (group != null) {
+                groups.put(adapter.getName(), group);
+            }
+        }
+        return new Registry(beacons, definitions, groups, version);
     }
 
     /**
-     * Initialize the Beacons and load them into memopry from file
+     * Initialize the Beacons and load them into memory from file
      */
     @PostConstruct
     public void init() {
-
         try {
-            String jsonString = resourceParser();
-            List<AdapterConfig> adapters = parseBeacons(jsonString);
-
-            if (adapters.size() < 1) {
-                throw new BeaconException("No beacons defined in beacon.json");
-            }
-
-            beacons = new HashMap<>();
-
-            for (AdapterConfig adapter : adapters) {
-                beacons.put(adapter.getName(), adapter);
+            Path path = getConfigPath();
+            if (path == null) {
+                try (Reader reader = new InputStreamReader(getClass().getClassLoader()
+                                                                     .getResource(CONFIG_FILE)
+                                                                     .openStream(), StandardCharsets.UTF_8)) {
+                    registry = newRegistry(parseBeacons(reader), null);
+                }
+            } else if (Files.isDirectory(path)) {
+                directory = new DirectoryBeaconizerDao(path,
+                                                       ConfigUtils.getLongProperty(CACHE_SIZE_PROPERTY,
+                                                                                   DEFAULT_CACHE_SIZE));
+            } else {
+                registry = load(path);
             }
         } catch (Exception e) {
             RuntimeException re = new RuntimeException(e.getMessage());
@@ -122,12 +155,69 @@ public class BeaconizerDaoImpl implements BeaconizerDao {
         }
     }
 
+    private static Path getConfigPath() {
+        String path = System.getProperty(CONFIG_PATH_PROPERTY);
+        return path == null ? null : Paths.get(path);
+    }
+
+    private Registry load(Path path) throws IOException, BeaconException {
+        String version = getVersion(path);
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return newRegistry(parseBeacons(reader), version);
+        } catch (JsonParseException e) {
+            throw new BeaconException("Could not parse " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static String getVersion(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> reload() throws BeaconException {
+        if (directory != null) {
+            return directory.reload();
+        }
+
+        Path path = getConfigPath();
+        Registry current = registry;
+        if (path == null || current.version == null) {
+            return Collections.emptySet();
+        }
+
+        Registry loaded;
+        try {
+            if (getVersion(path).equals(current.version)) {
+                return Collections.emptySet();
+            }
+            loaded = load(path);
+        } catch (IOException e) {
+            throw new BeaconException("Could not read " + path + ": " + e.getMessage());
+        }
+
+        Set<String> changed = new HashSet<>(current.beacons.keySet());
+        changed.addAll(loaded.beacons.keySet());
+        changed.removeIf(name -> Objects.equals(current.definitions.get(name), loaded.definitions.get(name)));
+
+        registry = loaded;
+        LOGGER.info("Reloaded " + loaded.names.size() + " beacons from " + path + ", " + changed.size() + " changed");
+        return changed;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public AdapterConfig find(String name) throws BeaconNotFoundException {
-        AdapterConfig beacon = beacons.get(name);
+        if (directory != null) {
+            return directory.find(name);
+        }
+
+        AdapterConfig beacon = registry.beacons.get(name);
         if (beacon == null) {
             throw new BeaconNotFoundException("Could not find beacon with name: " + name);
         }
@@ -135,7 +225,47 @@ public class BeaconizerDaoImpl implements BeaconizerDao {
     }
 
     public List<String> listRegisteredBeacons() {
-        Set<String> keys = beacons.keySet();
-        return new ArrayList<>(keys);
+        return directory != null ? directory.listRegisteredBeacons() : registry.names;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRegistered(String name) {
+        return directory != null ? directory.isRegistered(name) : registry.beacons.containsKey(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getReplicaGroups() {
+        return directory != null ? directory.getReplicaGroups() : registry.groups;
+    }
+
+    /**
+     * Immutable set of beacon definitions, listed in the order of their names
+     */
+    private static class Registry {
+
+        private final Map<String, AdapterConfig> beacons;
+        private final Map<String, String> definitions;
+        private final Map<String, String> groups;
+        private final List<String> names;
+        private final String version;
+
+        private Registry(Map<String, AdapterConfig> beacons,
+                         Map<String, String> definitions,
+                         Map<String, String> groups,
+                         String version) {
+            this.beacons = Collections.unmodifiableMap(beacons);
+            this.definitions = definitions;
+            this.groups = Collections.unmodifiableMap(groups);
+            List<String> names = new ArrayList<>(beacons.keySet());
+            Collections.sort(names);
+            this.names = Collections.unmodifiableList(names);
+            this.version = version;
+        }
     }
 }
@@ -0,0 +1,435 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.dao.impl;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * BeaconizerDao implementation for large registries, which reads beacon definitions from every .json file in a
+ * directory. A file holds either a single definition or an array of them, so beacons can be kept one per file or
+ * sharded into a few larger files.
+ * <p>
+ * Startup reads the files one definition at a time to collect the names, replica groups and content fingerprints, and
+ * keeps the names in a sorted array next to the position of each definition. Full AdapterConfig objects are parsed on
+ * the first find and kept in a bounded cache, so memory use depends on the number of beacons in use rather than the
+ * number registered. Reloading only rescans the files whose size or modification time changed, reports the beacons
+ * whose definition changed, and swaps the index and the cache in as a whole.
+ * <p>
+ * Finding a definition in a sharded file skips over the definitions before it, so shards are best kept to a few
+ * hundred definitions each.
+ */
+public class DirectoryBeaconizerDao implements BeaconizerDao {
+
+    private static final String FILE_GLOB = "*.json";
+
+    private static final Logger LOGGER = Logger.getLogger(DirectoryBeaconizerDao.class.getName());
+
+    private final Gson gson = new GsonBuilder().create();
+
+    private final Path directory;
+    private final long cacheSize;
+
+    private volatile Index index;
+
+    /**
+     * Index the definitions in a directory
+     *
+     * @param directory directory containing the definitions
+     * @param cacheSize maximum number of parsed definitions to keep in memory
+     * @throws BeaconException if the directory could not be read or the definitions are not valid
+     */
+    public DirectoryBeaconizerDao(Path directory, long cacheSize) throws BeaconException {
+        this.directory = directory;
+        this.cacheSize = cacheSize;
+        this.index = load(listShards(), null, Collections.emptySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AdapterConfig find(String name) throws BeaconNotFoundException {
+        Index current = index;
+        int i = name == null ? -1 : Arrays.binarySearch(current.names, name);
+        if (i < 0) {
+            throw new BeaconNotFoundException("Could not find beacon with name: " + name);
+        }
+
+        AdapterConfig config = current.configs.getIfPresent(name);
+        if (config == null) {
+            config = read(current.shards[current.files[i]], current.ordinals[i], name, current.fingerprints[i]);
+            if (config == null) {
+                throw new BeaconNotFoundException("Could not load beacon with name: " + name);
+            }
+            current.configs.put(name, config);
+        }
+        return config;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> listRegisteredBeacons() {
+        return index.list;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRegistered(String name) {
+        return name != null && Arrays.binarySearch(index.names, name) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getReplicaGroups() {
+        return index.groups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> reload() throws BeaconException {
+        Index current = index;
+        List<Shard> shards = listShards();
+        if (Arrays.equals(current.shards, shards.toArray(new Shard[0]))) {
+            return Collections.emptySet();
+        }
+
+        Set<Shard> unchanged = new HashSet<>(Arrays.asList(current.shards));
+        unchanged.retainAll(shards);
+
+        Index loaded = load(shards, current, unchanged);
+
+        Set<String> changed = new HashSet<>();
+        current.collectChanged(loaded, changed);
+        loaded.collectChanged(current, changed);
+
+        for (Map.Entry<String, AdapterConfig> entry : current.configs.asMap().entrySet()) {
+            if (!changed.contains(entry.getKey())) {
+                loaded.configs.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        index = loaded;
+        LOGGER.info("Reloaded " + loaded.names.length + " beacons from " + directory + ", " + changed.size() + " changed");
+        return changed;
+    }
+
+    private List<Shard> listShards() throws BeaconException {
+        List<Shard> shards = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_GLOB)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    shards.add(new Shard(path.getFileName().toString(),
+                                         attributes.size(),
+                                         attributes.lastModifiedTime().toMillis()));
+                }
+            }
+        } catch (IOException e) {
+            throw new BeaconException("Could not read " + directory + ": " + e.getMessage());
+        }
+        shards.sort(Comparator.comparing(shard -> shard.file));
+        return shards;
+    }
+
+    /**
+     * Build a new index over the passed files. Entries in unchanged files are copied from the previous index, and only
+     * the other files are scanned.
+     */
+    private Index load(List<Shard> shards, Index previous, Set<Shard> unchanged) throws BeaconException {
+        List<Entry> entries = new ArrayList<>();
+        Map<Shard, Integer> kept = new HashMap<>();
+        for (int file = 0; file < shards.size(); file++) {
+            Shard shard = shards.get(file);
+            if (unchanged.contains(shard)) {
+                kept.put(shard, file);
+            } else {
+                scan(directory.resolve(shard.file), file, entries);
+            }
+        }
+        if (previous != null && !kept.isEmpty()) {
+            for (int i = 0; i < previous.names.length; i++) {
+                Integer file = kept.get(previous.shards[previous.files[i]]);
+                if (file != null) {
+                    entries.add(new Entry(previous.names[i],
+                                          file,
+                                          previous.ordinals[i],
+                                          previous.groups.get(previous.names[i]),
+                                          previous.fingerprints[i]));
+                }
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new BeaconException("No beacons defined in " + directory);
+        }
+
+        entries.sort(Comparator.comparing(entry -> entry.name));
+        String[] names = new String[entries.size()];
+        int[] files = new int[entries.size()];
+        int[] ordinals = new int[entries.size()];
+        long[] fingerprints = new long[entries.size()];
+        Map<String, String> groups = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            Entry entry = entries.get(i);
+            if (i > 0 && entry.name.equals(names[i - 1])) {
+                throw new BeaconException("Beacon " + entry.name + " is defined more than once");
+            }
+            names[i] = entry.name;
+            files[i] = entry.file;
+            ordinals[i] = entry.ordinal;
+            fingerprints[i] = entry.fingerprint;
+            if (entry.group != null) {
+                groups.put(entry.name, entry.group);
+            }
+        }
+
+        Cache<String, AdapterConfig> configs = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        return new Index(shards.toArray(new Shard[0]), names, files, ordinals, fingerprints, groups, configs);
+    }
+
+    /**
+     * Read a file one definition at a time, collecting the name, replica group and fingerprint of every definition. Only
+     * the definition being read is held in memory.
+     */
+    private void scan(Path path, int file, List<Entry> entries) throws BeaconException {
+        JsonParser parser = new JsonParser();
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                for (int ordinal = 0; reader.hasNext(); ordinal++) {
+                    entries.add(scanDefinition(parser.parse(reader), path, file, ordinal));
+                }
+                reader.endArray();
+            } else {
+                entries.add(scanDefinition(parser.parse(reader), path, file, -1));
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new BeaconException("Could not parse " + path + ": unexpected content after the definitions");
+            }
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            throw new BeaconException("Could not parse " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static Entry scanDefinition(JsonElement element, Path path, int file, int ordinal) throws BeaconException {
+        JsonObject definition = element.isJsonObject() ? element.getAsJsonObject() : null;
+        String name = getString(definition, "name");
+        if (name == null || getString(definition, "adapterClass") == null) {
+            throw new BeaconException("Every beacon must have a name and an adapterClass, see " + path);
+        }
+        return new Entry(name, file, ordinal, getReplicaGroup(definition), fingerprint(element.toString()));
+    }
+
+    /**
+     * @return value of the replica group config value of a definition, or null if it has none
+     */
+    private static String getReplicaGroup(JsonObject definition) {
+        JsonElement configValues = definition.get("configValues");
+        if (configValues == null || !configValues.isJsonArray()) {
+            return null;
+        }
+        for (JsonElement configValue : (JsonArray) configValues) {
+            if (configValue.isJsonObject() && REPLICA_GROUP_PROPERTY.equals(getString(configValue.getAsJsonObject(), "name"))) {
+                return getString(configValue.getAsJsonObject(), "value");
+            }
+        }
+        return null;
+    }
+
+    private static String getString(JsonObject object, String field) {
+        JsonElement value = object == null ? null : object.get(field);
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString() ? value.getAsString() : null;
+    }
+
+    /**
+     * @return first 64 bits of the SHA-256 hash of a definition, to tell whether it changed between reloads
+     */
+    private static long fingerprint(String definition) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(definition.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Parse a single definition, skipping over the ones before it. Returns null if the file no longer holds the indexed
+     * definition at that position, which can only happen if it changed after it was indexed, so a definition which was
+     * rejected by a reload is never served.
+     */
+    private AdapterConfig read(Shard shard, int ordinal, String name, long fingerprint) {
+        Path path = directory.resolve(shard.file);
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            if (ordinal >= 0) {
+                reader.beginArray();
+                for (int i = 0; i < ordinal && reader.hasNext(); i++) {
+                    reader.skipValue();
+                }
+            }
+            JsonElement definition = new JsonParser().parse(reader);
+            if (fingerprint(definition.toString()) != fingerprint) {
+                LOGGER.warning("Beacon " + name + " changed in " + path + " since it was indexed");
+                return null;
+            }
+            AdapterConfig config = gson.fromJson(definition, AdapterConfig.class);
+            return config != null && name.equals(config.getName()) ? config : null;
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            LOGGER.log(Level.WARNING, "Could not read beacon " + name + " from " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Definition file, compared by name, size and modification time. Only the file name is kept, since a Path per file
+     * would take more memory than the index itself in the one file per beacon layout.
+     */
+    private static class Shard {
+
+        private final String file;
+        private final long size;
+        private final long modified;
+
+        private Shard(String file, long size, long modified) {
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Shard)) {
+                return false;
+            }
+            Shard other = (Shard) o;
+            return size == other.size && modified == other.modified && file.equals(other.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, size, modified);
+        }
+    }
+
+    private static class Entry {
+
+        private final String name;
+        private final int file;
+        private final int ordinal;
+        private final String group;
+        private final long fingerprint;
+
+        private Entry(String name, int file, int ordinal, String group, long fingerprint) {
+            this.name = name;
+            this.file = file;
+            this.ordinal = ordinal;
+            this.group = group;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Immutable index of beacon names. Names are sorted, and the definition of names[i] is at position ordinals[i] of
+     * shards[files[i]] (or is the whole file if the ordinal is -1), and its content hashes to fingerprints[i]. Only the
+     * beacons with a replica group are in the groups map.
+     */
+    private static class Index {
+
+        private final Shard[] shards;
+        private final String[] names;
+        private final int[] files;
+        private final int[] ordinals;
+        private final long[] fingerprints;
+        private final List<String> list;
+        private final Map<String, String> groups;
+        private final Cache<String, AdapterConfig> configs;
+
+        private Index(Shard[] shards,
+                      String[] names,
+                      int[] files,
+                      int[] ordinals,
+                      long[] fingerprints,
+                      Map<String, String> groups,
+                      Cache<String, AdapterConfig> configs) {
+            this.shards = shards;
+            this.names = names;
+            this.files = files;
+            this.ordinals = ordinals;
+            this.fingerprints = fingerprints;
+            this.list = Collections.unmodifiableList(Arrays.asList(names));
+            this.groups = Collections.unmodifiableMap(groups);
+            this.configs = configs;
+        }
+
+        /**
+         * Add the names which are not in the other index, or whose definition differs from the one in the other index
+         */
+        private void collectChanged(Index other, Set<String> changed) {
+            for (int i = 0; i < names.length; i++) {
+                int j = Arrays.binarySearch(other.names, names[i]);
+                if (j < 0 || fingerprints[i] != other.fingerprints[j]) {
+                    changed.add(names[i]);
+                }
+            }
+        }
+    }
+}
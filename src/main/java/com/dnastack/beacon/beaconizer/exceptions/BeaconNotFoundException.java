@@ -27,6 +27,9 @@ import com.dnastack.beacon.exceptions.BeaconException;
 import com.dnastack.beacon.utils.Reason;
 
 /**
+ * Thrown when no beacon is registered under the requested name. Lookups of unknown names are common and always
+ * reported the same way, so the exception does not capture a stack trace.
+ *
  * @author patmagee
  * @author Miro Cupak (mirocupak@gmail.com)
  */
@@ -35,4 +38,9 @@ public class BeaconNotFoundException extends BeaconException {
     public BeaconNotFoundException(String msg) {
         super(Reason.ERROR, msg);
     }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
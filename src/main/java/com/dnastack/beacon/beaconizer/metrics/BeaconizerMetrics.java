@@ -0,0 +1,236 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.metrics;
+
+import com.dnastack.beacon.beaconizer.cache.AlleleRequestCoalescer;
+import com.dnastack.beacon.beaconizer.cache.AlleleResponseCache;
+import com.dnastack.beacon.beaconizer.cache.SharedAlleleResponseCache;
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.model.BeaconLimitStatus;
+import com.dnastack.beacon.beaconizer.resilience.AdapterInvoker;
+import com.dnastack.beacon.utils.Reason;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the per beacon request metrics, exported in the Prometheus text format together with the JSON timings,
+ * the response cache statistics, the number of coalesced requests and the state of each beacon's concurrency limit and
+ * circuit breaker. Requests to beacons which are not registered are all counted under the {@value #UNKNOWN_BEACON}
+ * beacon, so that arbitrary names cannot grow the registry.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BeaconizerMetrics {
+
+    public static final String UNKNOWN_BEACON = "_unknown";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @Inject
+    BeaconizerDao dao;
+
+    @Inject
+    AlleleResponseCache alleleResponseCache;
+
+    @Inject
+    SharedAlleleResponseCache sharedAlleleResponseCache;
+
+    @Inject
+    AlleleRequestCoalescer alleleRequestCoalescer;
+
+    @Inject
+    AdapterInvoker adapterInvoker;
+
+    private final Map<String, OperationMetrics[]> beacons = new ConcurrentHashMap<>();
+
+    /**
+     * @param name      name of beacon
+     * @param operation operation on the beacon
+     * @return metrics of the operation on the beacon
+     */
+    public OperationMetrics get(String name, Operation operation) {
+        OperationMetrics[] metrics = name == null ? null : beacons.get(name);
+        if (metrics == null) {
+            // Checked against the names only, so counting a request never loads a beacon definition
+            metrics = beacons.computeIfAbsent(name != null && dao.isRegistered(name) ? name : UNKNOWN_BEACON, key -> newMetrics());
+        }
+        return metrics[operation.ordinal()];
+    }
+
+    private static OperationMetrics[] newMetrics() {
+        OperationMetrics[] metrics = new OperationMetrics[Operation.values().length];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = new OperationMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format
+     *
+     * @param writer writer to write to
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        Map<String, OperationMetrics[]> sorted = new TreeMap<>(beacons);
+
+        header(writer, "beaconizer_requests_total", "counter", "Requests per beacon and operation");
+        for (Map.Entry<String, OperationMetrics[]> entry : sorted.entrySet()) {
+            for (Operation operation : Operation.values()) {
+                sample(writer, "beaconizer_requests_total", labels(entry.getKey(), operation), entry.getValue()[operation.ordinal()].getRequests());
+            }
+        }
+
+        header(writer, "beaconizer_request_errors_total", "counter", "Failed requests per beacon, operation and reason");
+        for (Map.Entry<String, OperationMetrics[]> entry : sorted.entrySet()) {
+            for (Operation operation : Operation.values()) {
+                for (Reason reason : Reason.values()) {
+                    sample(writer,
+                           "beaconizer_request_errors_total",
+                           labels(entry.getKey(), operation) + ",reason=\"" + reason.name() + "\"",
+                           entry.getValue()[operation.ordinal()].getErrors(reason));
+                }
+            }
+        }
+
+        header(writer, "beaconizer_requests_in_flight", "gauge", "Requests in progress per beacon and operation");
+        for (Map.Entry<String, OperationMetrics[]> entry : sorted.entrySet()) {
+            for (Operation operation : Operation.values()) {
+                sample(writer, "beaconizer_requests_in_flight", labels(entry.getKey(), operation), entry.getValue()[operation.ordinal()].getInFlight());
+            }
+        }
+
+        header(writer, "beaconizer_request_duration_seconds", "summary", "Request latency per beacon and operation");
+        for (Map.Entry<String, OperationMetrics[]> entry : sorted.entrySet()) {
+            for (Operation operation : Operation.values()) {
+                summary(writer,
+                        "beaconizer_request_duration_seconds",
+                        labels(entry.getKey(), operation),
+                        entry.getValue()[operation.ordinal()].getLatency());
+            }
+        }
+
+        header(writer, "beaconizer_json_serialize_seconds", "summary", "Time spent writing JSON entities");
+        summary(writer, "beaconizer_json_serialize_seconds", null, JsonMetrics.getSerialization());
+        header(writer, "beaconizer_json_deserialize_seconds", "summary", "Time spent reading JSON entities");
+        summary(writer, "beaconizer_json_deserialize_seconds", null, JsonMetrics.getDeserialization());
+
+        CacheStats stats = alleleResponseCache.getStats();
+        header(writer, "beaconizer_cache_hits_total", "counter", "Allele response cache hits");
+        sample(writer, "beaconizer_cache_hits_total", null, stats.hitCount());
+        header(writer, "beaconizer_cache_misses_total", "counter", "Allele response cache misses");
+        sample(writer, "beaconizer_cache_misses_total", null, stats.missCount());
+        header(writer, "beaconizer_cache_evictions_total", "counter", "Allele response cache evictions");
+        sample(writer, "beaconizer_cache_evictions_total", null, stats.evictionCount());
+        header(writer, "beaconizer_cache_entries", "gauge", "Allele responses in the cache");
+        sample(writer, "beaconizer_cache_entries", null, alleleResponseCache.getSize());
+        header(writer, "beaconizer_shared_cache_hits_total", "counter", "Allele responses found in the cluster-wide cache");
+        sample(writer, "beaconizer_shared_cache_hits_total", null, sharedAlleleResponseCache.getHits());
+        header(writer, "beaconizer_shared_cache_misses_total", "counter", "Allele responses not found in the cluster-wide cache");
+        sample(writer, "beaconizer_shared_cache_misses_total", null, sharedAlleleResponseCache.getMisses());
+
+        header(writer, "beaconizer_coalesced_total", "counter", "Allele requests to each beacon which shared a call already in progress");
+        for (Map.Entry<String, Long> entry : alleleRequestCoalescer.getCoalesced().entrySet()) {
+            sample(writer, "beaconizer_coalesced_total", beaconLabel(entry.getKey()), entry.getValue());
+        }
+
+        // Only the beacons which have been called, so that a scrape never loads definitions or creates limits
+        Map<String, BeaconLimitStatus> limits = new TreeMap<>();
+        for (String name : dao.listRegisteredBeacons()) {
+            BeaconLimitStatus status = adapterInvoker.getLimitStatusIfPresent(name);
+            if (status != null) {
+                limits.put(name, status);
+            }
+        }
+        header(writer, "beaconizer_adapter_limit", "gauge", "Current concurrency limit of each beacon's adapter");
+        for (BeaconLimitStatus status : limits.values()) {
+            sample(writer, "beaconizer_adapter_limit", beaconLabel(status.getBeaconId()), status.getLimit());
+        }
+        header(writer, "beaconizer_adapter_in_flight", "gauge", "Calls in progress to each beacon's adapter");
+        for (BeaconLimitStatus status : limits.values()) {
+            sample(writer, "beaconizer_adapter_in_flight", beaconLabel(status.getBeaconId()), status.getInFlight());
+        }
+        header(writer, "beaconizer_adapter_rejected_total", "counter", "Calls rejected by each beacon's concurrency limit");
+        for (BeaconLimitStatus status : limits.values()) {
+            sample(writer, "beaconizer_adapter_rejected_total", beaconLabel(status.getBeaconId()), status.getRejected());
+        }
+        header(writer, "beaconizer_adapter_short_circuited_total", "counter", "Calls rejected by each beacon's open circuit");
+        for (BeaconLimitStatus status : limits.values()) {
+            sample(writer, "beaconizer_adapter_short_circuited_total", beaconLabel(status.getBeaconId()), status.getShortCircuited());
+        }
+        header(writer, "beaconizer_adapter_timed_out_total", "counter", "Calls to each beacon's adapter which exceeded the deadline");
+        for (BeaconLimitStatus status : limits.values()) {
+            sample(writer, "beaconizer_adapter_timed_out_total", beaconLabel(status.getBeaconId()), status.getTimedOut());
+        }
+        header(writer, "beaconizer_adapter_hedged_total", "counter", "Calls to each beacon hedged to a replica");
+        for (BeaconLimitStatus status : limits.values()) {
+            sample(writer, "beaconizer_adapter_hedged_total", beaconLabel(status.getBeaconId()), status.getHedged());
+        }
+        writer.flush();
+    }
+
+    private static void header(Writer writer, String name, String type, String help) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer writer, String name, String labels, Number value) throws IOException {
+        writer.write(name);
+        if (labels != null) {
+            writer.write('{');
+            writer.write(labels);
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(value.toString());
+        writer.write('\n');
+    }
+
+    private static void summary(Writer writer, String name, String labels, LatencyHistogram histogram) throws IOException {
+        double[] values = histogram.getQuantileSeconds(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            String quantile = "quantile=\"" + QUANTILES[i] + "\"";
+            sample(writer, name, labels == null ? quantile : labels + "," + quantile, values[i]);
+        }
+        sample(writer, name + "_sum", labels, histogram.getSumSeconds());
+        sample(writer, name + "_count", labels, histogram.getCount());
+    }
+
+    private static String labels(String beacon, Operation operation) {
+        return beaconLabel(beacon) + ",operation=\"" + operation.getLabel() + "\"";
+    }
+
+    private static String beaconLabel(String beacon) {
+        return "beacon=\"" + beacon.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
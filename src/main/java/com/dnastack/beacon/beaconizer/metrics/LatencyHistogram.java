@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram. Latencies are recorded in
+ * microseconds, every power of two is split into {@value #SUB_BUCKETS} linear buckets, so quantiles are accurate to
+ * within about 6% from one microsecond up to several hours. Recording a value is a single atomic increment.
+ * <p>
+ * The count and sum cover every recorded latency, while the quantiles only cover the recent ones, so that they follow
+ * changes in latency: the buckets are kept in {@value #SLICES} slices of two minutes each, and the quantiles are
+ * computed over the slices of the last ten minutes. A slice is replaced when its time comes round again, and the few
+ * latencies recorded into it while it is being replaced are lost.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final int SLICES = 5;
+    private static final long SLICE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final AtomicReferenceArray<Slice> slices = new AtomicReferenceArray<>(SLICES);
+    private final long origin = System.nanoTime();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Buckets of the latencies recorded during one period of {@link #SLICE_NANOS}, numbered from the creation of the
+     * histogram
+     */
+    private static final class Slice {
+
+        private final long period;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private Slice(long period) {
+            this.period = period;
+        }
+    }
+
+    /**
+     * Record a latency
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        record(nanos, System.nanoTime());
+    }
+
+    void record(long nanos, long now) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        slice(period(now)).buckets.incrementAndGet(indexOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of the recorded latencies in seconds
+     */
+    public double getSumSeconds() {
+        return sumMicros.sum() / 1e6;
+    }
+
+    /**
+     * Estimate a quantile of the latencies recorded in the last ten minutes. Latencies recorded while the quantiles are
+     * computed may or may not be included.
+     *
+     * @param quantiles quantiles to compute, in ascending order between 0 and 1
+     * @return the latency at each quantile in seconds, or 0 if nothing has been recorded recently
+     */
+    public double[] getQuantileSeconds(double... quantiles) {
+        return getQuantileSeconds(System.nanoTime(), quantiles);
+    }
+
+    double[] getQuantileSeconds(long now, double... quantiles) {
+        long period = period(now);
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int s = 0; s < SLICES; s++) {
+            Slice slice = slices.get(s);
+            if (slice == null || slice.period <= period - SLICES) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = slice.buckets.get(i);
+                snapshot[i] += value;
+                total += value;
+            }
+        }
+
+        double[] values = new double[quantiles.length];
+        if (total == 0) {
+            return values;
+        }
+
+        int bucket = 0;
+        long seen = snapshot[0];
+        for (int i = 0; i < quantiles.length; i++) {
+            long rank = Math.max(1, (long) Math.ceil(quantiles[i] * total));
+            while (seen < rank && bucket < BUCKETS - 1) {
+                seen += snapshot[++bucket];
+            }
+            values[i] = (lowerBound(bucket) + upperBound(bucket)) / 2e6;
+        }
+        return values;
+    }
+
+    private long period(long now) {
+        return Math.max(0, now - origin) / SLICE_NANOS;
+    }
+
+    /**
+     * Return the slice of a period, replacing the slice of an older period which held its place
+     */
+    private Slice slice(long period) {
+        int index = (int) (period % SLICES);
+        Slice slice = slices.get(index);
+        while (slice == null || slice.period < period) {
+            Slice fresh = new Slice(period);
+            if (slices.compareAndSet(index, slice, fresh)) {
+                return fresh;
+            }
+            slice = slices.get(index);
+        }
+        // A newer slice, when the caller took its time before another thread moved on
+        return slice;
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        int subBucket = (int) (Math.min(micros >>> (exponent - SUB_BUCKET_BITS), 2 * SUB_BUCKETS - 1) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return lowerBound(index) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.metrics;
+
+import com.dnastack.beacon.utils.Reason;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request count, error counts by reason, in-flight requests and latency of a single operation on a single beacon. All
+ * counters are striped, so recording does not contend between request threads.
+ */
+public class OperationMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final Map<Reason, LongAdder> errors = new EnumMap<>(Reason.class);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics() {
+        for (Reason reason : Reason.values()) {
+            errors.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * Record the start of a request
+     *
+     * @return start time to pass to {@link #end(long, Reason)}
+     */
+    public long begin() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the end of a request
+     *
+     * @param start start time returned by {@link #begin()}
+     * @param error reason of the error, or null if the request succeeded
+     */
+    public void end(long start, Reason error) {
+        latency.record(System.nanoTime() - start);
+        inFlight.decrement();
+        requests.increment();
+        if (error != null) {
+            errors.get(error).increment();
+        }
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getErrors(Reason reason) {
+        return errors.get(reason).sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.metrics;
+
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent in each phase of a single request, reported to the client in a Server-Timing header when
+ * {@value #ENABLED_PROPERTY} is set. The timing of the current request is kept in the request property
+ * {@link #REQUEST_PROPERTY}, and bound to the container thread for as long as that thread handles the request, so the
+ * service layer can record phases without passing it around. Work which continues on other threads captures the
+ * timing with {@link #current()} before it leaves the request thread. Recording is a no-op when the header is disabled
+ * or no request is bound to the thread.
+ */
+public class ServerTiming {
+
+    public static final String ENABLED_PROPERTY = "beaconizer.serverTiming";
+
+    public static final String HEADER = "Server-Timing";
+
+    public static final String REQUEST_PROPERTY = ServerTiming.class.getName();
+
+    private static final boolean ENABLED = ConfigUtils.getBooleanProperty(ENABLED_PROPERTY, false);
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Phases of a request, in the order they are reported
+     */
+    public enum Phase {
+        PARSE("parse", "JSON parse"),
+        VALIDATE("validate", "Request validation"),
+        LOOKUP("lookup", "Adapter lookup"),
+        ADAPTER("adapter", "Adapter execution");
+
+        private final String metric;
+        private final String description;
+
+        Phase(String metric, String description) {
+            this.metric = metric;
+            this.description = description;
+        }
+    }
+
+    private final long start = System.nanoTime();
+
+    private final AtomicLongArray durations = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * @return true if requests should be timed
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return timing of the request bound to the current thread, or null if there is none
+     */
+    public static ServerTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a request timing to the current thread, replacing any previous binding. The thread which binds a timing must
+     * unbind it once it is done with the request.
+     *
+     * @param timing timing to bind, or null to unbind
+     */
+    public static void bind(ServerTiming timing) {
+        if (timing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timing);
+        }
+    }
+
+    /**
+     * Add the time elapsed since the passed start time to a phase of the request bound to the current thread
+     *
+     * @param phase phase to record
+     * @param start start of the phase as returned by System.nanoTime()
+     */
+    public static void record(Phase phase, long start) {
+        if (ENABLED) {
+            ServerTiming timing = CURRENT.get();
+            if (timing != null) {
+                timing.add(phase, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Add a duration to a phase of this request
+     *
+     * @param phase phase to record
+     * @param nanos duration in nanoseconds
+     */
+    public void add(Phase phase, long nanos) {
+        durations.addAndGet(phase.ordinal(), nanos);
+    }
+
+    /**
+     * Format the phases recorded so far, and the total time since the request started, as a Server-Timing header
+     * value. Phases which were not reached are left out.
+     *
+     * @return header value
+     */
+    public String toHeader() {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long nanos = durations.get(phase.ordinal());
+            if (nanos > 0) {
+                append(header, phase.metric, phase.description, nanos);
+            }
+        }
+        append(header, "total", "Total", System.nanoTime() - start);
+        return header.toString();
+    }
+
+    private static void append(StringBuilder header, String metric, String description, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(metric)
+              .append(";desc=\"")
+              .append(description)
+              .append("\";dur=")
+              .append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+}
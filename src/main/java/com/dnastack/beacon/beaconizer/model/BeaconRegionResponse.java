@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.model;
+
+import lombok.Data;
+import org.ga4gh.beacon.BeaconDatasetAlleleResponse;
+import org.ga4gh.beacon.BeaconError;
+
+import java.util.List;
+
+/**
+ * Response to a region request. The exists flag is true if any of the requested datasets has a variant in the region,
+ * and the variant count, if the beacon reports it, is the number of distinct variants in the region across the
+ * requested datasets. Dataset responses carry the same for every dataset.
+ */
+@Data
+public class BeaconRegionResponse {
+
+    private String beaconId;
+
+    private Boolean exists;
+
+    private Long variantCount;
+
+    private BeaconError error;
+
+    private BeaconRegionRequest regionRequest;
+
+    private List<BeaconDatasetAlleleResponse> datasetRegionResponses;
+
+}
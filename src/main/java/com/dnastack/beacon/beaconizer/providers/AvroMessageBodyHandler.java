@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import com.dnastack.beacon.beaconizer.util.AvroUtils;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.specific.SpecificRecord;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Message Body Handler for the Avro binary encoding of the GA4GH beacon model, whose classes are generated from the
+ * beacon's Avro schema. Each entity is a single datum encoded with the schema of its class, without any header.
+ * Batches are sent as Avro container files instead, see {@link #openContainer(InputStream, Class)} and
+ * {@link #createContainer(Class)}. The datum readers and writers are shared through AvroUtils.
+ */
+@Provider
+@Produces(AvroMessageBodyHandler.AVRO_BINARY)
+@Consumes(AvroMessageBodyHandler.AVRO_BINARY)
+public class AvroMessageBodyHandler implements MessageBodyReader<SpecificRecord>, MessageBodyWriter<SpecificRecord> {
+
+    /**
+     * Media type of the Avro binary encoding
+     */
+    public static final String AVRO_BINARY = "avro/binary";
+
+    /**
+     * Start reading an Avro container file of records of the passed class. The header is read straight away, and the
+     * records are read lazily as the returned stream is iterated.
+     *
+     * @param inputStream stream of the container file
+     * @param type        class of the records
+     * @return stream of records
+     * @throws BadRequestException if the stream is not an Avro container file
+     */
+    public static <T extends SpecificRecord> DataFileStream<T> openContainer(InputStream inputStream, Class<T> type) {
+        try {
+            return new DataFileStream<>(inputStream, AvroUtils.getReader(type));
+        } catch (IOException e) {
+            throw new BadRequestException("Request body is not an Avro container file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a writer of Avro container files of records of the passed class. Nothing is written until the file is
+     * started with {@link DataFileWriter#create(org.apache.avro.Schema, OutputStream)} and the schema of the class.
+     *
+     * @param type class of the records
+     * @return container file writer
+     */
+    public static <T extends SpecificRecord> DataFileWriter<T> createContainer(Class<T> type) {
+        return new DataFileWriter<>(AvroUtils.getWriter(type));
+    }
+
+    @Override
+    public boolean isReadable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
+        return SpecificRecord.class.isAssignableFrom(aClass);
+    }
+
+    @Override
+    public SpecificRecord readFrom(Class<SpecificRecord> aClass, Type type, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> multivaluedMap, InputStream inputStream) throws IOException, WebApplicationException {
+        try {
+            return AvroUtils.read(inputStream, aClass);
+        } catch (IOException | RuntimeException e) {
+            throw new BadRequestException("Request body is not a valid Avro " + aClass.getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
+        return SpecificRecord.class.isAssignableFrom(aClass);
+    }
+
+    @Override
+    public long getSize(SpecificRecord o, Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(SpecificRecord o, Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> multivaluedMap, OutputStream outputStream) throws IOException, WebApplicationException {
+        AvroUtils.write(outputStream, o);
+    }
+}
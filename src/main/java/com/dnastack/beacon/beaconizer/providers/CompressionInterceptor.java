@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the responses of {@link Compressed} resource methods with gzip on the fly, when the client accepts gzip
+ * and the response is larger than {@value #THRESHOLD_PROPERTY} bytes. Small responses are not worth the CPU, so the
+ * entity is buffered up to the threshold and sent as it is if it ends before reaching it. Once it crosses the
+ * threshold, the Content-Encoding header is set and the rest of the entity is compressed as it is written. A negative
+ * threshold disables compression.
+ */
+@Provider
+@Compressed
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ContainerRequestFilter, WriterInterceptor {
+
+    public static final String THRESHOLD_PROPERTY = "beaconizer.compression.threshold";
+
+    public static final String GZIP = "gzip";
+
+    private static final int DEFAULT_THRESHOLD = 8192;
+
+    private static final String PROPERTY = CompressionInterceptor.class.getName();
+
+    private final int threshold = ConfigUtils.getIntProperty(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+
+    /**
+     * Find out whether a client accepts gzip encoded responses
+     *
+     * @param acceptEncoding value of the Accept-Encoding header, may be null
+     * @return true if gzip, x-gzip or * is listed without a zero quality
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            int parameters = coding.indexOf(';');
+            String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+            if (name.equalsIgnoreCase(GZIP) || name.equalsIgnoreCase("x-gzip") || name.equals("*")) {
+                return parameters < 0 || !coding.substring(parameters + 1).replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (threshold >= 0 && acceptsGzip(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+            requestContext.setProperty(PROPERTY, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        if (threshold < 0) {
+            context.proceed();
+            return;
+        }
+
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (context.getProperty(PROPERTY) == null || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream outputStream = context.getOutputStream();
+        ThresholdOutputStream compressing = new ThresholdOutputStream(outputStream, headers, threshold);
+        context.setOutputStream(compressing);
+        try {
+            context.proceed();
+        } finally {
+            context.setOutputStream(outputStream);
+        }
+        compressing.finish();
+    }
+
+    /**
+     * Buffers the entity until it crosses the threshold, and then switches to gzip for the whole entity. The headers
+     * are only committed when the first byte reaches the container's stream, so they can still be changed when the
+     * decision is made.
+     */
+    private static class ThresholdOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final MultivaluedMap<String, Object> headers;
+        private final int threshold;
+        private ByteArrayOutputStream buffer;
+        private GZIPOutputStream gzip;
+
+        ThresholdOutputStream(OutputStream out, MultivaluedMap<String, Object> headers, int threshold) {
+            this.out = out;
+            this.headers = headers;
+            this.threshold = threshold;
+            this.buffer = new ByteArrayOutputStream(Math.min(threshold, 8192) + 1);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (gzip != null) {
+                gzip.write(b);
+            } else {
+                buffer.write(b);
+                compressIfLarge();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                gzip.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+                compressIfLarge();
+            }
+        }
+
+        private void compressIfLarge() throws IOException {
+            if (buffer.size() > threshold) {
+                headers.putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+                gzip = new GZIPOutputStream(out, 8192);
+                buffer.writeTo(gzip);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Flushing before the decision would commit the headers, and flushing gzip would hurt the compression
+        }
+
+        /**
+         * Write out whatever is left without closing the container's stream
+         */
+        void finish() throws IOException {
+            if (gzip != null) {
+                gzip.finish();
+            } else {
+                buffer.writeTo(out);
+            }
+            out.flush();
+        }
+    }
+}
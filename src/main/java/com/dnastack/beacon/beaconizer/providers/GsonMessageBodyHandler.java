@@ -23,8 +23,11 @@
  */
 package com.dnastack.beacon.beaconizer.providers;
 
+import com.dnastack.beacon.beaconizer.metrics.JsonMetrics;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -36,10 +39,15 @@ import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 import java.io.*;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Collection;
 
 /**
- * Gson Message Body Handler for serializing JSON data to and from auto generated Java classes
+ * Gson Message Body Handler for serializing JSON data to and from auto generated Java classes. Only the GA4GH beacon
+ * model and the Beaconizer's own response model are handled, everything else is left to the container's providers.
+ * JSON is streamed directly from and to the entity streams through per-thread buffers, and the time spent is recorded
+ * in JsonMetrics.
  *
  * @author patmagee
  * @author Miro Cupak (mirocupak@gmail.com)
@@ -49,43 +57,51 @@ import java.lang.reflect.Type;
 @Consumes(MediaType.APPLICATION_JSON)
 public class GsonMessageBodyHandler implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
 
-    private static final String UTF_8 = "UTF-8";
+    private static final String BEACON_MODEL_PACKAGE = "org.ga4gh.beacon.";
 
-    private Gson gson;
+    private static final String BEACONIZER_MODEL_PACKAGE = "com.dnastack.beacon.beaconizer.model.";
 
-    private Gson getGson() {
-        if (gson == null) {
-            gson = new GsonBuilder().create();
+    private final Gson gson = JsonUtils.getGson();
+
+    /**
+     * Whether the passed type is part of the beacon model, or a collection of beacon model objects
+     */
+    private static boolean isModelType(Class<?> aClass, Type type) {
+        if (Collection.class.isAssignableFrom(aClass)) {
+            if (!(type instanceof ParameterizedType)) {
+                return false;
+            }
+            Type elementType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            return elementType instanceof Class && isModelClass((Class<?>) elementType);
         }
-        return gson;
+        return isModelClass(aClass);
+    }
+
+    private static boolean isModelClass(Class<?> aClass) {
+        String name = aClass.getName();
+        return name.startsWith(BEACON_MODEL_PACKAGE) || name.startsWith(BEACONIZER_MODEL_PACKAGE);
     }
 
     @Override
     public boolean isReadable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
-        return true;
+        return isModelType(aClass, type);
     }
 
     @Override
     public Object readFrom(Class<Object> aClass, Type type, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> multivaluedMap, InputStream inputStream) throws IOException, WebApplicationException {
-        InputStreamReader streamReader = new InputStreamReader(inputStream, UTF_8);
+        long start = System.nanoTime();
+        Reader reader = ThreadLocalStreams.reader(inputStream);
         try {
-            Type jsonType;
-            if (type == null) {
-                jsonType = aClass;
-            } else if (aClass.equals(type)) {
-                jsonType = aClass;
-            } else {
-                jsonType = type;
-            }
-            return getGson().fromJson(streamReader, jsonType);
+            return gson.fromJson(new JsonReader(reader), type == null ? aClass : type);
         } finally {
-            streamReader.close();
+            reader.close();
+            JsonMetrics.getDeserialization().record(System.nanoTime() - start);
         }
     }
 
     @Override
     public boolean isWriteable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
-        return true;
+        return isModelType(aClass, type);
     }
 
     @Override
@@ -95,19 +111,13 @@ public class GsonMessageBodyHandler implements MessageBodyReader<Object>, Messag
 
     @Override
     public void writeTo(Object o, Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> multivaluedMap, OutputStream outputStream) throws IOException, WebApplicationException {
-        OutputStreamWriter writer = new OutputStreamWriter(outputStream, UTF_8);
+        long start = System.nanoTime();
+        Writer writer = ThreadLocalStreams.writer(outputStream);
         try {
-            Type jsonType;
-            if (type == null) {
-                jsonType = aClass;
-            } else if (aClass.equals(type)) {
-                jsonType = aClass;
-            } else {
-                jsonType = type;
-            }
-            getGson().toJson(o, jsonType, writer);
+            gson.toJson(o, type == null ? aClass : type, new JsonWriter(writer));
         } finally {
             writer.close();
+            JsonMetrics.getSerialization().record(System.nanoTime() - start);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming.Phase;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import java.io.IOException;
+
+/**
+ * Adds a Server-Timing header with the time spent in each phase of the request when the
+ * {@value ServerTiming#ENABLED_PROPERTY} system property is set. The timing is created and bound to the request thread
+ * by the {@link ServerTimingBindingFilter}, which runs before the JAX-RS runtime, and is found here in the request
+ * properties, which mirror the attributes of the servlet request. The entity reader is timed as the JSON parse phase.
+ * The header is added before the entity is written, so the response body is never held back to time its
+ * serialization. Since the response of an asynchronous request is filtered on the thread which resumed it, this filter
+ * never touches the thread binding.
+ */
+@Provider
+public class ServerTimingFilter implements ContainerRequestFilter, ContainerResponseFilter, ReaderInterceptor {
+
+    private static final String PROPERTY = ServerTiming.REQUEST_PROPERTY;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (ServerTiming.isEnabled() && requestContext.getProperty(PROPERTY) == null) {
+            // Not dispatched through the servlet filter, so only the parse phase and the total are timed
+            requestContext.setProperty(PROPERTY, new ServerTiming());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        ServerTiming timing = (ServerTiming) requestContext.getProperty(PROPERTY);
+        if (timing != null) {
+            responseContext.getHeaders().putSingle(ServerTiming.HEADER, timing.toHeader());
+        }
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException {
+        ServerTiming timing = (ServerTiming) context.getProperty(PROPERTY);
+        if (timing == null) {
+            return context.proceed();
+        }
+
+        long start = System.nanoTime();
+        try {
+            return context.proceed();
+        } finally {
+            timing.add(Phase.PARSE, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Per-thread UTF-8 readers and writers with reusable buffers. Unlike InputStreamReader and OutputStreamWriter, which
+ * allocate new coders and buffers for every stream, each container thread keeps one reader and one writer and points
+ * them at the entity stream of the current request. A reader or writer must not be used again on the same thread while
+ * it is still in use, and the underlying stream is never closed.
+ */
+final class ThreadLocalStreams {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<Utf8Reader> READERS = ThreadLocal.withInitial(Utf8Reader::new);
+
+    private static final ThreadLocal<Utf8Writer> WRITERS = ThreadLocal.withInitial(Utf8Writer::new);
+
+    private ThreadLocalStreams() {
+    }
+
+    /**
+     * @param inputStream stream to decode
+     * @return this thread's reader, reading from the passed stream
+     */
+    static Reader reader(InputStream inputStream) {
+        return READERS.get().reset(inputStream);
+    }
+
+    /**
+     * @param outputStream stream to encode to
+     * @return this thread's writer, writing to the passed stream
+     */
+    static Writer writer(OutputStream outputStream) {
+        return WRITERS.get().reset(outputStream);
+    }
+
+    private static final class Utf8Reader extends Reader {
+
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                                                                     .onMalformedInput(CodingErrorAction.REPLACE)
+                                                                     .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private InputStream in;
+        private boolean endOfInput;
+        private boolean finished;
+
+        Utf8Reader reset(InputStream in) {
+            this.in = in;
+            this.endOfInput = false;
+            this.finished = false;
+            byteBuffer.clear().flip();
+            decoder.reset();
+            return this;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (true) {
+                CoderResult result = decoder.decode(byteBuffer, out, endOfInput);
+                int read = out.position() - off;
+                if (result.isOverflow() || (read > 0 && !endOfInput)) {
+                    return read;
+                }
+                if (endOfInput) {
+                    decoder.flush(out);
+                    finished = true;
+                    read = out.position() - off;
+                    return read > 0 ? read : -1;
+                }
+                fill();
+            }
+        }
+
+        private void fill() throws IOException {
+            byteBuffer.compact();
+            int n = in.read(bytes, byteBuffer.position(), byteBuffer.remaining());
+            if (n < 0) {
+                endOfInput = true;
+            } else {
+                byteBuffer.position(byteBuffer.position() + n);
+            }
+            byteBuffer.flip();
+        }
+
+        @Override
+        public void close() {
+            in = null;
+        }
+    }
+
+    private static final class Utf8Writer extends Writer {
+
+        private final char[] chars = new char[BUFFER_SIZE];
+        private final ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                                                                     .onMalformedInput(CodingErrorAction.REPLACE)
+                                                                     .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private OutputStream out;
+        private int count;
+
+        Utf8Writer reset(OutputStream out) {
+            this.out = out;
+            this.count = 0;
+            encoder.reset();
+            return this;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (count == chars.length) {
+                encode(false);
+            }
+            chars[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == chars.length) {
+                    encode(false);
+                }
+                int n = Math.min(len, chars.length - count);
+                System.arraycopy(cbuf, off, chars, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == chars.length) {
+                    encode(false);
+                }
+                int n = Math.min(len, chars.length - count);
+                str.getChars(off, off + n, chars, count);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Encode the buffered chars to the stream. A trailing high surrogate is kept until its low surrogate arrives.
+         */
+        private void encode(boolean endOfInput) throws IOException {
+            CharBuffer in = CharBuffer.wrap(chars, 0, count);
+            while (true) {
+                CoderResult result = encoder.encode(in, byteBuffer, endOfInput);
+                drain();
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            if (endOfInput) {
+                while (encoder.flush(byteBuffer).isOverflow()) {
+                    drain();
+                }
+                drain();
+            }
+            count = in.remaining();
+            System.arraycopy(chars, in.position(), chars, 0, count);
+        }
+
+        private void drain() throws IOException {
+            out.write(byteBuffer.array(), 0, byteBuffer.position());
+            byteBuffer.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encode(false);
+            out.flush();
+        }
+
+        /**
+         * Encode everything that is left and flush the stream, without closing it
+         */
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                encode(true);
+                out.flush();
+                out = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,692 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.resilience;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconTimeoutException;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconUnavailableException;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming.Phase;
+import com.dnastack.beacon.beaconizer.model.BeaconLimitStatus;
+import com.dnastack.beacon.beaconizer.resilience.CircuitBreaker.Epoch;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.dnastack.beacon.utils.Reason;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every call to a beacon adapter goes through the AdapterInvoker, which guards the beacon with an adaptive concurrency
+ * limit, a call deadline and a circuit breaker. A beacon at its limit rejects new calls immediately, so a slow backend
+ * cannot use up every request thread. The limit starts at {@value #INITIAL_LIMIT_PROPERTY} and never exceeds
+ * {@value #MAX_LIMIT_PROPERTY}.
+ * <p>
+ * Calls which take longer than {@value #TIMEOUT_PROPERTY} milliseconds are abandoned and interrupted. To enforce the
+ * deadline the adapter runs on a separate pool of at most {@value #POOL_SIZE_PROPERTY} threads. The circuit breaker of
+ * a beacon opens when at least {@value #FAILURE_RATE_PROPERTY} of its last {@value #WINDOW_SIZE_PROPERTY} calls failed
+ * or at least {@value #SLOW_CALL_RATE_PROPERTY} of them took longer than {@value #SLOW_CALL_DURATION_PROPERTY}
+ * milliseconds. An open circuit rejects every call for {@value #OPEN_DURATION_PROPERTY} milliseconds and then lets
+ * {@value #HALF_OPEN_CALLS_PROPERTY} probe calls through before closing again.
+ * <p>
+ * Beacons which serve the same data can be declared as replicas of each other by giving them the same
+ * {@value #REPLICA_GROUP_PROPERTY} config value. Calls to a replicated beacon are hedged across its replicas, see
+ * {@link #invokeReplicatedAsync(String, ReplicaCall)}. Until a replica's latency is known, calls to it are hedged after
+ * {@value #HEDGE_DELAY_PROPERTY} milliseconds.
+ * <p>
+ * All settings can be set as system properties, and overridden per beacon with config values of the same name.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AdapterInvoker {
+
+    public static final String INITIAL_LIMIT_PROPERTY = "beaconizer.concurrency.initialLimit";
+    public static final String MAX_LIMIT_PROPERTY = "beaconizer.concurrency.maxLimit";
+    public static final String TIMEOUT_PROPERTY = "beaconizer.adapter.timeout";
+    public static final String POOL_SIZE_PROPERTY = "beaconizer.adapter.poolSize";
+    public static final String WINDOW_SIZE_PROPERTY = "beaconizer.circuit.windowSize";
+    public static final String MINIMUM_CALLS_PROPERTY = "beaconizer.circuit.minimumCalls";
+    public static final String FAILURE_RATE_PROPERTY = "beaconizer.circuit.failureRate";
+    public static final String SLOW_CALL_RATE_PROPERTY = "beaconizer.circuit.slowCallRate";
+    public static final String SLOW_CALL_DURATION_PROPERTY = "beaconizer.circuit.slowCallDuration";
+    public static final String OPEN_DURATION_PROPERTY = "beaconizer.circuit.openDuration";
+    public static final String HALF_OPEN_CALLS_PROPERTY = "beaconizer.circuit.halfOpenCalls";
+    public static final String REPLICA_GROUP_PROPERTY = BeaconizerDao.REPLICA_GROUP_PROPERTY;
+    public static final String HEDGE_DELAY_PROPERTY = "beaconizer.hedge.delay";
+
+    private static final int DEFAULT_INITIAL_LIMIT = 20;
+    private static final int DEFAULT_MAX_LIMIT = 200;
+    private static final long DEFAULT_TIMEOUT = 30000L;
+    private static final int DEFAULT_POOL_SIZE = 256;
+    private static final int DEFAULT_WINDOW_SIZE = 20;
+    private static final int DEFAULT_MINIMUM_CALLS = 10;
+    private static final double DEFAULT_FAILURE_RATE = 0.5;
+    private static final double DEFAULT_SLOW_CALL_RATE = 0.8;
+    private static final long DEFAULT_SLOW_CALL_DURATION = 10000L;
+    private static final long DEFAULT_OPEN_DURATION = 30000L;
+    private static final int DEFAULT_HALF_OPEN_CALLS = 3;
+    private static final long DEFAULT_HEDGE_DELAY = 1000L;
+
+    @Inject
+    BeaconizerDao dao;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    private final Map<String, BeaconGuard> guards = new ConcurrentHashMap<>();
+
+    private volatile Map<String, List<String>> replicaGroups;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = ConfigUtils.getIntProperty(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+
+        // Adapter calls are never queued, a full pool means the backends are already too slow
+        executor = new ThreadPoolExecutor(0, poolSize, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Call a beacon's adapter within the beacon's concurrency limit and deadline, and wait for the result
+     *
+     * @param name name of beacon
+     * @param call call to the adapter
+     * @return result of the call
+     * @throws BeaconUnavailableException if the circuit of the beacon is open or the beacon is at its concurrency limit
+     * @throws BeaconTimeoutException     if the call does not complete before the deadline
+     * @throws BeaconException            if the call fails
+     */
+    public <T> T invoke(String name, AdapterCall<T> call) throws BeaconException {
+        return FutureUtils.await(invokeAsync(name, call));
+    }
+
+    /**
+     * Call a beacon's adapter within the beacon's concurrency limit and deadline. The call runs on the adapter pool,
+     * and the calling thread does not wait for it.
+     *
+     * @param name name of beacon
+     * @param call call to the adapter
+     * @return future of the result of the call, failed with the exceptions of {@link #invoke(String, AdapterCall)}
+     */
+    public <T> CompletableFuture<T> invokeAsync(String name, AdapterCall<T> call) {
+        BeaconGuard guard = getGuard(name);
+        if (guard.timeoutMillis <= 0) {
+            return invokeInline(name, guard, call);
+        }
+        return invokeHedged(name, guard.timeoutMillis, Collections.singletonList(name), replica -> call.call());
+    }
+
+    /**
+     * Call the adapter of a beacon or of one of its replicas. The call goes to the replica with the lowest observed
+     * latency, where calls which failed or timed out count as taking the whole deadline and replicas which were never
+     * called go last. If it has not answered within its 95th percentile latency, the call is hedged to the next
+     * replica, the first answer wins and the other call is cancelled. A replica which fails or is unavailable is skipped
+     * straight away. Beacons without replicas are called like with {@link #invokeAsync(String, AdapterCall)}.
+     * <p>
+     * The calls run on the adapter pool and the hedging is driven by their completions and by timers, so no thread
+     * waits for the result. Cancelling the returned future abandons the calls in progress.
+     *
+     * @param name name of beacon
+     * @param call call to the adapter of the passed replica
+     * @return future of the result of the first successful call, failed with a BeaconUnavailableException if no replica
+     * is available, a BeaconTimeoutException if no call completes before the deadline of the beacon, or the failure of
+     * the calls
+     */
+    public <T> CompletableFuture<T> invokeReplicatedAsync(String name, ReplicaCall<T> call) {
+        List<String> replicas = getReplicas(name);
+        long timeoutMillis = getGuard(name).timeoutMillis;
+        if (replicas.size() == 1 || timeoutMillis <= 0) {
+            // Hedging needs a deadline to wait for the replicas
+            return invokeAsync(name, () -> call.call(name));
+        }
+
+        // Replicas which have not answered yet go last, in alphabetical order, and are reached by hedging
+        List<String> order = new ArrayList<>(replicas);
+        order.sort(Comparator.comparingDouble(replica -> {
+            double average = getGuard(replica).latency.getAverage();
+            return average < 0 ? Double.MAX_VALUE : average;
+        }));
+        return invokeHedged(name, timeoutMillis, order, call);
+    }
+
+    /**
+     * Call the adapter on the calling thread, for beacons configured without a deadline
+     */
+    private <T> CompletableFuture<T> invokeInline(String name, BeaconGuard guard, AdapterCall<T> call) {
+        Epoch permission;
+        try {
+            permission = acquire(name, guard);
+        } catch (BeaconUnavailableException e) {
+            return FutureUtils.failed(e);
+        }
+
+        long start = System.nanoTime();
+        Throwable failure = null;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(call.call());
+        } catch (Throwable t) {
+            failure = t;
+            result.completeExceptionally(t);
+        } finally {
+            guard.settle(permission, System.nanoTime() - start, failure);
+            ServerTiming.record(Phase.ADAPTER, start);
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> invokeHedged(String name, long timeoutMillis, List<String> order, ReplicaCall<T> call) {
+        Hedge<T> hedge = new Hedge<>(name, timeoutMillis, order.iterator(), call);
+        hedge.start();
+        return hedge;
+    }
+
+    /**
+     * @return epoch of the circuit the permission was granted in
+     */
+    private static Epoch acquire(String name, BeaconGuard guard) throws BeaconUnavailableException {
+        Epoch permission = guard.breaker.tryAcquirePermission();
+        if (permission == null) {
+            guard.shortCircuited.increment();
+            throw new BeaconUnavailableException("Beacon " + name + " is failing and has been taken out of service temporarily, please try again later");
+        }
+        if (!guard.limit.tryAcquire()) {
+            guard.breaker.onIgnored(permission);
+            throw new BeaconUnavailableException("Beacon " + name + " is at its concurrency limit of " + guard.limit.getLimit() + ", please try again later");
+        }
+        return permission;
+    }
+
+    /**
+     * @return true if the failure is specific to the beacon, so a replica may still answer
+     */
+    private static boolean isReplicaFailure(Throwable failure) {
+        return !(failure instanceof BeaconException) || ((BeaconException) failure).getReason() != Reason.INVALID_REQUEST;
+    }
+
+    /**
+     * List the beacons serving the same data as the passed beacon, i.e. sharing its {@value #REPLICA_GROUP_PROPERTY}
+     * config value
+     *
+     * @param name name of beacon
+     * @return names of the beacons in the replica group in alphabetical order, or just the passed name if the beacon
+     * has no replicas
+     */
+    public List<String> getReplicas(String name) {
+        Map<String, List<String>> groups = replicaGroups;
+        if (groups == null) {
+            groups = loadReplicaGroups();
+            replicaGroups = groups;
+        }
+        List<String> replicas = groups.get(name);
+        return replicas == null ? Collections.singletonList(name) : replicas;
+    }
+
+    private Map<String, List<String>> loadReplicaGroups() {
+        Map<String, List<String>> members = new HashMap<>();
+        dao.getReplicaGroups().forEach((name, group) -> members.computeIfAbsent(group, key -> new ArrayList<>()).add(name));
+
+        Map<String, List<String>> groups = new HashMap<>();
+        for (List<String> group : members.values()) {
+            if (group.size() > 1) {
+                Collections.sort(group);
+                List<String> replicas = Collections.unmodifiableList(group);
+                for (String name : group) {
+                    groups.put(name, replicas);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @param name name of beacon
+     * @return current limit, in-flight calls, rejected calls and circuit state of the beacon
+     */
+    public BeaconLimitStatus getLimitStatus(String name) throws BeaconException {
+        dao.find(name);
+        return toLimitStatus(name, getGuard(name));
+    }
+
+    /**
+     * Return the limit status of a beacon only if it has been called, without looking up its definition or creating its
+     * limit and circuit breaker, e.g. for a metrics scrape
+     *
+     * @param name name of beacon
+     * @return current limit, in-flight calls, rejected calls and circuit state of the beacon, or null if it has not been
+     * called since it was registered or changed
+     */
+    public BeaconLimitStatus getLimitStatusIfPresent(String name) {
+        BeaconGuard guard = guards.get(name);
+        return guard == null ? null : toLimitStatus(name, guard);
+    }
+
+    private static BeaconLimitStatus toLimitStatus(String name, BeaconGuard guard) {
+        BeaconLimitStatus status = new BeaconLimitStatus();
+        status.setBeaconId(name);
+        status.setLimit(guard.limit.getLimit());
+        status.setMaxLimit(guard.limit.getMaxLimit());
+        status.setInFlight(guard.limit.getInFlight());
+        status.setRejected(guard.limit.getRejected());
+        status.setCircuitState(guard.breaker.getState().name());
+        status.setShortCircuited(guard.shortCircuited.sum());
+        status.setTimedOut(guard.timedOut.sum());
+        status.setHedged(guard.hedged.sum());
+        return status;
+    }
+
+    /**
+     * Forget the limit and circuit state of a beacon, e.g. after its configuration changed
+     *
+     * @param name name of beacon
+     */
+    public void invalidate(String name) {
+        guards.remove(name);
+        replicaGroups = null;
+    }
+
+    private BeaconGuard getGuard(String name) {
+        BeaconGuard guard = guards.get(name);
+        if (guard == null) {
+            guard = guards.computeIfAbsent(name, this::newGuard);
+        }
+        return guard;
+    }
+
+    private BeaconGuard newGuard(String name) {
+        AdapterConfig config = null;
+        try {
+            config = dao.find(name);
+        } catch (BeaconException e) {
+            // Unknown beacons fail when their adapter is looked up, the defaults are good enough until then
+        }
+
+        AdaptiveLimit limit = new AdaptiveLimit((int) ConfigUtils.getLongSetting(config, INITIAL_LIMIT_PROPERTY, DEFAULT_INITIAL_LIMIT),
+                                                (int) ConfigUtils.getLongSetting(config, MAX_LIMIT_PROPERTY, DEFAULT_MAX_LIMIT));
+        CircuitBreaker breaker = new CircuitBreaker((int) ConfigUtils.getLongSetting(config, WINDOW_SIZE_PROPERTY, DEFAULT_WINDOW_SIZE),
+                                                    (int) ConfigUtils.getLongSetting(config, MINIMUM_CALLS_PROPERTY, DEFAULT_MINIMUM_CALLS),
+                                                    ConfigUtils.getDoubleSetting(config, FAILURE_RATE_PROPERTY, DEFAULT_FAILURE_RATE),
+                                                    ConfigUtils.getDoubleSetting(config, SLOW_CALL_RATE_PROPERTY, DEFAULT_SLOW_CALL_RATE),
+                                                    ConfigUtils.getLongSetting(config, SLOW_CALL_DURATION_PROPERTY, DEFAULT_SLOW_CALL_DURATION),
+                                                    ConfigUtils.getLongSetting(config, OPEN_DURATION_PROPERTY, DEFAULT_OPEN_DURATION),
+                                                    (int) ConfigUtils.getLongSetting(config, HALF_OPEN_CALLS_PROPERTY, DEFAULT_HALF_OPEN_CALLS));
+        return new BeaconGuard(limit,
+                               breaker,
+                               ConfigUtils.getLongSetting(config, TIMEOUT_PROPERTY, DEFAULT_TIMEOUT),
+                               ConfigUtils.getLongSetting(config, HEDGE_DELAY_PROPERTY, DEFAULT_HEDGE_DELAY));
+    }
+
+    /**
+     * A call to a beacon adapter
+     */
+    public interface AdapterCall<T> {
+
+        T call() throws BeaconException;
+    }
+
+    /**
+     * A call to the adapter of one replica of a beacon
+     */
+    public interface ReplicaCall<T> {
+
+        T call(String replica) throws BeaconException;
+    }
+
+    /**
+     * Limit, circuit breaker, deadline and latency of a single beacon
+     */
+    private static class BeaconGuard {
+
+        private final AdaptiveLimit limit;
+        private final CircuitBreaker breaker;
+        private final long timeoutMillis;
+        private final long defaultHedgeDelayNanos;
+        private final LatencyTracker latency = new LatencyTracker();
+        private final LongAdder shortCircuited = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder hedged = new LongAdder();
+
+        private BeaconGuard(AdaptiveLimit limit, CircuitBreaker breaker, long timeoutMillis, long defaultHedgeDelayMillis) {
+            this.limit = limit;
+            this.breaker = breaker;
+            this.timeoutMillis = timeoutMillis;
+            this.defaultHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(defaultHedgeDelayMillis);
+        }
+
+        /**
+         * @return time to wait for this beacon before hedging to a replica, in nanoseconds
+         */
+        private long getHedgeDelay() {
+            long p95 = latency.getP95();
+            return p95 < 0 ? defaultHedgeDelayNanos : p95;
+        }
+
+        /**
+         * Record the outcome of a call which acquired a permission
+         *
+         * @param permission epoch of the circuit the permission was granted in
+         * @param rttNanos   duration of the call
+         * @param failure    exception thrown by the call, or null if it succeeded
+         */
+        private void settle(Epoch permission, long rttNanos, Throwable failure) {
+            if (failure == null) {
+                limit.release(rttNanos);
+                breaker.onSuccess(permission, rttNanos);
+                latency.record(rttNanos);
+            } else if (!isReplicaFailure(failure)) {
+                // The beacon answered, the request was at fault
+                limit.releaseIgnored();
+                breaker.onSuccess(permission, rttNanos);
+            } else {
+                limit.releaseIgnored();
+                breaker.onFailure(permission, rttNanos);
+                latency.record(Math.max(rttNanos, TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+            }
+        }
+
+        /**
+         * Give back a permission which did not lead to a call
+         *
+         * @param permission epoch of the circuit the permission was granted in
+         */
+        private void settleIgnored(Epoch permission) {
+            limit.releaseIgnored();
+            breaker.onIgnored(permission);
+        }
+
+        /**
+         * Record a call which was abandoned because another call won or the caller gave up. The call took at least as
+         * long as it ran, which is recorded as its latency.
+         *
+         * @param permission epoch of the circuit the permission was granted in
+         * @param rttNanos   time from the start of the call until it was abandoned
+         */
+        private void settleAbandoned(Epoch permission, long rttNanos) {
+            settleIgnored(permission);
+            latency.record(rttNanos);
+        }
+
+        /**
+         * Record a call which was abandoned because it exceeded its deadline
+         *
+         * @param permission epoch of the circuit the permission was granted in
+         * @param rttNanos   time from the start of the call until it was abandoned
+         */
+        private void settleTimedOut(Epoch permission, long rttNanos) {
+            timedOut.increment();
+            limit.releaseDropped();
+            breaker.onFailure(permission, rttNanos);
+            latency.record(Math.max(rttNanos, TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+        }
+    }
+
+    /**
+     * Calls to the replicas of a beacon on behalf of a single request, completed with the first successful result.
+     * The hedge moves on when an attempt completes, when the hedge timer fires or when the deadline passes, whichever
+     * comes first. Each transition is decided under the lock of the hedge, and the future is completed after the lock
+     * is released, so that the dependent stages do not hold it.
+     */
+    private class Hedge<T> extends CompletableFuture<T> {
+
+        private final String name;
+        private final long timeoutMillis;
+        private final Iterator<String> replicas;
+        private final ReplicaCall<T> call;
+        private final List<Attempt<T>> running = new ArrayList<>(2);
+        private final ServerTiming timing = ServerTiming.current();
+        private final long start = System.nanoTime();
+
+        private boolean finished;
+        private Throwable failure;
+        private ScheduledFuture<?> hedgeTimer;
+        private ScheduledFuture<?> deadlineTimer;
+
+        private Hedge(String name, long timeoutMillis, Iterator<String> replicas, ReplicaCall<T> call) {
+            this.name = name;
+            this.timeoutMillis = timeoutMillis;
+            this.replicas = replicas;
+            this.call = call;
+        }
+
+        private void start() {
+            Throwable cause = null;
+            synchronized (this) {
+                failure = startNext();
+                if (running.isEmpty()) {
+                    cause = finish(false, failure);
+                } else {
+                    try {
+                        deadlineTimer = scheduler.schedule(this::onDeadline, timeoutMillis, TimeUnit.MILLISECONDS);
+                        if (replicas.hasNext()) {
+                            hedgeTimer = scheduler.schedule(this::onHedge,
+                                                            running.get(0).guard.getHedgeDelay(),
+                                                            TimeUnit.NANOSECONDS);
+                        }
+                    } catch (RejectedExecutionException e) {
+                        cause = finish(false, new BeaconUnavailableException("Too many beacon calls in progress, please try again later"));
+                    }
+                }
+            }
+            if (cause != null) {
+                completeExceptionally(cause);
+            }
+        }
+
+        private void onComplete(Attempt<T> attempt) {
+            Throwable cause;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                running.remove(attempt);
+                if (attempt.failure == null) {
+                    finish(false, null);
+                    cause = null;
+                } else {
+                    failure = attempt.failure;
+                    if (isReplicaFailure(failure)) {
+                        // Fail over to the next replica straight away
+                        startNext();
+                        if (!running.isEmpty()) {
+                            return;
+                        }
+                    }
+                    cause = finish(false, failure);
+                }
+            }
+            if (cause == null) {
+                complete(attempt.result);
+            } else {
+                completeExceptionally(cause);
+            }
+        }
+
+        private void onHedge() {
+            Throwable cause;
+            synchronized (this) {
+                if (finished || !replicas.hasNext()) {
+                    return;
+                }
+                if (!running.isEmpty()) {
+                    running.get(0).guard.hedged.increment();
+                }
+                Throwable rejection = startNext();
+                failure = failure == null ? rejection : failure;
+                if (!running.isEmpty()) {
+                    return;
+                }
+                cause = finish(false, failure);
+            }
+            completeExceptionally(cause);
+        }
+
+        private void onDeadline() {
+            Throwable cause;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                cause = finish(true, new BeaconTimeoutException("Beacon " + name + " did not answer within " + timeoutMillis + " ms"));
+            }
+            completeExceptionally(cause);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (!finished) {
+                    finish(false, null);
+                }
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * Start a call to the next replica which accepts it
+         *
+         * @return the last rejection, or null if a call was started
+         */
+        private Throwable startNext() {
+            BeaconUnavailableException rejection = null;
+            while (replicas.hasNext()) {
+                String replica = replicas.next();
+                BeaconGuard guard = getGuard(replica);
+                Epoch permission;
+                try {
+                    permission = acquire(replica, guard);
+                } catch (BeaconUnavailableException e) {
+                    rejection = e;
+                    continue;
+                }
+
+                Attempt<T> attempt = new Attempt<>(guard, permission, () -> call.call(replica), this);
+                try {
+                    attempt.future = executor.submit(attempt);
+                } catch (RejectedExecutionException e) {
+                    guard.settleIgnored(permission);
+                    return new BeaconUnavailableException("Too many beacon calls in progress, please try again later");
+                }
+                running.add(attempt);
+                return null;
+            }
+            return rejection;
+        }
+
+        /**
+         * Abandon the calls still running, stop the timers and record the time spent waiting for the beacon
+         *
+         * @param timedOut true if the calls are abandoned because the deadline passed
+         * @param cause    failure to complete the hedge with, or null if it succeeded
+         * @return the failure, never null if the hedge failed
+         */
+        private Throwable finish(boolean timedOut, Throwable cause) {
+            finished = true;
+            for (Attempt<T> attempt : running) {
+                attempt.abandon(timedOut);
+            }
+            running.clear();
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+            if (deadlineTimer != null) {
+                deadlineTimer.cancel(false);
+            }
+            if (timing != null) {
+                timing.add(Phase.ADAPTER, System.nanoTime() - start);
+            }
+            return cause;
+        }
+    }
+
+    /**
+     * A call running on the adapter pool. Its outcome is recorded exactly once, either when it completes or when it is
+     * abandoned, and the completed attempt is passed back to the hedge which started it.
+     */
+    private static class Attempt<T> implements Runnable {
+
+        private final BeaconGuard guard;
+        private final Epoch permission;
+        private final AdapterCall<T> call;
+        private final Hedge<T> hedge;
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private final long start = System.nanoTime();
+
+        private volatile Future<?> future;
+        private T result;
+        private Throwable failure;
+
+        private Attempt(BeaconGuard guard, Epoch permission, AdapterCall<T> call, Hedge<T> hedge) {
+            this.guard = guard;
+            this.permission = permission;
+            this.call = call;
+            this.hedge = hedge;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = call.call();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            if (settled.compareAndSet(false, true)) {
+                guard.settle(permission, System.nanoTime() - start, failure);
+            }
+            hedge.onComplete(this);
+        }
+
+        private void abandon(boolean timedOut) {
+            if (settled.compareAndSet(false, true)) {
+                if (timedOut) {
+                    guard.settleTimedOut(permission, System.nanoTime() - start);
+                } else {
+                    guard.settleAbandoned(permission, System.nanoTime() - start);
+                }
+            }
+            future.cancel(true);
+        }
+    }
+}
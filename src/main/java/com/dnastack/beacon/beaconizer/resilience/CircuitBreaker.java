@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.resilience;
+
+/**
+ * Circuit breaker of a single beacon. The outcome of the last calls is kept in a fixed size window, and once enough
+ * calls have been recorded the circuit opens when too many of them failed or were slow. While the circuit is open every
+ * call is rejected without reaching the adapter. After the open duration the circuit becomes half-open and lets a few
+ * probe calls through: the circuit closes again if they all succeed, and opens again as soon as one of them fails.
+ * <p>
+ * Every permission is tagged with the {@link Epoch} of the circuit it was granted in, i.e. the circuit state between
+ * two transitions. Outcomes of calls granted in an earlier epoch are ignored, so a slow call which started before the
+ * circuit opened cannot count as a probe of the half-open circuit, or as a call of the closed circuit which follows.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * State of the circuit between two transitions, which every permission is tagged with
+     */
+    public static final class Epoch {
+
+        private final State state;
+        private final long openUntil;
+
+        private Epoch(State state, long openUntil) {
+            this.state = state;
+            this.openUntil = openUntil;
+        }
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+
+    private volatile Epoch epoch = new Epoch(State.CLOSED, 0L);
+
+    private int next;
+    private int recorded;
+    private int failureCount;
+    private int slowCount;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallMillis * 1000000L;
+        this.openNanos = openMillis * 1000000L;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.failures = new boolean[this.windowSize];
+        this.slowCalls = new boolean[this.windowSize];
+    }
+
+    /**
+     * Check whether a call may go through. The check is a single volatile read while the circuit is closed, or while it
+     * is open and the open duration has not passed yet.
+     *
+     * @return epoch the permission was granted in, to pass back with the outcome of the call, or null if the call may
+     * not go through
+     */
+    public Epoch tryAcquirePermission() {
+        Epoch current = epoch;
+        if (current.state == State.CLOSED) {
+            return current;
+        }
+        if (current.state == State.OPEN && System.nanoTime() - current.openUntil < 0) {
+            return null;
+        }
+        return tryAcquireProbe();
+    }
+
+    private synchronized Epoch tryAcquireProbe() {
+        if (epoch.state == State.OPEN) {
+            if (System.nanoTime() - epoch.openUntil < 0) {
+                return null;
+            }
+            epoch = new Epoch(State.HALF_OPEN, 0L);
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (epoch.state == State.CLOSED) {
+            return epoch;
+        }
+        if (probesStarted >= halfOpenCalls) {
+            return null;
+        }
+        probesStarted++;
+        return epoch;
+    }
+
+    /**
+     * Record a call which completed
+     *
+     * @param permission    epoch the permission of the call was granted in
+     * @param durationNanos duration of the call
+     */
+    public void onSuccess(Epoch permission, long durationNanos) {
+        record(permission, false, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Record a call which failed or timed out. The call also counts as slow if it took longer than the slow call
+     * duration before failing or being abandoned.
+     *
+     * @param permission    epoch the permission of the call was granted in
+     * @param durationNanos time from the start of the call until it failed or was abandoned
+     */
+    public void onFailure(Epoch permission, long durationNanos) {
+        record(permission, true, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Give back a permission which did not lead to a call
+     *
+     * @param permission epoch the permission was granted in
+     */
+    public synchronized void onIgnored(Epoch permission) {
+        if (permission == epoch && epoch.state == State.HALF_OPEN && probesStarted > 0) {
+            probesStarted--;
+        }
+    }
+
+    private synchronized void record(Epoch permission, boolean failed, boolean slow) {
+        if (permission != epoch) {
+            // Granted before the last transition, the call says nothing about the current state
+            return;
+        }
+        State state = epoch.state;
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open();
+            } else if (++probesSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (recorded == windowSize) {
+            failureCount -= failures[next] ? 1 : 0;
+            slowCount -= slowCalls[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failures[next] = failed;
+        slowCalls[next] = slow;
+        failureCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        next = (next + 1) % windowSize;
+
+        if (recorded >= minimumCalls && (failureCount >= failureRateThreshold * recorded || slowCount >= slowCallRateThreshold * recorded)) {
+            open();
+        }
+    }
+
+    private void open() {
+        epoch = new Epoch(State.OPEN, System.nanoTime() + openNanos);
+    }
+
+    private void close() {
+        next = 0;
+        recorded = 0;
+        failureCount = 0;
+        slowCount = 0;
+        epoch = new Epoch(State.CLOSED, 0L);
+    }
+
+    public State getState() {
+        return epoch.state;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Latency observed for a single beacon: an exponentially weighted average used to pick the fastest replica, and the
+ * 95th percentile of the recent calls used as the hedging delay. Failed calls are recorded too, so a failing replica
+ * falls behind the others instead of keeping the latency of its last success. The percentile is recomputed every few
+ * calls from a window of recent samples, so reading it is a single volatile read.
+ */
+class LatencyTracker {
+
+    private static final int WINDOW_SIZE = 128;
+    private static final int UPDATE_INTERVAL = 16;
+    private static final double SMOOTHING = 0.1;
+
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int next;
+    private int count;
+    private int sinceUpdate;
+
+    private volatile double average = -1;
+    private volatile long p95 = -1;
+
+    /**
+     * Record the duration of a call, or the time it is assumed to have taken if it failed or was abandoned
+     *
+     * @param nanos duration of the call
+     */
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW_SIZE;
+        count = Math.min(count + 1, WINDOW_SIZE);
+
+        average = average < 0 ? nanos : average + SMOOTHING * (nanos - average);
+
+        if (++sinceUpdate >= UPDATE_INTERVAL || count < UPDATE_INTERVAL) {
+            sinceUpdate = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            p95 = sorted[Math.max(0, (int) Math.ceil(0.95 * count) - 1)];
+        }
+    }
+
+    /**
+     * @return average latency in nanoseconds, or -1 if no call has been recorded yet
+     */
+    double getAverage() {
+        return average;
+    }
+
+    /**
+     * @return 95th percentile of the recent latencies in nanoseconds, or -1 if no call has been recorded yet
+     */
+    long getP95() {
+        return p95;
+    }
+}
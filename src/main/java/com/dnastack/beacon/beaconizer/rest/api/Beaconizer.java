@@ -23,11 +23,18 @@
  */
 package com.dnastack.beacon.beaconizer.rest.api;
 
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.providers.AvroMessageBodyHandler;
+import com.dnastack.beacon.beaconizer.providers.Compressed;
 import org.ga4gh.beacon.BeaconAlleleRequest;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -38,24 +45,64 @@ import java.util.List;
  */
 public interface Beaconizer {
 
+    /**
+     * Media type of newline delimited JSON
+     */
+    String APPLICATION_NDJSON = "application/x-ndjson";
+
+    /**
+     * Media type of the Avro binary encoding of the beacon model
+     */
+    String AVRO_BINARY = AvroMessageBodyHandler.AVRO_BINARY;
+
+    /**
+     * Media type of the Prometheus text exposition format
+     */
+    String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Get information from every registered beacon. The request is suspended until the beacons have answered. The
+     * response carries a strong ETag, so a client which already has the listing gets NOT_MODIFIED, and is gzip encoded
+     * if the client accepts it.
+     *
+     * @param ifNoneMatch    ETags of the listings the client already has
+     * @param acceptEncoding content codings the client accepts
+     * @param asyncResponse  response to resume with the list of beacons
+     */
     @GET
     @Path("/")
     @Produces({MediaType.APPLICATION_JSON})
-    Response getBeacons();
+    void getBeacons(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @Suspended AsyncResponse asyncResponse);
+
+    /**
+     * Get information from a specific beacon given the name it was registered under. The response carries a strong
+     * ETag and the Cache-Control of the beacon, so a client which already has the beacon gets NOT_MODIFIED, and is gzip
+     * encoded if the client accepts it.
+     *
+     * @param name           name of beacon
+     * @param ifNoneMatch    ETags of the beacons the client already has
+     * @param acceptEncoding content codings the client accepts
+     * @param asyncResponse  response to resume with the beacon
+     */
+    @GET
+    @Path("{name}")
+    @Produces({MediaType.APPLICATION_JSON})
+    void getBeacon(@PathParam("name") String name, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @Suspended AsyncResponse asyncResponse);
 
     /**
-     * Get information from a specific beacon given the name it was registered under.
+     * Get the state of the concurrency limit of a specific beacon
      *
      * @param name name of beacon
      * @return Response Object
      */
     @GET
-    @Path("{name}")
+    @Path("{name}/limits")
     @Produces({MediaType.APPLICATION_JSON})
-    Response getBeacon(@PathParam("name") String name);
+    Response getBeaconLimitStatus(@PathParam("name") String name);
 
     /**
-     * Query a single Beacon for the existence of a variant
+     * Query a single Beacon for the existence of a variant. The response is JSON, or Avro binary if the client asks for
+     * it.
      *
      * @param name                    name of beacon
      * @param referenceName           name of the reference
@@ -65,24 +112,135 @@ public interface Beaconizer {
      * @param assemblyId              genome assembly
      * @param datasetIds              list of datasetIds
      * @param includeDatasetResponses include
-     * @return Response Object
+     * @param asyncResponse           response to resume with the answer
      */
     @GET
     @Path("{name}/query")
+    @Compressed
+    @Produces({MediaType.APPLICATION_JSON, AVRO_BINARY})
+    void getBeaconResponse(@PathParam("name") String name, @QueryParam("referenceName") String referenceName, @QueryParam("start") Long start, @QueryParam("referenceBases") String referenceBases, @QueryParam("alternateBases") String alternateBases, @QueryParam("assemblyId") String assemblyId, @QueryParam("datasetIds") List<String> datasetIds, @QueryParam("includeDatasetResponses") Boolean includeDatasetResponses, @Suspended AsyncResponse asyncResponse);
+
+    /**
+     * Query a single Beacon for the existence of a variant. The request and the response are JSON or Avro binary,
+     * depending on their media types.
+     *
+     * @param name          name of beacon
+     * @param request       request object
+     * @param asyncResponse response to resume with the answer
+     */
+    @POST
+    @Path("{name}/query")
+    @Compressed
+    @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, AVRO_BINARY})
+    @Produces({MediaType.APPLICATION_JSON, AVRO_BINARY})
+    void getBeaconResponse(@PathParam("name") String name, BeaconAlleleRequest request, @Suspended AsyncResponse asyncResponse);
+
+    /**
+     * Query a single Beacon for the existence of variants in a region. Beacons whose adapter does not support region
+     * queries answer with NOT_IMPLEMENTED.
+     *
+     * @param name                    name of beacon
+     * @param referenceName           name of the reference
+     * @param start                   0-based start position, inclusive
+     * @param end                     0-based end position, exclusive
+     * @param assemblyId              genome assembly
+     * @param datasetIds              list of datasetIds
+     * @param includeDatasetResponses include
+     * @param asyncResponse           response to resume with the answer
+     */
+    @GET
+    @Path("{name}/query/region")
+    @Compressed
     @Produces({MediaType.APPLICATION_JSON})
-    Response getBeaconResponse(@PathParam("name") String name, @QueryParam("referenceName") String referenceName, @QueryParam("start") Long start, @QueryParam("referenceBases") String referenceBases, @QueryParam("alternateBases") String alternateBases, @QueryParam("assemblyId") String assemblyId, @QueryParam("datasetIds") List<String> datasetIds, @QueryParam("includeDatasetResponses") Boolean includeDatasetResponses);
+    void getBeaconRegionResponse(@PathParam("name") String name, @QueryParam("referenceName") String referenceName, @QueryParam("start") Long start, @QueryParam("end") Long end, @QueryParam("assemblyId") String assemblyId, @QueryParam("datasetIds") List<String> datasetIds, @QueryParam("includeDatasetResponses") Boolean includeDatasetResponses, @Suspended AsyncResponse asyncResponse);
 
     /**
-     * Query a single Beacon for the existence of a variant
+     * Query a single Beacon for the existence of variants in a region. Beacons whose adapter does not support region
+     * queries answer with NOT_IMPLEMENTED.
      *
-     * @param name    name of beacon
-     * @param request request object
+     * @param name          name of beacon
+     * @param request       request object
+     * @param asyncResponse response to resume with the answer
+     */
+    @POST
+    @Path("{name}/query/region")
+    @Compressed
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    void getBeaconRegionResponse(@PathParam("name") String name, BeaconRegionRequest request, @Suspended AsyncResponse asyncResponse);
+
+    /**
+     * Query a single Beacon for the existence of many variants. The requests are given either as a JSON array or as
+     * newline delimited JSON, and one response is streamed back per line as soon as it is available.
+     *
+     * @param name     name of beacon
+     * @param requests stream of request objects
      * @return Response object
      */
     @POST
-    @Path("{name}/query")
+    @Path("{name}/query/batch")
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    @Produces({APPLICATION_NDJSON})
+    Response getBeaconResponses(@PathParam("name") String name, InputStream requests);
+
+    /**
+     * Query a single Beacon for the existence of many variants, the same as the JSON batch query. The requests are
+     * given as an Avro container file of BeaconAlleleRequests, and the responses are streamed back as an Avro container
+     * file of BeaconAlleleResponses, with one block per response written as soon as it is available.
+     *
+     * @param name     name of beacon
+     * @param requests Avro container file of request objects
+     * @return Response object
+     */
+    @POST
+    @Path("{name}/query/batch")
+    @Consumes({AVRO_BINARY})
+    @Produces({AVRO_BINARY})
+    Response getBeaconResponsesAvro(@PathParam("name") String name, InputStream requests);
+
+    /**
+     * Query every registered Beacon at the same time for the existence of a variant. Beacons which do not respond
+     * before the timeout expires are reported with a timeout error.
+     *
+     * @param referenceName           name of the reference
+     * @param start                   start position
+     * @param referenceBases          reference bases
+     * @param alternateBases          alternate bases
+     * @param assemblyId              genome assembly
+     * @param datasetIds              list of datasetIds
+     * @param includeDatasetResponses include
+     * @param timeout                 maximum time to wait for the beacons in milliseconds
+     * @param asyncResponse           response to resume with the combined answer
+     */
+    @GET
+    @Path("query")
+    @Compressed
+    @Produces({MediaType.APPLICATION_JSON})
+    void getBeaconizerResponse(@QueryParam("referenceName") String referenceName, @QueryParam("start") Long start, @QueryParam("referenceBases") String referenceBases, @QueryParam("alternateBases") String alternateBases, @QueryParam("assemblyId") String assemblyId, @QueryParam("datasetIds") List<String> datasetIds, @QueryParam("includeDatasetResponses") Boolean includeDatasetResponses, @QueryParam("timeout") Long timeout, @Suspended AsyncResponse asyncResponse);
+
+    /**
+     * Query every registered Beacon at the same time for the existence of a variant. Beacons which do not respond
+     * before the timeout expires are reported with a timeout error.
+     *
+     * @param request       request object
+     * @param timeout       maximum time to wait for the beacons in milliseconds
+     * @param asyncResponse response to resume with the combined answer
+     */
+    @POST
+    @Path("query")
+    @Compressed
     @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
     @Produces({MediaType.APPLICATION_JSON})
-    Response getBeaconResponse(@PathParam("name") String name, BeaconAlleleRequest request);
+    void getBeaconizerResponse(BeaconAlleleRequest request, @QueryParam("timeout") Long timeout, @Suspended AsyncResponse asyncResponse);
+
+    /**
+     * Get request, error, in-flight and latency metrics of every beacon in the Prometheus text format
+     *
+     * @return Response object
+     */
+    @GET
+    @Path("metrics")
+    @Produces({PROMETHEUS_TEXT})
+    Response getMetrics();
 
 }
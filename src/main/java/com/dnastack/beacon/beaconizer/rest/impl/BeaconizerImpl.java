@@ -23,22 +23,52 @@
  */
 package com.dnastack.beacon.beaconizer.rest.impl;
 
-import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.cache.CachedRepresentation;
+import com.dnastack.beacon.beaconizer.exceptions.InvalidAlleleRequestException;
+import com.dnastack.beacon.beaconizer.exceptions.InvalidRegionRequestException;
+import com.dnastack.beacon.beaconizer.metrics.BeaconizerMetrics;
+import com.dnastack.beacon.beaconizer.metrics.Operation;
+import com.dnastack.beacon.beaconizer.metrics.OperationMetrics;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.providers.AvroMessageBodyHandler;
+import com.dnastack.beacon.beaconizer.providers.CompressionInterceptor;
 import com.dnastack.beacon.beaconizer.rest.api.Beaconizer;
 import com.dnastack.beacon.beaconizer.service.api.BeaconizerService;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.beaconizer.util.ErrorBodies;
+import com.dnastack.beacon.beaconizer.util.ErrorLog;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import com.dnastack.beacon.beaconizer.util.JsonStreamIterator;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
+import com.dnastack.beacon.beaconizer.util.ResponseMappingResource;
 import com.dnastack.beacon.exceptions.BeaconAlleleRequestException;
 import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.Reason;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
 import org.ga4gh.beacon.BeaconAlleleRequest;
 import org.ga4gh.beacon.BeaconAlleleResponse;
 import org.ga4gh.beacon.BeaconError;
 
 import javax.inject.Inject;
 import javax.ws.rs.Path;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
  * Beaconizer REST-API implementation
@@ -49,38 +79,51 @@ import java.util.List;
 @Path("/")
 public class BeaconizerImpl implements Beaconizer {
 
+    public static final String ASYNC_TIMEOUT_PROPERTY = "beaconizer.async.timeout";
+
+    private static final long DEFAULT_ASYNC_TIMEOUT = 60000L;
+
     @Inject
     BeaconizerService beaconizerService;
 
-    private Gson gson = new GsonBuilder().create();
+    @Inject
+    BeaconizerMetrics beaconizerMetrics;
+
+    @Inject
+    ErrorLog errorLog;
+
+    private Gson gson = JsonUtils.getGson();
 
     /**
-     * Given a passed BeaconException, form a new beaconError object and return it wrapped in a response object
+     * Given a passed BeaconException, form a new beaconError object and return it wrapped in a response object. Errors
+     * of allele requests are returned as a BeaconAlleleResponse with the error fields set, and validation failures of
+     * allele and region requests use a pre-rendered body.
      *
      * @param exception BeaconException
      * @return Response object
      */
-    private Response formBeaconError(String name, BeaconException exception) {
-        BeaconError error = new BeaconError();
-        error.setMessage(exception.getMessage());
-
-        System.out.println(error.getMessage());
+    Response formBeaconError(String name, BeaconException exception) {
+        int status = ResponseMappingResource.getBeaconStatus(exception).getStatusCode();
+        errorLog.record(status, exception);
 
-        if (exception instanceof BeaconNotFoundException) {
-            error.setErrorCode(Status.NOT_FOUND.getStatusCode());
-        } else {
-
-            switch (exception.getReason()) {
-                case INVALID_REQUEST:
-                    error.setErrorCode(Status.BAD_REQUEST.getStatusCode());
-                    break;
-                default:
-                    error.setErrorCode(Status.INTERNAL_SERVER_ERROR.getStatusCode());
-            }
+        if (exception instanceof InvalidAlleleRequestException) {
+            return Response.status(status)
+                           .entity(ErrorBodies.alleleError(name, status, exception.getMessage()))
+                           .type(MediaType.APPLICATION_JSON_TYPE)
+                           .build();
+        } else if (exception instanceof InvalidRegionRequestException) {
+            return Response.status(status)
+                           .entity(ErrorBodies.error(status, exception.getMessage()))
+                           .type(MediaType.APPLICATION_JSON_TYPE)
+                           .build();
         }
 
+        BeaconError error = new BeaconError();
+        error.setMessage(exception.getMessage());
+        error.setErrorCode(status);
+
         //If this is an alleleRequest then return a BeaconAlleleResponse with the error fields set appropriately
-        if (exception.getClass().getCanonicalName().equals(BeaconAlleleRequestException.class.getCanonicalName())) {
+        if (exception instanceof BeaconAlleleRequestException) {
             BeaconAlleleRequestException e = (BeaconAlleleRequestException) exception;
             BeaconAlleleResponse response = new BeaconAlleleResponse();
             response.setExists(null);
@@ -94,62 +137,384 @@ public class BeaconizerImpl implements Beaconizer {
                 response.setBeaconId(name);
             }
 
-            return Response.status(error.getErrorCode()).entity(response).build();
+            return Response.status(status).entity(response).build();
         } else {
-            return Response.status(error.getErrorCode()).entity(error).build();
+            return Response.status(status).entity(error).build();
         }
     }
 
-    public Response getBeacons() {
+    /**
+     * Start the work of a suspended request and resume the request from the completion of its future, so that neither
+     * the container thread nor any other thread waits while the beacons are called. Requests which take longer than
+     * {@value #ASYNC_TIMEOUT_PROPERTY} milliseconds are answered with a SERVICE_UNAVAILABLE error and their work is
+     * discarded. When an operation is passed, the request is recorded in the metrics of the beacon.
+     *
+     * @param asyncResponse suspended response
+     * @param name          name of beacon, or null for requests to every beacon
+     * @param operation     operation to record, or null to record nothing
+     * @param query         work which starts the request
+     * @param errorOf       error carried by a successful result, which is recorded as a failed request
+     * @param respond       response for a successful result
+     */
+    private <T> void suspend(AsyncResponse asyncResponse, String name, Operation operation, Query<T> query, Function<? super T, BeaconError> errorOf, Function<? super T, Response> respond) {
+        OperationMetrics metrics = operation == null ? null : beaconizerMetrics.get(name, operation);
+        long begin = metrics == null ? 0L : metrics.begin();
+
+        CompletableFuture<T> future;
         try {
-            return Response.ok(beaconizerService.getBeacons()).build();
+            future = query.start();
+        } catch (Throwable t) {
+            future = FutureUtils.failed(t);
+        }
 
-        } catch (BeaconException e) {
-            return formBeaconError(null, e);
+        long timeoutMillis = ConfigUtils.getLongProperty(ASYNC_TIMEOUT_PROPERTY, DEFAULT_ASYNC_TIMEOUT);
+        if (timeoutMillis > 0 && !future.isDone()) {
+            CompletableFuture<T> work = future;
+            asyncResponse.setTimeoutHandler(response -> {
+                work.cancel(true);
+                response.resume(formError(Status.SERVICE_UNAVAILABLE,
+                                          "Request did not complete within " + timeoutMillis + " ms"));
+            });
+            asyncResponse.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
         }
+
+        future.whenComplete((result, failure) -> {
+            Reason error = null;
+            Object response;
+            try {
+                if (failure == null) {
+                    error = getErrorReason(errorOf.apply(result));
+                    response = respond.apply(result);
+                } else {
+                    Throwable cause = FutureUtils.unwrap(failure);
+                    if (cause instanceof BeaconException) {
+                        error = ((BeaconException) cause).getReason();
+                        response = formBeaconError(name, (BeaconException) cause);
+                    } else {
+                        error = Reason.ERROR;
+                        response = cause;
+                    }
+                }
+            } catch (Throwable t) {
+                error = Reason.ERROR;
+                response = t;
+            } finally {
+                if (metrics != null) {
+                    metrics.end(begin, error);
+                }
+            }
+
+            if (response instanceof Throwable) {
+                asyncResponse.resume((Throwable) response);
+            } else {
+                asyncResponse.resume(response);
+            }
+        });
+    }
+
+    /**
+     * Form a BeaconError response which is not caused by a BeaconException
+     *
+     * @param status  status of the response
+     * @param message fixed error message
+     * @return Response object
+     */
+    private Response formError(Status status, String message) {
+        errorLog.record(status.getStatusCode(), status.getReasonPhrase(), message);
+        return Response.status(status)
+                       .entity(ErrorBodies.error(status.getStatusCode(), message))
+                       .type(MediaType.APPLICATION_JSON_TYPE)
+                       .build();
+    }
+
+    /**
+     * Form the response to a query of a single beacon. Responses are sent with status OK, including errors reported by
+     * the beacon itself, except when the beacon could not be called or did not answer in time: those are sent with the
+     * SERVICE_UNAVAILABLE or GATEWAY_TIMEOUT status of their error, so that clients and load balancers can tell them
+     * apart from real answers.
+     *
+     * @param response response to the query
+     * @param error    error of the response, may be null
+     * @return Response object
+     */
+    private static Response formQueryResponse(Object response, BeaconError error) {
+        Integer code = error == null ? null : error.getErrorCode();
+        if (code != null && (code == Status.SERVICE_UNAVAILABLE.getStatusCode() || code == Status.GATEWAY_TIMEOUT.getStatusCode())) {
+            return Response.status(code).entity(response).build();
+        }
+        return Response.ok(response).build();
+    }
+
+    /**
+     * Form the response for a cached JSON representation: NOT_MODIFIED if the client already has it, its gzip encoding
+     * if the client accepts it, and the plain JSON otherwise. Every variant carries the ETag of the encoding and the
+     * Cache-Control of the representation.
+     *
+     * @param representation cached representation
+     * @param ifNoneMatch    value of the If-None-Match header, may be null
+     * @param acceptEncoding value of the Accept-Encoding header, may be null
+     * @return Response object
+     */
+    private static Response formRepresentation(CachedRepresentation representation, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = representation.getGzip() != null && CompressionInterceptor.acceptsGzip(acceptEncoding);
+        Response.ResponseBuilder builder;
+        if (representation.matches(ifNoneMatch)) {
+            builder = Response.notModified();
+        } else if (gzip) {
+            builder = Response.ok(representation.getGzip(), MediaType.APPLICATION_JSON_TYPE)
+                              .header(HttpHeaders.CONTENT_ENCODING, CompressionInterceptor.GZIP);
+        } else {
+            builder = Response.ok(representation.getJson(), MediaType.APPLICATION_JSON_TYPE);
+        }
+        return builder.header(HttpHeaders.ETAG, gzip ? representation.getGzipEtag() : representation.getEtag())
+                      .header(HttpHeaders.CACHE_CONTROL, representation.getCacheControl())
+                      .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                      .build();
+    }
+
+    /**
+     * Reason to record for a response which carries an error instead of an answer
+     *
+     * @param error error reported by the beacon, may be null
+     * @return INVALID_REQUEST for client errors, ERROR for other errors, or null if there is no error
+     */
+    private static Reason getErrorReason(BeaconError error) {
+        if (error == null) {
+            return null;
+        }
+        Integer code = error.getErrorCode();
+        return code != null && code == Status.BAD_REQUEST.getStatusCode() ? Reason.INVALID_REQUEST : Reason.ERROR;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response getBeacon(String name) {
-        try {
-            return Response.ok(beaconizerService.getBeacon(name)).build();
-        } catch (BeaconException e) {
-            return formBeaconError(name, e);
-        }
+    public void getBeacons(String ifNoneMatch, String acceptEncoding, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                null,
+                null,
+                beaconizerService::getBeaconsRepresentation,
+                representation -> null,
+                representation -> formRepresentation(representation, ifNoneMatch, acceptEncoding));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response getBeaconResponse(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) {
-        try {
-            return Response.ok(beaconizerService.getBeaconAlleleResponse(name,
-                                                                         referenceName,
-                                                                         start,
-                                                                         referenceBases,
-                                                                         alternateBases,
-                                                                         assemblyId,
-                                                                         datasetIds,
-                                                                         includeDatasetResponses)).build();
-        } catch (BeaconException e) {
-            return formBeaconError(name, e);
-        }
+    public void getBeacon(String name, String ifNoneMatch, String acceptEncoding, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                name,
+                Operation.GET_BEACON,
+                () -> beaconizerService.getBeaconRepresentation(name),
+                representation -> null,
+                representation -> formRepresentation(representation, ifNoneMatch, acceptEncoding));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response getBeaconResponse(String name, BeaconAlleleRequest request) {
+    public Response getBeaconLimitStatus(String name) {
         try {
-            return Response.ok(beaconizerService.getBeaconAlleleResponse(name, request)).build();
+            return Response.ok(beaconizerService.getBeaconLimitStatus(name)).build();
         } catch (BeaconException e) {
             return formBeaconError(name, e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconResponse(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                name,
+                Operation.ALLELE_QUERY_GET,
+                () -> beaconizerService.getBeaconAlleleResponse(name,
+                                                                referenceName,
+                                                                start,
+                                                                referenceBases,
+                                                                alternateBases,
+                                                                assemblyId,
+                                                                datasetIds,
+                                                                includeDatasetResponses),
+                BeaconAlleleResponse::getError,
+                response -> formQueryResponse(response, response.getError()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconResponse(String name, BeaconAlleleRequest request, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                name,
+                Operation.ALLELE_QUERY_POST,
+                () -> beaconizerService.getBeaconAlleleResponse(name, request),
+                BeaconAlleleResponse::getError,
+                response -> formQueryResponse(response, response.getError()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconRegionResponse(String name, String referenceName, Long start, Long end, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                name,
+                Operation.REGION_QUERY_GET,
+                () -> beaconizerService.getBeaconRegionResponse(name,
+                                                                referenceName,
+                                                                start,
+                                                                end,
+                                                                assemblyId,
+                                                                datasetIds,
+                                                                includeDatasetResponses),
+                BeaconRegionResponse::getError,
+                response -> formQueryResponse(response, response.getError()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconRegionResponse(String name, BeaconRegionRequest request, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                name,
+                Operation.REGION_QUERY_POST,
+                () -> beaconizerService.getBeaconRegionResponse(name, request),
+                BeaconRegionResponse::getError,
+                response -> formQueryResponse(response, response.getError()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response getBeaconResponses(String name, InputStream requests) {
+        StreamingOutput output = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                beaconizerService.getBeaconAlleleResponses(name,
+                                                           new JsonStreamIterator<>(requests, BeaconAlleleRequest.class),
+                                                           response -> {
+                                                               gson.toJson(response, writer);
+                                                               writer.write('\n');
+                                                               writer.flush();
+                                                           });
+            } catch (BeaconException e) {
+                throw new WebApplicationException(formBeaconError(name, e));
+            }
+            writer.flush();
+        };
+        return Response.ok(output, APPLICATION_NDJSON).build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response getBeaconResponsesAvro(String name, InputStream requests) {
+        StreamingOutput output = outputStream -> {
+            DataFileStream<BeaconAlleleRequest> in = AvroMessageBodyHandler.openContainer(requests, BeaconAlleleRequest.class);
+            DataFileWriter<BeaconAlleleResponse> out = AvroMessageBodyHandler.createContainer(BeaconAlleleResponse.class);
+            // The file is started with the first response, so that errors before it can still set the status
+            AtomicBoolean started = new AtomicBoolean();
+            try {
+                beaconizerService.getBeaconAlleleResponses(name, endAtFailure(in), response -> {
+                    if (started.compareAndSet(false, true)) {
+                        out.create(BeaconAlleleResponse.getClassSchema(), outputStream);
+                    }
+                    out.append(response);
+                    out.flush();
+                });
+            } catch (BeaconException e) {
+                throw new WebApplicationException(formBeaconError(name, e));
+            }
+            if (!started.get()) {
+                out.create(BeaconAlleleResponse.getClassSchema(), outputStream);
+            }
+            out.flush();
+        };
+        return Response.ok(output, AVRO_BINARY).build();
+    }
+
+    /**
+     * Wrap the iterator of an Avro container, so that it ends at the first request which cannot be read: the container
+     * does not move past a corrupt request, and nothing after it can be read anyway
+     */
+    private static <T> Iterator<T> endAtFailure(Iterator<T> iterator) {
+        return new Iterator<T>() {
+
+            private boolean failed;
+
+            @Override
+            public boolean hasNext() {
+                return !failed && iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return iterator.next();
+                } catch (RuntimeException e) {
+                    failed = true;
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconizerResponse(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses, Long timeout, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                null,
+                null,
+                () -> beaconizerService.getBeaconizerAlleleResponse(referenceName,
+                                                                    start,
+                                                                    referenceBases,
+                                                                    alternateBases,
+                                                                    assemblyId,
+                                                                    datasetIds,
+                                                                    includeDatasetResponses,
+                                                                    timeout),
+                response -> null,
+                response -> Response.ok(response).build());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconizerResponse(BeaconAlleleRequest request, Long timeout, AsyncResponse asyncResponse) {
+        suspend(asyncResponse,
+                null,
+                null,
+                () -> beaconizerService.getBeaconizerAlleleResponse(request, timeout),
+                response -> null,
+                response -> Response.ok(response).build());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response getMetrics() {
+        StreamingOutput output = outputStream -> beaconizerMetrics.write(new BufferedWriter(new OutputStreamWriter(outputStream,
+                                                                                                                   StandardCharsets.UTF_8)));
+        return Response.ok(output, PROMETHEUS_TEXT).build();
+    }
+
+    /**
+     * Work of a suspended request, which may fail straight away or through its future
+     */
+    private interface Query<T> {
+
+        CompletableFuture<T> start() throws BeaconException;
+    }
 }
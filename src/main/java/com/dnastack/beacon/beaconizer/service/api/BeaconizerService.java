@@ -23,15 +23,25 @@
  */
 package com.dnastack.beacon.beaconizer.service.api;
 
+import com.dnastack.beacon.beaconizer.cache.CachedRepresentation;
+import com.dnastack.beacon.beaconizer.exceptions.UnsupportedQueryException;
+import com.dnastack.beacon.beaconizer.model.BeaconLimitStatus;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.model.BeaconizerAlleleResponse;
 import com.dnastack.beacon.exceptions.BeaconException;
 import org.ga4gh.beacon.Beacon;
 import org.ga4gh.beacon.BeaconAlleleRequest;
 import org.ga4gh.beacon.BeaconAlleleResponse;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * BeaconService interface
+ * BeaconService interface. Queries return futures which complete when the beacons answer, so that the calling thread
+ * never waits for an adapter.
  *
  * @author patmagee
  * @author Miro Cupak (mirocupak@gmail.com)
@@ -46,6 +56,14 @@ public interface BeaconizerService {
      */
     List<Beacon> getBeacons() throws BeaconException;
 
+    /**
+     * Get a list of all the beacons as a UTF-8 encoded JSON array, with its ETag and gzip encoding
+     *
+     * @return future of the cached representation of the JSON
+     * @throws BeaconException if the beacons could not be listed
+     */
+    CompletableFuture<CachedRepresentation> getBeaconsRepresentation() throws BeaconException;
+
     /**
      * Get information from a specific beacon given the name it was registered under.
      *
@@ -54,14 +72,32 @@ public interface BeaconizerService {
      */
     Beacon getBeacon(String name) throws BeaconException;
 
+    /**
+     * Get information from a specific beacon given the name it was registered under, as UTF-8 encoded JSON with its
+     * ETag, gzip encoding and Cache-Control
+     *
+     * @param name name of beacon
+     * @return future of the cached representation of the JSON, failed if the beacon could not be loaded
+     */
+    CompletableFuture<CachedRepresentation> getBeaconRepresentation(String name) throws BeaconException;
+
+    /**
+     * Get the state of the concurrency limit of a specific beacon
+     *
+     * @param name name of beacon
+     * @return current limit, in-flight calls and rejected calls
+     */
+    BeaconLimitStatus getBeaconLimitStatus(String name) throws BeaconException;
+
     /**
      * Query a single Beacon for the existence of a variant
      *
      * @param name    name of beacon
      * @param request request object
-     * @return Response object
+     * @return future of the Response object
+     * @throws BeaconException if the beacon does not exist or the request is invalid
      */
-    BeaconAlleleResponse getBeaconAlleleResponse(String name, BeaconAlleleRequest request) throws BeaconException;
+    CompletableFuture<BeaconAlleleResponse> getBeaconAlleleResponse(String name, BeaconAlleleRequest request) throws BeaconException;
 
     /**
      * Query a single Beacon for the existence of a variant
@@ -74,7 +110,83 @@ public interface BeaconizerService {
      * @param assemblyId              genome assembly
      * @param datasetIds              list of datasetIds
      * @param includeDatasetResponses include
-     * @return Response Object
+     * @return future of the Response Object
+     * @throws BeaconException if the beacon does not exist or the request is invalid
+     */
+    CompletableFuture<BeaconAlleleResponse> getBeaconAlleleResponse(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException;
+
+    /**
+     * Query a single Beacon for the existence of many variants. The requests are read lazily and run concurrently
+     * against the beacon, and each response is passed to the consumer as soon as it is available, so the responses are
+     * not necessarily in the same order as the requests. Requests which are missing, invalid, cannot be parsed or fail
+     * produce a response with an error instead of failing the batch. If the requests cannot be read any further, an
+     * error response says so and the requests already read are still answered. If the responses cannot be written,
+     * the requests still running are cancelled.
+     *
+     * @param name     name of beacon
+     * @param requests request objects
+     * @param consumer consumer of the responses
+     * @throws BeaconException if the beacon does not exist
+     * @throws IOException     if the consumer fails to write a response
+     */
+    void getBeaconAlleleResponses(String name, Iterator<BeaconAlleleRequest> requests, ResponseConsumer consumer) throws BeaconException, IOException;
+
+    /**
+     * Query a single Beacon for the existence of variants in a region
+     *
+     * @param name    name of beacon
+     * @param request request object
+     * @return future of the Response object
+     * @throws UnsupportedQueryException if the adapter of the beacon does not support region queries
+     */
+    CompletableFuture<BeaconRegionResponse> getBeaconRegionResponse(String name, BeaconRegionRequest request) throws BeaconException;
+
+    /**
+     * Query a single Beacon for the existence of variants in a region
+     *
+     * @param name                    name of beacon
+     * @param referenceName           name of the reference
+     * @param start                   0-based start position, inclusive
+     * @param end                     0-based end position, exclusive
+     * @param assemblyId              genome assembly
+     * @param datasetIds              list of datasetIds
+     * @param includeDatasetResponses include
+     * @return future of the Response Object
+     * @throws UnsupportedQueryException if the adapter of the beacon does not support region queries
      */
-    BeaconAlleleResponse getBeaconAlleleResponse(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException;
+    CompletableFuture<BeaconRegionResponse> getBeaconRegionResponse(String name, String referenceName, Long start, Long end, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException;
+
+    /**
+     * Query every registered Beacon at the same time for the existence of a variant
+     *
+     * @param request request object
+     * @param timeout maximum time to wait for the beacons in milliseconds, or null to use the default
+     * @return future of the combined Response object
+     * @throws BeaconException if the request is invalid
+     */
+    CompletableFuture<BeaconizerAlleleResponse> getBeaconizerAlleleResponse(BeaconAlleleRequest request, Long timeout) throws BeaconException;
+
+    /**
+     * Query every registered Beacon at the same time for the existence of a variant
+     *
+     * @param referenceName           name of the reference
+     * @param start                   start position
+     * @param referenceBases          reference bases
+     * @param alternateBases          alternate bases
+     * @param assemblyId              genome assembly
+     * @param datasetIds              list of datasetIds
+     * @param includeDatasetResponses include
+     * @param timeout                 maximum time to wait for the beacons in milliseconds, or null to use the default
+     * @return future of the combined Response object
+     * @throws BeaconException if the request is invalid
+     */
+    CompletableFuture<BeaconizerAlleleResponse> getBeaconizerAlleleResponse(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses, Long timeout) throws BeaconException;
+
+    /**
+     * Consumer of the responses of a batch query
+     */
+    interface ResponseConsumer {
+
+        void accept(BeaconAlleleResponse response) throws IOException;
+    }
 }
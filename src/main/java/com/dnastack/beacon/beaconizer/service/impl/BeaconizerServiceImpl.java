@@ -24,19 +24,54 @@
 package com.dnastack.beacon.beaconizer.service.impl;
 
 import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.adapters.RegionQueryAdapter;
+import com.dnastack.beacon.beaconizer.cache.AlleleRequestKey;
+import com.dnastack.beacon.beaconizer.cache.AlleleResponseCache;
+import com.dnastack.beacon.beaconizer.cache.BeaconMetadataCache;
+import com.dnastack.beacon.beaconizer.cache.BeaconMetadataCache.CachedBeacon;
+import com.dnastack.beacon.beaconizer.cache.CachedRepresentation;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconTimeoutException;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconUnavailableException;
+import com.dnastack.beacon.beaconizer.exceptions.InvalidAlleleRequestException;
+import com.dnastack.beacon.beaconizer.exceptions.InvalidRegionRequestException;
+import com.dnastack.beacon.beaconizer.exceptions.UnsupportedQueryException;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming.Phase;
+import com.dnastack.beacon.beaconizer.model.BeaconLimitStatus;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.model.BeaconizerAlleleResponse;
+import com.dnastack.beacon.beaconizer.resilience.AdapterInvoker;
 import com.dnastack.beacon.beaconizer.service.api.BeaconizerService;
 import com.dnastack.beacon.beaconizer.util.BeaconAdapterFactory;
+import com.dnastack.beacon.beaconizer.util.BeaconExecutor;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import com.dnastack.beacon.beaconizer.util.ResponseMappingResource;
 import com.dnastack.beacon.exceptions.BeaconAlleleRequestException;
 import com.dnastack.beacon.exceptions.BeaconException;
 import com.dnastack.beacon.utils.Reason;
 import org.ga4gh.beacon.Beacon;
 import org.ga4gh.beacon.BeaconAlleleRequest;
 import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconError;
 
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.inject.Inject;
+import javax.ws.rs.core.Response.Status;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
 
 /**
  * BeaconService Implementation
@@ -45,11 +80,43 @@ import java.util.List;
  * @author Miro Cupak (mirocupak@gmail.com)
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class BeaconizerServiceImpl implements BeaconizerService {
 
+    public static final String QUERY_TIMEOUT_PROPERTY = "beaconizer.query.timeout";
+
+    public static final String BEACONS_TIMEOUT_PROPERTY = "beaconizer.beacons.timeout";
+
+    public static final String ERROR_CODE_INFO_KEY = "errorCode";
+
+    public static final String ERROR_MESSAGE_INFO_KEY = "errorMessage";
+
+    public static final String BATCH_PARALLELISM_PROPERTY = "beaconizer.batch.parallelism";
+
+    private static final long DEFAULT_QUERY_TIMEOUT = 10000L;
+
+    private static final int DEFAULT_BATCH_PARALLELISM = 8;
+
+    private static final long DEFAULT_BEACONS_TIMEOUT = 5000L;
+
     @Inject
     BeaconAdapterFactory beaconAdapterFactory;
 
+    @Inject
+    BeaconExecutor beaconExecutor;
+
+    @Inject
+    AlleleResponseCache alleleResponseCache;
+
+    @Inject
+    BeaconMetadataCache beaconMetadataCache;
+
+    @Inject
+    AdapterInvoker adapterInvoker;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
     /**
      * Validate the beacon fields according to the 0.3.0 beacon specifications
      *
@@ -60,23 +127,53 @@ public class BeaconizerServiceImpl implements BeaconizerService {
      * @param assemblyId
      * @throws BeaconException
      */
-    private void validateRequest(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconAlleleRequestException {
-        if (referenceName == null) {
-            throw new BeaconAlleleRequestException(Reason.INVALID_REQUEST,
-                                                   "Reference cannot be null. Please provide an appropriate reference name");
-        } else if (start == null) {
-            throw new BeaconAlleleRequestException(Reason.INVALID_REQUEST,
-                                                   "Start position cannot be null. Please provide a 0-based start position");
-        } else if (referenceBases == null) {
-            throw new BeaconAlleleRequestException(Reason.INVALID_REQUEST, "Reference bases cannot be null");
-        } else if (alternateBases == null) {
-            throw new BeaconAlleleRequestException(Reason.INVALID_REQUEST, "Alternate bases cannot be null");
-        } else if (assemblyId == null) {
-            throw new BeaconAlleleRequestException(Reason.INVALID_REQUEST,
-                                                   "AssemblyId cannot be null. Please defined a valid GRCh assembly Id");
-        } else if (datasetIds == null || datasetIds.size() == 0) {
-            throw new BeaconAlleleRequestException(Reason.INVALID_REQUEST,
-                                                   "Missing DatasetId. At least 1 dataset id must be provided");
+    void validateRequest(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconAlleleRequestException {
+        long begin = System.nanoTime();
+        try {
+            if (referenceName == null) {
+                throw new InvalidAlleleRequestException("Reference cannot be null. Please provide an appropriate reference name");
+            } else if (start == null) {
+                throw new InvalidAlleleRequestException("Start position cannot be null. Please provide a 0-based start position");
+            } else if (referenceBases == null) {
+                throw new InvalidAlleleRequestException("Reference bases cannot be null");
+            } else if (alternateBases == null) {
+                throw new InvalidAlleleRequestException("Alternate bases cannot be null");
+            } else if (assemblyId == null) {
+                throw new InvalidAlleleRequestException("AssemblyId cannot be null. Please defined a valid GRCh assembly Id");
+            } else if (datasetIds == null || datasetIds.size() == 0) {
+                throw new InvalidAlleleRequestException("Missing DatasetId. At least 1 dataset id must be provided");
+            }
+        } finally {
+            ServerTiming.record(Phase.VALIDATE, begin);
+        }
+    }
+
+    /**
+     * Validate the fields of a region request
+     *
+     * @param request region request
+     * @throws InvalidRegionRequestException if a required field is missing or the region is malformed
+     */
+    void validateRegionRequest(BeaconRegionRequest request) throws BeaconException {
+        long begin = System.nanoTime();
+        try {
+            if (request == null) {
+                throw new InvalidRegionRequestException("Region request cannot be null");
+            } else if (request.getReferenceName() == null) {
+                throw new InvalidRegionRequestException("Reference cannot be null. Please provide an appropriate reference name");
+            } else if (request.getStart() == null || request.getStart() < 0) {
+                throw new InvalidRegionRequestException("Start position cannot be null. Please provide a 0-based start position");
+            } else if (request.getEnd() == null) {
+                throw new InvalidRegionRequestException("End position cannot be null. Please provide a 0-based, exclusive end position");
+            } else if (request.getEnd() < request.getStart()) {
+                throw new InvalidRegionRequestException("End position cannot be before the start position");
+            } else if (request.getAssemblyId() == null) {
+                throw new InvalidRegionRequestException("AssemblyId cannot be null. Please defined a valid GRCh assembly Id");
+            } else if (request.getDatasetIds() == null || request.getDatasetIds().size() == 0) {
+                throw new InvalidRegionRequestException("Missing DatasetId. At least 1 dataset id must be provided");
+            }
+        } finally {
+            ServerTiming.record(Phase.VALIDATE, begin);
         }
     }
 
@@ -85,30 +182,95 @@ public class BeaconizerServiceImpl implements BeaconizerService {
      */
     @Override
     public List<Beacon> getBeacons() throws BeaconException {
-        List<String> beaconNames = beaconAdapterFactory.listRegisteredBeacons();
         List<Beacon> beacons = new ArrayList<>();
-
-        for (String beaconName : beaconNames) {
-            beacons.add(beaconAdapterFactory.getAdapter(beaconName).getBeacon());
+        for (Object entry : FutureUtils.await(getBeaconEntries())) {
+            beacons.add(entry instanceof CachedBeacon ? ((CachedBeacon) entry).getBeacon() : (Beacon) entry);
         }
         return beacons;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<CachedRepresentation> getBeaconsRepresentation() throws BeaconException {
+        CachedRepresentation listing = beaconMetadataCache.getListing();
+        if (listing != null) {
+            return CompletableFuture.completedFuture(listing);
+        }
+        return getBeaconEntries().thenApply(beaconMetadataCache::formListing);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Beacon getBeacon(String name) throws BeaconException {
-        return beaconAdapterFactory.getAdapter(name).getBeacon();
+        return FutureUtils.await(beaconMetadataCache.get(name)).getBeacon();
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<CachedRepresentation> getBeaconRepresentation(String name) throws BeaconException {
+        return beaconMetadataCache.get(name).thenApply(CachedBeacon::getRepresentation);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public BeaconAlleleResponse getBeaconAlleleResponse(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException {
-        BeaconAdapter adapter = beaconAdapterFactory.getAdapter(name);
+    public BeaconLimitStatus getBeaconLimitStatus(String name) throws BeaconException {
+        return adapterInvoker.getLimitStatus(name);
+    }
+
+    /**
+     * Collect the entries of the beacon listing in registration order. Cached beacons are used as they are, while the
+     * beacons which are not cached yet are loaded concurrently within the {@value #BEACONS_TIMEOUT_PROPERTY} deadline.
+     * Beacons which fail or time out are returned as placeholder Beacons.
+     *
+     * @return future of the list of CachedBeacons and placeholder Beacons
+     * @throws BeaconException if the beacons could not be listed
+     */
+    private CompletableFuture<List<Object>> getBeaconEntries() throws BeaconException {
+        List<String> beaconNames = beaconAdapterFactory.listRegisteredBeacons();
+        List<Object> entries = new ArrayList<>(beaconNames.size());
+        List<String> missing = new ArrayList<>();
+
+        for (String beaconName : beaconNames) {
+            CachedBeacon cached = beaconMetadataCache.getIfPresent(beaconName);
+            entries.add(cached);
+            if (cached == null) {
+                missing.add(beaconName);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(entries);
+        }
+
+        long timeoutMillis = ConfigUtils.getLongProperty(BEACONS_TIMEOUT_PROPERTY, DEFAULT_BEACONS_TIMEOUT);
+        return this.<Object>callBeacons(missing,
+                                        name -> beaconMetadataCache.get(name).thenApply(cached -> cached),
+                                        this::formErrorBeacon,
+                                        timeoutMillis).thenApply(loaded -> {
+            int next = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i) == null) {
+                    entries.set(i, loaded.get(next++));
+                }
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BeaconAlleleResponse> getBeaconAlleleResponse(String name, String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException {
+        beaconAdapterFactory.getAdapter(name);
         validateRequest(name,
                         referenceName,
                         start,
@@ -117,21 +279,40 @@ public class BeaconizerServiceImpl implements BeaconizerService {
                         assemblyId,
                         datasetIds,
                         includeDatasetResponses);
-        return adapter.getBeaconAlleleResponse(referenceName,
-                                               start,
-                                               referenceBases,
-                                               alternateBases,
-                                               assemblyId,
-                                               datasetIds,
-                                               includeDatasetResponses);
+        AlleleRequestKey key = AlleleRequestKey.of(name,
+                                                   referenceName,
+                                                   start,
+                                                   referenceBases,
+                                                   alternateBases,
+                                                   assemblyId,
+                                                   datasetIds,
+                                                   includeDatasetResponses);
+        BeaconAlleleRequest request = formRequest(referenceName,
+                                                  start,
+                                                  referenceBases,
+                                                  alternateBases,
+                                                  assemblyId,
+                                                  datasetIds,
+                                                  includeDatasetResponses);
+        CompletableFuture<BeaconAlleleResponse> response = alleleResponseCache.get(key,
+                                                                                   request,
+                                                                                   () -> queryReplicas(name,
+                                                                                                       adapter -> adapter.getBeaconAlleleResponse(referenceName,
+                                                                                                                                                  start,
+                                                                                                                                                  referenceBases,
+                                                                                                                                                  alternateBases,
+                                                                                                                                                  assemblyId,
+                                                                                                                                                  datasetIds,
+                                                                                                                                                  includeDatasetResponses)));
+        return recoverUnavailable(name, request, response);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public BeaconAlleleResponse getBeaconAlleleResponse(String name, BeaconAlleleRequest request) throws BeaconException {
-        BeaconAdapter adapter = beaconAdapterFactory.getAdapter(name);
+    public CompletableFuture<BeaconAlleleResponse> getBeaconAlleleResponse(String name, BeaconAlleleRequest request) throws BeaconException {
+        beaconAdapterFactory.getAdapter(name);
         validateRequest(name,
                         request.getReferenceName(),
                         request.getStart(),
@@ -140,7 +321,471 @@ public class BeaconizerServiceImpl implements BeaconizerService {
                         request.getAssemblyId(),
                         request.getDatasetIds(),
                         request.getIncludeDatasetResponses());
-        return adapter.getBeaconAlleleResponse(request);
+        return recoverUnavailable(name,
+                                  request,
+                                  alleleResponseCache.get(AlleleRequestKey.of(name, request),
+                                                          request,
+                                                          () -> queryReplicas(name,
+                                                                              adapter -> adapter.getBeaconAlleleResponse(request))));
+    }
+
+    /**
+     * Answer with an error response instead of failing when the beacon is unavailable or does not answer in time, like
+     * for any other error reported by the beacon itself
+     *
+     * @param name     name of beacon
+     * @param request  request object
+     * @param response future of the response from the beacon
+     * @return future of the response, or of the error response
+     */
+    private CompletableFuture<BeaconAlleleResponse> recoverUnavailable(String name, BeaconAlleleRequest request, CompletableFuture<BeaconAlleleResponse> response) {
+        CompletableFuture<BeaconAlleleResponse> recovered = new CompletableFuture<>();
+        response.whenComplete((result, failure) -> {
+            Throwable cause = failure == null ? null : FutureUtils.unwrap(failure);
+            if (cause == null) {
+                recovered.complete(result);
+            } else if (cause instanceof BeaconUnavailableException || cause instanceof BeaconTimeoutException) {
+                recovered.complete(formErrorResponse(name,
+                                                     request,
+                                                     ResponseMappingResource.getBeaconStatus((BeaconException) cause),
+                                                     cause.getMessage()));
+            } else {
+                recovered.completeExceptionally(cause);
+            }
+        });
+        return recovered;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getBeaconAlleleResponses(String name, Iterator<BeaconAlleleRequest> requests, ResponseConsumer consumer) throws BeaconException, IOException {
+        beaconAdapterFactory.getAdapter(name);
+        int parallelism = Math.max(1, ConfigUtils.getIntProperty(BATCH_PARALLELISM_PROPERTY, DEFAULT_BATCH_PARALLELISM));
+
+        BlockingQueue<Future<BeaconAlleleResponse>> completed = new LinkedBlockingQueue<>();
+        Set<Future<BeaconAlleleResponse>> running = new HashSet<>();
+        boolean finished = false;
+        try {
+            while (true) {
+                while (running.size() >= parallelism) {
+                    consumer.accept(takeBatchResponse(name, completed, running));
+                }
+
+                try {
+                    if (!requests.hasNext()) {
+                        break;
+                    }
+                } catch (RuntimeException e) {
+                    // The rest of the requests cannot be read, answer those already read
+                    consumer.accept(formErrorResponse(name, null, Status.BAD_REQUEST, "Cannot read the requests: " + e.getMessage()));
+                    break;
+                }
+
+                BeaconAlleleRequest request;
+                try {
+                    request = requests.next();
+                } catch (RuntimeException e) {
+                    consumer.accept(formErrorResponse(name, null, Status.BAD_REQUEST, "Malformed request: " + e.getMessage()));
+                    continue;
+                }
+
+                FutureTask<BeaconAlleleResponse> task = new FutureTask<BeaconAlleleResponse>(() -> queryBatchRequest(name, request)) {
+                    @Override
+                    protected void done() {
+                        completed.add(this);
+                    }
+                };
+                running.add(task);
+                beaconExecutor.executeOrRun(task);
+
+                Future<BeaconAlleleResponse> response;
+                while ((response = completed.poll()) != null) {
+                    running.remove(response);
+                    consumer.accept(getBatchResponse(name, response));
+                }
+            }
+            while (!running.isEmpty()) {
+                consumer.accept(takeBatchResponse(name, completed, running));
+            }
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BeaconException(Reason.ERROR, "Interrupted while waiting for beacon responses");
+        } finally {
+            if (!finished) {
+                // Nobody is left to write the responses, e.g. the client went away
+                for (Future<BeaconAlleleResponse> task : running) {
+                    task.cancel(true);
+                }
+            }
+        }
+    }
+
+    private BeaconAlleleResponse takeBatchResponse(String name, BlockingQueue<Future<BeaconAlleleResponse>> completed, Set<Future<BeaconAlleleResponse>> running) throws InterruptedException {
+        Future<BeaconAlleleResponse> response = completed.take();
+        running.remove(response);
+        return getBatchResponse(name, response);
+    }
+
+    private BeaconAlleleResponse getBatchResponse(String name, Future<BeaconAlleleResponse> response) throws InterruptedException {
+        try {
+            return response.get();
+        } catch (ExecutionException | CancellationException e) {
+            // Not expected, the requests of a batch answer their own failures
+            return formErrorResponse(name, null, Status.INTERNAL_SERVER_ERROR, String.valueOf(FutureUtils.unwrap(e).getMessage()));
+        }
+    }
+
+    /**
+     * Run a single request of a batch query. Every failure is returned as an error response so that a single bad
+     * request does not fail the whole batch.
+     *
+     * @param name    name of beacon
+     * @param request request object, null if the batch has a null element
+     * @return response from the beacon, or an error response
+     */
+    private BeaconAlleleResponse queryBatchRequest(String name, BeaconAlleleRequest request) {
+        if (request == null) {
+            return formErrorResponse(name, null, Status.BAD_REQUEST, "Request cannot be null");
+        }
+        try {
+            validateRequest(name,
+                            request.getReferenceName(),
+                            request.getStart(),
+                            request.getReferenceBases(),
+                            request.getAlternateBases(),
+                            request.getAssemblyId(),
+                            request.getDatasetIds(),
+                            request.getIncludeDatasetResponses());
+            return FutureUtils.await(alleleResponseCache.get(AlleleRequestKey.of(name, request),
+                                                             request,
+                                                             () -> queryReplicas(name,
+                                                                                 adapter -> adapter.getBeaconAlleleResponse(request))));
+        } catch (BeaconException e) {
+            return formErrorResponse(name, request, ResponseMappingResource.getBeaconStatus(e), e.getMessage());
+        } catch (Exception e) {
+            return formErrorResponse(name, request, ResponseMappingResource.getStatus(e), String.valueOf(e.getMessage()));
+        } catch (Throwable t) {
+            return formErrorResponse(name, request, Status.INTERNAL_SERVER_ERROR, String.valueOf(t.getMessage()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BeaconRegionResponse> getBeaconRegionResponse(String name, String referenceName, Long start, Long end, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) throws BeaconException {
+        BeaconRegionRequest request = new BeaconRegionRequest();
+        request.setReferenceName(referenceName);
+        request.setStart(start);
+        request.setEnd(end);
+        request.setAssemblyId(assemblyId);
+        request.setDatasetIds(datasetIds);
+        request.setIncludeDatasetResponses(includeDatasetResponses);
+        return getBeaconRegionResponse(name, request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BeaconRegionResponse> getBeaconRegionResponse(String name, BeaconRegionRequest request) throws BeaconException {
+        getRegionQueryAdapter(name);
+        validateRegionRequest(request);
+        CompletableFuture<BeaconRegionResponse> recovered = new CompletableFuture<>();
+        adapterInvoker.invokeReplicatedAsync(name, replica -> {
+            BeaconRegionResponse response = getRegionQueryAdapter(replica).getBeaconRegionResponse(request);
+            if (response.getBeaconId() == null || !replica.equals(name)) {
+                response.setBeaconId(name);
+            }
+            return response;
+        }).whenComplete((result, failure) -> {
+            Throwable cause = failure == null ? null : FutureUtils.unwrap(failure);
+            if (cause == null) {
+                recovered.complete(result);
+            } else if (cause instanceof BeaconUnavailableException || cause instanceof BeaconTimeoutException) {
+                BeaconError error = new BeaconError();
+                error.setErrorCode(ResponseMappingResource.getBeaconStatus((BeaconException) cause).getStatusCode());
+                error.setMessage(cause.getMessage());
+
+                BeaconRegionResponse response = new BeaconRegionResponse();
+                response.setBeaconId(name);
+                response.setRegionRequest(request);
+                response.setError(error);
+                recovered.complete(response);
+            } else {
+                recovered.completeExceptionally(cause);
+            }
+        });
+        return recovered;
+    }
+
+    /**
+     * Look up the adapter of a beacon as a RegionQueryAdapter
+     *
+     * @param name name of beacon
+     * @return region query capability of the adapter
+     * @throws UnsupportedQueryException if the adapter does not support region queries
+     */
+    private RegionQueryAdapter getRegionQueryAdapter(String name) throws BeaconException {
+        BeaconAdapter adapter = beaconAdapterFactory.getAdapter(name);
+        if (!(adapter instanceof RegionQueryAdapter)) {
+            throw new UnsupportedQueryException("Beacon " + name + " does not support region queries");
+        }
+        return (RegionQueryAdapter) adapter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BeaconizerAlleleResponse> getBeaconizerAlleleResponse(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses, Long timeout) throws BeaconException {
+        return getBeaconizerAlleleResponse(formRequest(referenceName,
+                                                       start,
+                                                       referenceBases,
+                                                       alternateBases,
+                                                       assemblyId,
+                                                       datasetIds,
+                                                       includeDatasetResponses), timeout);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BeaconizerAlleleResponse> getBeaconizerAlleleResponse(BeaconAlleleRequest request, Long timeout) throws BeaconException {
+        validateRequest(null,
+                        request.getReferenceName(),
+                        request.getStart(),
+                        request.getReferenceBases(),
+                        request.getAlternateBases(),
+                        request.getAssemblyId(),
+                        request.getDatasetIds(),
+                        request.getIncludeDatasetResponses());
+
+        long timeoutMillis = timeout != null && timeout > 0 ? timeout : ConfigUtils.getLongProperty(QUERY_TIMEOUT_PROPERTY,
+                                                                                                    DEFAULT_QUERY_TIMEOUT);
+
+        // Replicas serve the same data, so each replica group is queried once
+        List<String> beaconNames = new ArrayList<>();
+        for (String name : beaconAdapterFactory.listRegisteredBeacons()) {
+            if (adapterInvoker.getReplicas(name).get(0).equals(name)) {
+                beaconNames.add(name);
+            }
+        }
+
+        return callBeacons(beaconNames,
+                           name -> queryBeacon(name, request),
+                           (name, status, message) -> formErrorResponse(name, request, status, message),
+                           timeoutMillis).thenApply(responses -> {
+            BeaconizerAlleleResponse beaconizerResponse = new BeaconizerAlleleResponse();
+            beaconizerResponse.setAlleleRequest(request);
+            beaconizerResponse.setBeaconAlleleResponses(responses);
+            beaconizerResponse.setExists(combineExists(responses));
+            return beaconizerResponse;
+        });
+    }
+
+    /**
+     * Call every passed beacon at the same time and complete when they all complete or the timeout expires, whichever
+     * happens first. Beacons which fail or do not complete in time are replaced with the result of the error factory,
+     * so a single slow or broken beacon does not fail the whole call. No thread waits for the beacons.
+     *
+     * @param beaconNames   names of the beacons to call
+     * @param call          call to make for each beacon
+     * @param errorFactory  factory for the result of a failed beacon
+     * @param timeoutMillis maximum time to wait in milliseconds
+     * @return future of the results in the same order as the beacon names
+     */
+    private <T> CompletableFuture<List<T>> callBeacons(List<String> beaconNames, BeaconCall<T> call, ErrorFactory<T> errorFactory, long timeoutMillis) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(beaconNames.size());
+        for (String beaconName : beaconNames) {
+            CompletableFuture<T> future;
+            try {
+                future = call.call(beaconName);
+            } catch (BeaconException | RuntimeException e) {
+                future = FutureUtils.failed(e);
+            }
+            futures.add(future.handle((result, failure) -> {
+                if (failure == null) {
+                    return result;
+                }
+                Throwable cause = FutureUtils.unwrap(failure);
+                Status status = cause instanceof BeaconException ? ResponseMappingResource.getBeaconStatus((BeaconException) cause) : Status.INTERNAL_SERVER_ERROR;
+                return errorFactory.create(beaconName, status, String.valueOf(cause.getMessage()));
+            }));
+        }
+
+        CompletableFuture<List<T>> results = new CompletableFuture<>();
+        Runnable collect = () -> {
+            if (results.isDone()) {
+                return;
+            }
+            List<T> collected = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<T> future = futures.get(i);
+                collected.add(future.isDone() ? future.join() : errorFactory.create(beaconNames.get(i),
+                                                                                    Status.GATEWAY_TIMEOUT,
+                                                                                    "Beacon did not respond within " + timeoutMillis + " ms"));
+            }
+            results.complete(collected);
+        };
+
+        ScheduledFuture<?> timer;
+        try {
+            timer = scheduler.schedule(collect, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return FutureUtils.failed(new BeaconException(Reason.ERROR, "Too many concurrent requests, please try again later"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            timer.cancel(false);
+            collect.run();
+        });
+        return results;
+    }
+
+    /**
+     * Query a single beacon as part of a request to every beacon
+     *
+     * @param name    name of beacon
+     * @param request request object
+     * @return future of the response from the beacon
+     * @throws BeaconException if the beacon has no adapter
+     */
+    private CompletableFuture<BeaconAlleleResponse> queryBeacon(String name, BeaconAlleleRequest request) throws BeaconException {
+        beaconAdapterFactory.getAdapter(name);
+        return alleleResponseCache.get(AlleleRequestKey.of(name, request),
+                                       request,
+                                       () -> queryReplicas(name, adapter -> adapter.getBeaconAlleleResponse(request)).thenApply(response -> {
+                                           if (response.getBeaconId() == null) {
+                                               response.setBeaconId(name);
+                                           }
+                                           return response;
+                                       }));
+    }
+
+    /**
+     * Query a beacon, or the fastest of its replicas, through the adapter invoker. Answers from a replica are reported
+     * under the name of the queried beacon.
+     *
+     * @param name  name of beacon
+     * @param query query to run against the adapter of the chosen replica
+     * @return future of the response from the beacon or one of its replicas
+     */
+    private CompletableFuture<BeaconAlleleResponse> queryReplicas(String name, AlleleQuery query) {
+        return adapterInvoker.invokeReplicatedAsync(name, replica -> {
+            BeaconAlleleResponse response = query.query(beaconAdapterFactory.getAdapter(replica));
+            if (!replica.equals(name)) {
+                response.setBeaconId(name);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Form a request object from the passed query parameters
+     *
+     * @return request object
+     */
+    private static BeaconAlleleRequest formRequest(String referenceName, Long start, String referenceBases, String alternateBases, String assemblyId, List<String> datasetIds, Boolean includeDatasetResponses) {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName(referenceName);
+        request.setStart(start);
+        request.setReferenceBases(referenceBases);
+        request.setAlternateBases(alternateBases);
+        request.setAssemblyId(assemblyId);
+        request.setDatasetIds(datasetIds);
+        // A missing flag means false, as in the request keys, so cached responses echo the same request either way
+        request.setIncludeDatasetResponses(Boolean.TRUE.equals(includeDatasetResponses));
+        return request;
+    }
+
+    /**
+     * Form a BeaconAlleleResponse with the error fields set appropriately
+     *
+     * @param name    name of beacon
+     * @param request request object
+     * @param status  status to report in the error
+     * @param message error message
+     * @return error response
+     */
+    private BeaconAlleleResponse formErrorResponse(String name, BeaconAlleleRequest request, Status status, String message) {
+        BeaconError error = new BeaconError();
+        error.setErrorCode(status.getStatusCode());
+        error.setMessage(message);
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId(name);
+        response.setAlleleRequest(request);
+        response.setExists(null);
+        response.setError(error);
+        return response;
+    }
+
+    /**
+     * Form a placeholder Beacon for a beacon whose metadata could not be retrieved. The error is reported through the
+     * info map so that the listing keeps its shape.
+     *
+     * @param name    name of beacon
+     * @param status  status to report in the error
+     * @param message error message
+     * @return placeholder Beacon
+     */
+    private Beacon formErrorBeacon(String name, Status status, String message) {
+        Map<String, String> info = new HashMap<>();
+        info.put(ERROR_CODE_INFO_KEY, String.valueOf(status.getStatusCode()));
+        info.put(ERROR_MESSAGE_INFO_KEY, message);
+
+        Beacon beacon = new Beacon();
+        beacon.setId(name);
+        beacon.setName(name);
+        beacon.setInfo(info);
+        return beacon;
+    }
+
+    /**
+     * Combine the exists flags of the passed responses. The allele exists if any beacon found it, does not exist if
+     * at least one beacon answered and none found it, and is unknown if no beacon answered.
+     *
+     * @param responses responses from each beacon
+     * @return combined exists flag
+     */
+    private Boolean combineExists(List<BeaconAlleleResponse> responses) {
+        Boolean exists = null;
+        for (BeaconAlleleResponse response : responses) {
+            if (Boolean.TRUE.equals(response.getExists())) {
+                return true;
+            } else if (Boolean.FALSE.equals(response.getExists())) {
+                exists = false;
+            }
+        }
+        return exists;
+    }
+
+    /**
+     * Allele query against a beacon adapter
+     */
+    private interface AlleleQuery {
+
+        BeaconAlleleResponse query(BeaconAdapter adapter) throws BeaconException;
+    }
+
+    /**
+     * A call made to a single beacon
+     */
+    private interface BeaconCall<T> {
+
+        CompletableFuture<T> call(String name) throws BeaconException;
+    }
+
+    /**
+     * Factory for the result reported in place of a beacon which failed or timed out
+     */
+    private interface ErrorFactory<T> {
+
+        T create(String name, Status status, String message);
     }
 
 }
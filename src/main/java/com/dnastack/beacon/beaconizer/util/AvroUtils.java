@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import org.apache.avro.io.*;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holder of the Avro datum readers and writers of the GA4GH beacon model, whose classes are generated from the beacon's
+ * Avro schema. The reader and writer of each class are created once and shared, and each thread reuses its own
+ * buffered encoder and decoder.
+ */
+public class AvroUtils {
+
+    private static final Map<Class<?>, DatumReader<?>> READERS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, DatumWriter<?>> WRITERS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<BinaryDecoder> DECODERS = new ThreadLocal<>();
+
+    private static final ThreadLocal<BinaryEncoder> ENCODERS = new ThreadLocal<>();
+
+    private AvroUtils() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> DatumReader<T> getReader(Class<T> type) {
+        return (DatumReader<T>) READERS.computeIfAbsent(type, SpecificDatumReader::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> DatumWriter<T> getWriter(Class<T> type) {
+        return (DatumWriter<T>) WRITERS.computeIfAbsent(type, SpecificDatumWriter::new);
+    }
+
+    /**
+     * Read a single datum in the Avro binary encoding
+     *
+     * @param inputStream stream to read from
+     * @param type        class of the datum
+     * @return datum
+     * @throws IOException if the stream could not be read or does not hold a datum of the class
+     */
+    public static <T> T read(InputStream inputStream, Class<T> type) throws IOException {
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(inputStream, DECODERS.get());
+        DECODERS.set(decoder);
+        return getReader(type).read(null, decoder);
+    }
+
+    /**
+     * Write a single datum in the Avro binary encoding
+     *
+     * @param outputStream stream to write to
+     * @param datum        datum to write
+     * @throws IOException if the stream could not be written
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void write(OutputStream outputStream, T datum) throws IOException {
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, ENCODERS.get());
+        ENCODERS.set(encoder);
+        getWriter((Class<T>) datum.getClass()).write(datum, encoder);
+        encoder.flush();
+    }
+
+    /**
+     * Decode a single datum from its Avro binary encoding
+     *
+     * @param bytes encoded datum
+     * @param type  class of the datum
+     * @return datum
+     * @throws IOException if the bytes do not hold a datum of the class
+     */
+    public static <T> T fromBytes(byte[] bytes, Class<T> type) throws IOException {
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, DECODERS.get());
+        DECODERS.set(decoder);
+        return getReader(type).read(null, decoder);
+    }
+
+    /**
+     * Encode a single datum in the Avro binary encoding
+     *
+     * @param datum datum to encode
+     * @return encoded datum
+     */
+    public static byte[] toBytes(Object datum) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            write(out, datum);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -25,34 +25,98 @@ package com.dnastack.beacon.beaconizer.util;
 
 import com.dnastack.beacon.adapter.api.BeaconAdapter;
 import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming.Phase;
 import com.dnastack.beacon.exceptions.BeaconException;
 import com.dnastack.beacon.utils.AdapterConfig;
 import lombok.NonNull;
 
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
+import javax.ejb.Startup;
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * BeaconAdapterFactory for creating a new BeaconAdapter instance for a specific beacon. The adapter relies
  * on an AdapterConfig object to describe how an adapter should be created. It then creates and stores a single
  * instance of each adapter based on the name value passed in the AdapterConfig object
+ * <p>
+ * Each adapter is initialized exactly once: concurrent first requests for the same beacon wait for the same
+ * initialization instead of creating duplicate adapters. If the {@value #EAGER_INIT_PROPERTY} system property is set,
+ * every registered adapter is initialized in parallel when the application is deployed.
  *
  * @author patmagee
  * @author Miro Cupak (mirocupak@gmail.com)
  */
 @Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class BeaconAdapterFactory {
 
+    public static final String EAGER_INIT_PROPERTY = "beaconizer.adapters.eagerInit";
+    public static final String INIT_TIMEOUT_PROPERTY = "beaconizer.adapters.initTimeout";
+
+    private static final long DEFAULT_INIT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Logger LOGGER = Logger.getLogger(BeaconAdapterFactory.class.getName());
+
     @Inject
     BeaconizerDao dao;
 
-    Map<String, BeaconAdapter> adapters = new ConcurrentHashMap<>();
+    @Inject
+    BeaconExecutor beaconExecutor;
+
+    Map<String, Future<BeaconAdapter>> adapters = new ConcurrentHashMap<>();
 
     /**
-     * Create a new BeaconAdapter and register it under the passed name
+     * Initialize every registered adapter in parallel if eager initialization is enabled. Adapters which fail to
+     * initialize, or which are not ready before the init timeout, are initialized again on first use.
+     */
+    @PostConstruct
+    public void init() {
+        if (!ConfigUtils.getBooleanProperty(EAGER_INIT_PROPERTY, false)) {
+            return;
+        }
+
+        List<String> names = listRegisteredBeacons();
+        List<Callable<BeaconAdapter>> tasks = new ArrayList<>(names.size());
+        for (String name : names) {
+            tasks.add(() -> getAdapter(name));
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<Future<BeaconAdapter>> futures = beaconExecutor.invokeAll(tasks,
+                                                                           ConfigUtils.getLongProperty(
+                                                                                   INIT_TIMEOUT_PROPERTY,
+                                                                                   DEFAULT_INIT_TIMEOUT));
+            int initialized = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                    initialized++;
+                } catch (CancellationException | ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Could not initialize adapter for beacon " + names.get(i));
+                }
+            }
+            LOGGER.info("Initialized " + initialized + " of " + names.size() + " adapters in " + TimeUnit.NANOSECONDS
+                    .toMillis(System.nanoTime() - start) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Create a new BeaconAdapter and register it under the passed name. Only one caller creates the adapter, any
+     * concurrent callers wait for its result
      *
      * @param name name of adapter instance
      * @return new BeaconAdapter
@@ -61,10 +125,40 @@ public class BeaconAdapterFactory {
     private BeaconAdapter newAdapter(String name) throws BeaconException {
         AdapterConfig adapterConfig = dao.find(name);
 
-        BeaconAdapter adapter = createAdapterInstance(adapterConfig);
-        adapters.put(adapterConfig.getName(), adapter);
+        FutureTask<BeaconAdapter> task = new FutureTask<>(() -> createAdapterInstance(adapterConfig));
+        Future<BeaconAdapter> adapter = adapters.putIfAbsent(adapterConfig.getName(), task);
+        if (adapter == null) {
+            adapter = task;
+            task.run();
+        }
+
+        return awaitAdapter(name, adapter);
+    }
 
-        return adapter;
+    /**
+     * Wait for an adapter to be initialized. If the initialization failed, the adapter is unregistered so that the
+     * next request tries again
+     *
+     * @param name    name of adapter instance
+     * @param adapter pending adapter
+     * @return BeaconAdapter instance
+     * @throws BeaconException
+     */
+    private BeaconAdapter awaitAdapter(String name, Future<BeaconAdapter> adapter) throws BeaconException {
+        try {
+            return adapter.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BeaconException("Interrupted while waiting for adapter " + name);
+        } catch (ExecutionException e) {
+            adapters.remove(name, adapter);
+            if (e.getCause() instanceof BeaconException) {
+                throw (BeaconException) e.getCause();
+            }
+            BeaconException exception = new BeaconException(e.getCause().getMessage());
+            exception.setStackTrace(e.getCause().getStackTrace());
+            throw exception;
+        }
     }
 
     /**
@@ -76,10 +170,13 @@ public class BeaconAdapterFactory {
      */
     private BeaconAdapter createAdapterInstance(AdapterConfig adapterConfig) throws BeaconException {
 
+        long start = System.nanoTime();
         Class<BeaconAdapter> adapterClass = adapterConfig.convertAapterClassStringToClass();
         try {
             BeaconAdapter adapter = adapterClass.newInstance();
             adapter.initAdapter(adapterConfig);
+            LOGGER.info("Initialized adapter " + adapterConfig.getAdapterClass() + " for beacon " + adapterConfig.getName() + " in " + TimeUnit.NANOSECONDS
+                    .toMillis(System.nanoTime() - start) + " ms");
             return adapter;
         } catch (Exception e) {
             BeaconException exception = new BeaconException(e.getMessage());
@@ -88,6 +185,16 @@ public class BeaconAdapterFactory {
         }
     }
 
+    /**
+     * Forget the adapter of a beacon, e.g. after its configuration changed, so that the next request creates a new
+     * one. Requests which already hold the old adapter keep using it.
+     *
+     * @param name name of adapter instance
+     */
+    public void invalidate(String name) {
+        adapters.remove(name);
+    }
+
     public List<String> listRegisteredBeacons() {
         return dao.listRegisteredBeacons();
     }
@@ -100,11 +207,16 @@ public class BeaconAdapterFactory {
      * @throws BeaconException
      */
     public BeaconAdapter getAdapter(@NonNull String name) throws BeaconException {
-        BeaconAdapter adapter = adapters.get(name);
-        if (adapter != null) {
-            return adapter;
+        long start = System.nanoTime();
+        try {
+            Future<BeaconAdapter> adapter = adapters.get(name);
+            if (adapter != null) {
+                return awaitAdapter(name, adapter);
+            }
+            return newAdapter(name);
+        } finally {
+            ServerTiming.record(Phase.LOOKUP, start);
         }
-        return newAdapter(name);
     }
 
 }
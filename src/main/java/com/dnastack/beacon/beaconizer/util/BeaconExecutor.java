@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Bounded executor for the application's own work: the requests of a batch query, which wait on it for their adapter
+ * calls, the background refresh of beacon metadata, the eager creation of adapters at startup and their creation after
+ * a reload. Adapter calls themselves run on the pool of the
+ * {@link com.dnastack.beacon.beaconizer.resilience.AdapterInvoker}, so the size of this pool bounds how many requests
+ * of a batch are in progress at a time rather than how many adapters are called. Threads are created by the
+ * container's ManagedThreadFactory, so tasks run with the application's naming and class loading context. The pool size
+ * and queue length can be set through the {@value #POOL_SIZE_PROPERTY} and {@value #QUEUE_SIZE_PROPERTY} system
+ * properties.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class BeaconExecutor {
+
+    public static final String POOL_SIZE_PROPERTY = "beaconizer.executor.poolSize";
+    public static final String QUEUE_SIZE_PROPERTY = "beaconizer.executor.queueSize";
+
+    private static final int DEFAULT_POOL_SIZE = 32;
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = ConfigUtils.getIntProperty(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+        int queueSize = ConfigUtils.getIntProperty(QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE);
+
+        executor = new ThreadPoolExecutor(poolSize,
+                                          poolSize,
+                                          60L,
+                                          TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<>(queueSize),
+                                          threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit a single task to the executor
+     *
+     * @param task task to run
+     * @return Future for the result of the task
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Run a single task on the executor, or on the calling thread if the queue is full
+     *
+     * @param task task to run
+     */
+    public void executeOrRun(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Run all of the tasks concurrently and wait until they complete or the timeout expires, whichever happens first.
+     * Tasks which have not completed when the timeout expires are cancelled. Tasks which do not fit in the queue run on
+     * the calling thread, so any number of tasks can be passed.
+     *
+     * @param tasks         tasks to run
+     * @param timeoutMillis maximum time to wait in milliseconds
+     * @return list of futures in the same order as the tasks
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                FutureTask<T> future = new FutureTask<>(task);
+                futures.add(future);
+                executeOrRun(future);
+            }
+            for (Future<T> future : futures) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    future.get(remaining, TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | CancellationException | TimeoutException e) {
+                    // Reported through the future
+                }
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return futures;
+    }
+}
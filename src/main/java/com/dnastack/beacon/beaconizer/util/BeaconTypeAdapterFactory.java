@@ -0,0 +1,637 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.ga4gh.beacon.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming Gson TypeAdapters for the GA4GH beacon model, used instead of Gson's reflective adapters on the request
+ * path. Fields are written in schema order and null fields are skipped, so the output is identical to the reflective
+ * output. Unknown fields are ignored when reading. BeaconOrganization is rarely serialized and is left to the
+ * reflective adapter.
+ */
+public class BeaconTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        Class<? super T> type = typeToken.getRawType();
+        if (type == BeaconAlleleRequest.class) {
+            return (TypeAdapter<T>) new BeaconAlleleRequestAdapter();
+        } else if (type == BeaconError.class) {
+            return (TypeAdapter<T>) new BeaconErrorAdapter();
+        } else if (type == BeaconDatasetAlleleResponse.class) {
+            return (TypeAdapter<T>) new BeaconDatasetAlleleResponseAdapter(gson.getAdapter(BeaconError.class));
+        } else if (type == BeaconAlleleResponse.class) {
+            return (TypeAdapter<T>) new BeaconAlleleResponseAdapter(gson.getAdapter(BeaconError.class),
+                                                                    gson.getAdapter(BeaconAlleleRequest.class),
+                                                                    gson.getAdapter(BeaconDatasetAlleleResponse.class));
+        } else if (type == BeaconDataset.class) {
+            return (TypeAdapter<T>) new BeaconDatasetAdapter();
+        } else if (type == Beacon.class) {
+            return (TypeAdapter<T>) new BeaconTypeAdapter(gson.getAdapter(BeaconOrganization.class),
+                                                      gson.getAdapter(BeaconDataset.class),
+                                                      gson.getAdapter(BeaconAlleleRequest.class));
+        }
+        return null;
+    }
+
+    private static final class BeaconAlleleRequestAdapter extends TypeAdapter<BeaconAlleleRequest> {
+
+        @Override
+        public void write(JsonWriter out, BeaconAlleleRequest value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("referenceName").value(value.getReferenceName());
+            out.name("start").value(value.getStart());
+            out.name("referenceBases").value(value.getReferenceBases());
+            out.name("alternateBases").value(value.getAlternateBases());
+            out.name("assemblyId").value(value.getAssemblyId());
+            out.name("datasetIds");
+            writeStrings(out, value.getDatasetIds());
+            out.name("includeDatasetResponses");
+            writeBoolean(out, value.getIncludeDatasetResponses());
+            out.endObject();
+        }
+
+        @Override
+        public BeaconAlleleRequest read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BeaconAlleleRequest value = new BeaconAlleleRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "referenceName":
+                        value.setReferenceName(in.nextString());
+                        break;
+                    case "start":
+                        value.setStart(readLong(in));
+                        break;
+                    case "referenceBases":
+                        value.setReferenceBases(in.nextString());
+                        break;
+                    case "alternateBases":
+                        value.setAlternateBases(in.nextString());
+                        break;
+                    case "assemblyId":
+                        value.setAssemblyId(in.nextString());
+                        break;
+                    case "datasetIds":
+                        value.setDatasetIds(readStrings(in));
+                        break;
+                    case "includeDatasetResponses":
+                        value.setIncludeDatasetResponses(in.nextBoolean());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static final class BeaconErrorAdapter extends TypeAdapter<BeaconError> {
+
+        @Override
+        public void write(JsonWriter out, BeaconError value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("errorCode").value(value.getErrorCode());
+            out.name("message").value(value.getMessage());
+            out.endObject();
+        }
+
+        @Override
+        public BeaconError read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BeaconError value = new BeaconError();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "errorCode":
+                        value.setErrorCode(readInt(in));
+                        break;
+                    case "message":
+                        value.setMessage(in.nextString());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static final class BeaconDatasetAlleleResponseAdapter extends TypeAdapter<BeaconDatasetAlleleResponse> {
+
+        private final TypeAdapter<BeaconError> errorAdapter;
+
+        BeaconDatasetAlleleResponseAdapter(TypeAdapter<BeaconError> errorAdapter) {
+            this.errorAdapter = errorAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, BeaconDatasetAlleleResponse value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("datasetId").value(value.getDatasetId());
+            out.name("exists");
+            writeBoolean(out, value.getExists());
+            out.name("error");
+            errorAdapter.write(out, value.getError());
+            out.name("frequency").value(value.getFrequency());
+            out.name("variantCount").value(value.getVariantCount());
+            out.name("callCount").value(value.getCallCount());
+            out.name("sampleCount").value(value.getSampleCount());
+            out.name("note").value(value.getNote());
+            out.name("externalUrl").value(value.getExternalUrl());
+            out.name("info");
+            writeInfo(out, value.getInfo());
+            out.endObject();
+        }
+
+        @Override
+        public BeaconDatasetAlleleResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BeaconDatasetAlleleResponse value = new BeaconDatasetAlleleResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "datasetId":
+                        value.setDatasetId(in.nextString());
+                        break;
+                    case "exists":
+                        value.setExists(in.nextBoolean());
+                        break;
+                    case "error":
+                        value.setError(errorAdapter.read(in));
+                        break;
+                    case "frequency":
+                        value.setFrequency(readDouble(in));
+                        break;
+                    case "variantCount":
+                        value.setVariantCount(readLong(in));
+                        break;
+                    case "callCount":
+                        value.setCallCount(readLong(in));
+                        break;
+                    case "sampleCount":
+                        value.setSampleCount(readLong(in));
+                        break;
+                    case "note":
+                        value.setNote(in.nextString());
+                        break;
+                    case "externalUrl":
+                        value.setExternalUrl(in.nextString());
+                        break;
+                    case "info":
+                        value.setInfo(readInfo(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static final class BeaconAlleleResponseAdapter extends TypeAdapter<BeaconAlleleResponse> {
+
+        private final TypeAdapter<BeaconError> errorAdapter;
+        private final TypeAdapter<BeaconAlleleRequest> requestAdapter;
+        private final TypeAdapter<BeaconDatasetAlleleResponse> datasetResponseAdapter;
+
+        BeaconAlleleResponseAdapter(TypeAdapter<BeaconError> errorAdapter, TypeAdapter<BeaconAlleleRequest> requestAdapter, TypeAdapter<BeaconDatasetAlleleResponse> datasetResponseAdapter) {
+            this.errorAdapter = errorAdapter;
+            this.requestAdapter = requestAdapter;
+            this.datasetResponseAdapter = datasetResponseAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, BeaconAlleleResponse value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("beaconId").value(value.getBeaconId());
+            out.name("exists");
+            writeBoolean(out, value.getExists());
+            out.name("error");
+            errorAdapter.write(out, value.getError());
+            out.name("alleleRequest");
+            requestAdapter.write(out, value.getAlleleRequest());
+            out.name("datasetAlleleResponses");
+            writeList(out, value.getDatasetAlleleResponses(), datasetResponseAdapter);
+            out.endObject();
+        }
+
+        @Override
+        public BeaconAlleleResponse read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BeaconAlleleResponse value = new BeaconAlleleResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "beaconId":
+                        value.setBeaconId(in.nextString());
+                        break;
+                    case "exists":
+                        value.setExists(in.nextBoolean());
+                        break;
+                    case "error":
+                        value.setError(errorAdapter.read(in));
+                        break;
+                    case "alleleRequest":
+                        value.setAlleleRequest(requestAdapter.read(in));
+                        break;
+                    case "datasetAlleleResponses":
+                        value.setDatasetAlleleResponses(readList(in, datasetResponseAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static final class BeaconDatasetAdapter extends TypeAdapter<BeaconDataset> {
+
+        @Override
+        public void write(JsonWriter out, BeaconDataset value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("name").value(value.getName());
+            out.name("description").value(value.getDescription());
+            out.name("assemblyId").value(value.getAssemblyId());
+            out.name("createDateTime").value(value.getCreateDateTime());
+            out.name("updateDateTime").value(value.getUpdateDateTime());
+            out.name("version").value(value.getVersion());
+            out.name("variantCount").value(value.getVariantCount());
+            out.name("callCount").value(value.getCallCount());
+            out.name("sampleCount").value(value.getSampleCount());
+            out.name("externalUrl").value(value.getExternalUrl());
+            out.name("info");
+            writeInfo(out, value.getInfo());
+            out.endObject();
+        }
+
+        @Override
+        public BeaconDataset read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BeaconDataset value = new BeaconDataset();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        value.setId(in.nextString());
+                        break;
+                    case "name":
+                        value.setName(in.nextString());
+                        break;
+                    case "description":
+                        value.setDescription(in.nextString());
+                        break;
+                    case "assemblyId":
+                        value.setAssemblyId(in.nextString());
+                        break;
+                    case "createDateTime":
+                        value.setCreateDateTime(in.nextString());
+                        break;
+                    case "updateDateTime":
+                        value.setUpdateDateTime(in.nextString());
+                        break;
+                    case "version":
+                        value.setVersion(in.nextString());
+                        break;
+                    case "variantCount":
+                        value.setVariantCount(readLong(in));
+                        break;
+                    case "callCount":
+                        value.setCallCount(readLong(in));
+                        break;
+                    case "sampleCount":
+                        value.setSampleCount(readLong(in));
+                        break;
+                    case "externalUrl":
+                        value.setExternalUrl(in.nextString());
+                        break;
+                    case "info":
+                        value.setInfo(readInfo(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static final class BeaconTypeAdapter extends TypeAdapter<Beacon> {
+
+        private final TypeAdapter<BeaconOrganization> organizationAdapter;
+        private final TypeAdapter<BeaconDataset> datasetAdapter;
+        private final TypeAdapter<BeaconAlleleRequest> requestAdapter;
+
+        BeaconTypeAdapter(TypeAdapter<BeaconOrganization> organizationAdapter, TypeAdapter<BeaconDataset> datasetAdapter, TypeAdapter<BeaconAlleleRequest> requestAdapter) {
+            this.organizationAdapter = organizationAdapter;
+            this.datasetAdapter = datasetAdapter;
+            this.requestAdapter = requestAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, Beacon value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("name").value(value.getName());
+            out.name("apiVersion").value(value.getApiVersion());
+            out.name("organization");
+            organizationAdapter.write(out, value.getOrganization());
+            out.name("description").value(value.getDescription());
+            out.name("version").value(value.getVersion());
+            out.name("welcomeUrl").value(value.getWelcomeUrl());
+            out.name("alternativeUrl").value(value.getAlternativeUrl());
+            out.name("createDateTime").value(value.getCreateDateTime());
+            out.name("updateDateTime").value(value.getUpdateDateTime());
+            out.name("datasets");
+            writeList(out, value.getDatasets(), datasetAdapter);
+            out.name("sampleAlleleRequests");
+            writeList(out, value.getSampleAlleleRequests(), requestAdapter);
+            out.name("info");
+            writeInfo(out, value.getInfo());
+            out.endObject();
+        }
+
+        @Override
+        public Beacon read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Beacon value = new Beacon();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        value.setId(in.nextString());
+                        break;
+                    case "name":
+                        value.setName(in.nextString());
+                        break;
+                    case "apiVersion":
+                        value.setApiVersion(in.nextString());
+                        break;
+                    case "organization":
+                        value.setOrganization(organizationAdapter.read(in));
+                        break;
+                    case "description":
+                        value.setDescription(in.nextString());
+                        break;
+                    case "version":
+                        value.setVersion(in.nextString());
+                        break;
+                    case "welcomeUrl":
+                        value.setWelcomeUrl(in.nextString());
+                        break;
+                    case "alternativeUrl":
+                        value.setAlternativeUrl(in.nextString());
+                        break;
+                    case "createDateTime":
+                        value.setCreateDateTime(in.nextString());
+                        break;
+                    case "updateDateTime":
+                        value.setUpdateDateTime(in.nextString());
+                        break;
+                    case "datasets":
+                        value.setDatasets(readList(in, datasetAdapter));
+                        break;
+                    case "sampleAlleleRequests":
+                        value.setSampleAlleleRequests(readList(in, requestAdapter));
+                        break;
+                    case "info":
+                        value.setInfo(readInfo(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return value;
+        }
+    }
+
+    private static void writeBoolean(JsonWriter out, Boolean value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.booleanValue());
+        }
+    }
+
+    private static void writeStrings(JsonWriter out, List<String> values) throws IOException {
+        if (values == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (String value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Read a number, reporting a value which is not one as a syntax error like Gson's own adapters do
+     */
+    private static long readLong(JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static int readInt(JsonReader in) throws IOException {
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static double readDouble(JsonReader in) throws IOException {
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                values.add(null);
+            } else {
+                values.add(in.nextString());
+            }
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static <T> void writeList(JsonWriter out, List<T> values, TypeAdapter<T> adapter) throws IOException {
+        if (values == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (T value : values) {
+            adapter.write(out, value);
+        }
+        out.endArray();
+    }
+
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        List<T> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(adapter.read(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static void writeInfo(JsonWriter out, Map<String, String> info) throws IOException {
+        if (info == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (Map.Entry<String, String> entry : info.entrySet()) {
+            out.name(entry.getKey()).value(entry.getValue());
+        }
+        out.endObject();
+    }
+
+    private static Map<String, String> readInfo(JsonReader in) throws IOException {
+        Map<String, String> info = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                info.put(key, null);
+            } else {
+                info.put(key, in.nextString());
+            }
+        }
+        in.endObject();
+        return info;
+    }
+}
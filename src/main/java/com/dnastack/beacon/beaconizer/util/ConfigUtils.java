@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.dnastack.beacon.utils.ConfigValue;
+
+/**
+ * Helpers for reading Beaconizer settings. Global settings are read from system properties (which can be set in the
+ * application server configuration), while per beacon settings are read from the configValues of its AdapterConfig.
+ */
+public class ConfigUtils {
+
+    private ConfigUtils() {
+    }
+
+    /**
+     * Read a long system property, falling back to the default value if it is not set or is not a number
+     *
+     * @param key          name of the system property
+     * @param defaultValue value to use if the property is not set
+     * @return property value
+     */
+    public static long getLongProperty(String key, long defaultValue) {
+        return parseLong(System.getProperty(key), defaultValue);
+    }
+
+    /**
+     * Read an int system property, falling back to the default value if it is not set or is not a number
+     *
+     * @param key          name of the system property
+     * @param defaultValue value to use if the property is not set
+     * @return property value
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        return (int) parseLong(System.getProperty(key), defaultValue);
+    }
+
+    /**
+     * Read a boolean system property, falling back to the default value if it is not set
+     *
+     * @param key          name of the system property
+     * @param defaultValue value to use if the property is not set
+     * @return property value
+     */
+    public static boolean getBooleanProperty(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Find a named config value in the passed AdapterConfig
+     *
+     * @param config AdapterConfig to search
+     * @param name   name of the config value
+     * @return the value, or null if it is not defined
+     */
+    public static String getConfigValue(AdapterConfig config, String name) {
+        if (config == null || config.getConfigValues() == null) {
+            return null;
+        }
+        for (ConfigValue configValue : config.getConfigValues()) {
+            if (name.equals(configValue.getName())) {
+                return configValue.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a long config value from the passed AdapterConfig, falling back to the default value if it is not defined
+     *
+     * @param config       AdapterConfig to search
+     * @param name         name of the config value
+     * @param defaultValue value to use if the config value is not defined
+     * @return config value
+     */
+    public static long getLongConfigValue(AdapterConfig config, String name, long defaultValue) {
+        return parseLong(getConfigValue(config, name), defaultValue);
+    }
+
+    /**
+     * Read a double config value from the passed AdapterConfig, falling back to the default value if it is not defined
+     *
+     * @param config       AdapterConfig to search
+     * @param name         name of the config value
+     * @param defaultValue value to use if the config value is not defined
+     * @return config value
+     */
+    public static double getDoubleConfigValue(AdapterConfig config, String name, double defaultValue) {
+        return parseDouble(getConfigValue(config, name), defaultValue);
+    }
+
+    /**
+     * Read a setting which can be set globally as a system property and overridden per beacon with a config value of
+     * the same name
+     *
+     * @param config       AdapterConfig of the beacon, may be null
+     * @param key          name of the system property and config value
+     * @param defaultValue value to use if neither is defined
+     * @return setting value
+     */
+    public static String getSetting(AdapterConfig config, String key, String defaultValue) {
+        String value = getConfigValue(config, key);
+        return value == null ? System.getProperty(key, defaultValue) : value;
+    }
+
+    /**
+     * Read a long setting which can be set globally as a system property and overridden per beacon with a config value
+     * of the same name
+     *
+     * @param config       AdapterConfig of the beacon, may be null
+     * @param key          name of the system property and config value
+     * @param defaultValue value to use if neither is defined
+     * @return setting value
+     */
+    public static long getLongSetting(AdapterConfig config, String key, long defaultValue) {
+        return getLongConfigValue(config, key, getLongProperty(key, defaultValue));
+    }
+
+    /**
+     * Read a double setting which can be set globally as a system property and overridden per beacon with a config
+     * value of the same name
+     *
+     * @param config       AdapterConfig of the beacon, may be null
+     * @param key          name of the system property and config value
+     * @param defaultValue value to use if neither is defined
+     * @return setting value
+     */
+    public static double getDoubleSetting(AdapterConfig config, String key, double defaultValue) {
+        return getDoubleConfigValue(config, key, parseDouble(System.getProperty(key), defaultValue));
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
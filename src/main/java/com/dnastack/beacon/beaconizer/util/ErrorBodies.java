@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import org.ga4gh.beacon.BeaconError;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pre-rendered JSON bodies of errors with a fixed message, such as validation failures. The BeaconError of each status
+ * and message is serialized once and reused, and allele responses carrying such an error are assembled around it
+ * without going through Gson. At most {@value #MAX_BODIES} bodies are kept, so a message which is not actually fixed
+ * cannot grow the cache without bound; errors beyond that are rendered every time.
+ */
+public class ErrorBodies {
+
+    private static final int MAX_BODIES = 256;
+
+    private static final byte[] BEACON_ID = "{\"beaconId\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ERROR = "\"error\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final ConcurrentMap<String, byte[]> ERRORS = new ConcurrentHashMap<>();
+
+    private ErrorBodies() {
+    }
+
+    /**
+     * @param status  error code of the error
+     * @param message fixed error message
+     * @return JSON of a BeaconError
+     */
+    public static byte[] error(int status, String message) {
+        String key = status + ":" + message;
+        byte[] body = ERRORS.get(key);
+        if (body == null) {
+            BeaconError error = new BeaconError();
+            error.setErrorCode(status);
+            error.setMessage(message);
+            body = JsonUtils.toJsonBytes(error);
+            if (ERRORS.size() < MAX_BODIES) {
+                ERRORS.putIfAbsent(key, body);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Render a BeaconAlleleResponse which carries only a beacon id and an error, the same way JsonUtils would
+     *
+     * @param beaconId id of the beacon, may be null
+     * @param status   error code of the error
+     * @param message  fixed error message
+     * @return JSON of a BeaconAlleleResponse
+     */
+    public static byte[] alleleError(String beaconId, int status, String message) {
+        byte[] error = error(status, message);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(error.length + 64);
+        if (beaconId == null) {
+            out.write('{');
+        } else {
+            byte[] id = JsonUtils.getGson().toJson(beaconId).getBytes(StandardCharsets.UTF_8);
+            out.write(BEACON_ID, 0, BEACON_ID.length);
+            out.write(id, 0, id.length);
+            out.write(',');
+        }
+        out.write(ERROR, 0, ERROR.length);
+        out.write(error, 0, error.length);
+        out.write('}');
+        return out.toByteArray();
+    }
+}
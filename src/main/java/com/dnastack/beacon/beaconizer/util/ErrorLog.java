@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rate limited log of the errors returned to clients. Recording an error only counts it by status and exception type,
+ * and keeps the first message of each kind as a sample; every {@value #INTERVAL_PROPERTY} milliseconds a background task
+ * writes one line per kind of error seen since the last run. Request threads never format or write log records, so a
+ * flood of bad requests costs a counter increment each. Server errors are logged as warnings, client errors as info.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ErrorLog {
+
+    public static final String INTERVAL_PROPERTY = "beaconizer.errorLog.interval";
+
+    private static final long DEFAULT_INTERVAL = 10000L;
+
+    private static final Logger LOGGER = Logger.getLogger(ErrorLog.class.getName());
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    private final ConcurrentMap<String, Summary> summaries = new ConcurrentHashMap<>();
+
+    private long interval = DEFAULT_INTERVAL;
+    private ScheduledFuture<?> flushTask;
+
+    @PostConstruct
+    public void init() {
+        interval = ConfigUtils.getLongProperty(INTERVAL_PROPERTY, DEFAULT_INTERVAL);
+        if (interval > 0) {
+            flushTask = scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flush();
+        }
+    }
+
+    /**
+     * Count an error returned to a client. Does nothing if error logging is disabled.
+     *
+     * @param status HTTP status of the response
+     * @param error  cause of the error
+     */
+    public void record(int status, Throwable error) {
+        if (interval > 0) {
+            record(status, error.getClass().getSimpleName(), error.getMessage());
+        }
+    }
+
+    /**
+     * Count an error returned to a client which was not caused by an exception. Does nothing if error logging is
+     * disabled.
+     *
+     * @param status  HTTP status of the response
+     * @param kind    short name of the kind of error
+     * @param message error message
+     */
+    public void record(int status, String kind, String message) {
+        if (interval <= 0) {
+            return;
+        }
+
+        String key = status + " " + kind;
+        Summary summary = summaries.get(key);
+        if (summary == null) {
+            summary = summaries.computeIfAbsent(key, k -> new Summary(status >= 500 ? Level.WARNING : Level.INFO));
+        }
+        summary.count.increment();
+        if (summary.sample.get() == null) {
+            summary.sample.compareAndSet(null, message);
+        }
+    }
+
+    /**
+     * Write a line for every kind of error recorded since the last call
+     */
+    void flush() {
+        summaries.forEach((key, summary) -> {
+            long count = summary.count.sumThenReset();
+            String sample = summary.sample.getAndSet(null);
+            if (count > 0 && LOGGER.isLoggable(summary.level)) {
+                LOGGER.log(summary.level, count + " x " + key + " in the last " + interval + " ms, e.g. " + sample);
+            }
+        });
+    }
+
+    private static class Summary {
+
+        private final Level level;
+        private final LongAdder count = new LongAdder();
+        private final AtomicReference<String> sample = new AtomicReference<>();
+
+        private Summary(Level level) {
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.Reason;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for the CompletableFutures which carry the results of adapter calls. Failures are BeaconExceptions,
+ * RuntimeExceptions or Errors, which CompletableFuture wraps in a CompletionException on their way through dependent
+ * stages.
+ */
+public class FutureUtils {
+
+    private FutureUtils() {
+    }
+
+    /**
+     * @param failure cause of the failure
+     * @return future which has already failed with the passed cause
+     */
+    public static <T> CompletableFuture<T> failed(Throwable failure) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    /**
+     * Strip the CompletionException and ExecutionException wrappers added by CompletableFuture
+     *
+     * @param failure failure of a future
+     * @return original cause of the failure
+     */
+    public static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    /**
+     * Wait for a future to complete, for the callers which run on their own thread anyway
+     *
+     * @param future future to wait for
+     * @return result of the future
+     * @throws BeaconException if the future failed with a BeaconException, or if interrupted while waiting
+     */
+    public static <T> T await(CompletableFuture<T> future) throws BeaconException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new BeaconException(Reason.ERROR, "Interrupted while waiting for beacon");
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Rethrow the cause of a failure with its own type
+     *
+     * @param failure failure of a future
+     * @return never returns, declared so that callers can write {@code throw rethrow(e)}
+     * @throws BeaconException if the cause is a BeaconException
+     */
+    public static BeaconException rethrow(Throwable failure) throws BeaconException {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof BeaconException) {
+            throw (BeaconException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new BeaconException(Reason.ERROR, String.valueOf(cause));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily reads a stream of JSON objects, given either as a single JSON array or as newline delimited JSON, one object
+ * at a time. Only the object being read is held in memory, so arbitrarily long streams can be processed.
+ * <p>
+ * An object which cannot be parsed fails its own call to {@link #next()} with a JsonParseException. Newline delimited
+ * JSON carries on with the next line, while an array ends at a malformed element, as the elements after it cannot be
+ * told apart. Failures to read the stream itself fail {@link #hasNext()} with a JsonIOException.
+ */
+public class JsonStreamIterator<T> implements Iterator<T> {
+
+    private final BufferedReader input;
+    private final Class<T> type;
+    private JsonReader array;
+    private boolean started;
+    private boolean ended;
+    private String line;
+
+    public JsonStreamIterator(InputStream inputStream, Class<T> type) {
+        this.input = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.type = type;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ended) {
+            return false;
+        }
+        try {
+            if (!started) {
+                started = true;
+                if (startsWithArray()) {
+                    array = new JsonReader(input);
+                    array.setLenient(true);
+                    array.beginArray();
+                }
+            }
+            if (array != null) {
+                return array.hasNext();
+            }
+            while (line == null) {
+                String read = input.readLine();
+                if (read == null) {
+                    return false;
+                }
+                line = read.trim().isEmpty() ? null : read;
+            }
+            return true;
+        } catch (IOException e) {
+            ended = true;
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (array == null) {
+            String current = line;
+            line = null;
+            return JsonUtils.getGson().fromJson(current, type);
+        }
+        try {
+            return JsonUtils.getGson().fromJson(array, type);
+        } catch (JsonParseException e) {
+            ended = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Skip the whitespace at the start of the stream, and check whether what follows is an array
+     */
+    private boolean startsWithArray() throws IOException {
+        while (true) {
+            input.mark(1);
+            int c = input.read();
+            if (c < 0) {
+                return false;
+            }
+            if (!Character.isWhitespace(c)) {
+                input.reset();
+                return c == '[';
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holder of the Gson instance shared by everything that reads or writes beacon JSON, so that every code path produces
+ * the same output. The GA4GH beacon model is handled by the streaming adapters of BeaconTypeAdapterFactory.
+ */
+public class JsonUtils {
+
+    private static final Gson GSON = new GsonBuilder().registerTypeAdapterFactory(new BeaconTypeAdapterFactory())
+                                                      .create();
+
+    private JsonUtils() {
+    }
+
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    /**
+     * Serialize the passed object to UTF-8 encoded JSON
+     *
+     * @param object object to serialize
+     * @return JSON bytes
+     */
+    public static byte[] toJsonBytes(Object object) {
+        return GSON.toJson(object).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.beaconizer.cache.AlleleResponseCache;
+import com.dnastack.beacon.beaconizer.cache.BeaconMetadataCache;
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.resilience.AdapterInvoker;
+import com.dnastack.beacon.exceptions.BeaconException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the beacon definitions for changes. Every {@value #RELOAD_INTERVAL_PROPERTY} milliseconds the DAO is asked to
+ * reload its source, which it only does if the source has changed. For every beacon which was added, removed or
+ * changed, the adapter, the cached responses and metadata, and the concurrency limit and circuit state are dropped, and
+ * the new adapter is created in the background. Beacons whose definition did not change are left alone.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RegistryWatcher {
+
+    public static final String RELOAD_INTERVAL_PROPERTY = "beaconizer.config.reloadInterval";
+
+    private static final long DEFAULT_RELOAD_INTERVAL = 2000L;
+
+    private static final Logger LOGGER = Logger.getLogger(RegistryWatcher.class.getName());
+
+    @Inject
+    BeaconizerDao dao;
+
+    @Inject
+    BeaconAdapterFactory beaconAdapterFactory;
+
+    @Inject
+    BeaconExecutor beaconExecutor;
+
+    @Inject
+    AlleleResponseCache alleleResponseCache;
+
+    @Inject
+    BeaconMetadataCache beaconMetadataCache;
+
+    @Inject
+    AdapterInvoker adapterInvoker;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> reloadTask;
+
+    @PostConstruct
+    public void init() {
+        long interval = ConfigUtils.getLongProperty(RELOAD_INTERVAL_PROPERTY, DEFAULT_RELOAD_INTERVAL);
+        if (interval > 0) {
+            reloadTask = scheduler.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+        }
+    }
+
+    /**
+     * Reload the beacon definitions and apply the changes
+     */
+    public void reload() {
+        Set<String> changed;
+        try {
+            changed = dao.reload();
+        } catch (BeaconException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not reload beacon definitions, keeping the current ones: " + e.getMessage());
+            return;
+        }
+
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        alleleResponseCache.invalidateAll(changed);
+        for (String name : changed) {
+            beaconAdapterFactory.invalidate(name);
+            beaconMetadataCache.invalidate(name);
+            adapterInvoker.invalidate(name);
+        }
+
+        for (String name : changed) {
+            beaconExecutor.executeOrRun(() -> {
+                try {
+                    beaconAdapterFactory.getAdapter(name);
+                } catch (BeaconException e) {
+                    // Removed beacons have no adapter, broken ones are reported again on first use
+                }
+            });
+        }
+    }
+}
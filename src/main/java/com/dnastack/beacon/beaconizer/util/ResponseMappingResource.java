@@ -23,7 +23,14 @@
  */
 package com.dnastack.beacon.beaconizer.util;
 
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconTimeoutException;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconUnavailableException;
+import com.dnastack.beacon.beaconizer.exceptions.UnsupportedQueryException;
+import com.dnastack.beacon.exceptions.BeaconException;
+
 import javax.persistence.NoResultException;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response.Status;
 import java.util.Collections;
@@ -45,6 +52,7 @@ public class ResponseMappingResource {
         map.put(NotFoundException.class.getCanonicalName(), Status.NOT_FOUND);
         map.put(NoResultException.class.getCanonicalName(), Status.NOT_FOUND);
         map.put(IllegalArgumentException.class.getCanonicalName(), Status.BAD_REQUEST);
+        map.put(BadRequestException.class.getCanonicalName(), Status.BAD_REQUEST);
         map.put(UnsupportedOperationException.class.getCanonicalName(), Status.METHOD_NOT_ALLOWED);
         map.put(SecurityException.class.getCanonicalName(), Status.FORBIDDEN);
         mapping = Collections.unmodifiableMap(map);
@@ -62,4 +70,31 @@ public class ResponseMappingResource {
 
         return (s == null) ? Status.INTERNAL_SERVER_ERROR : s;
     }
+
+    /**
+     * Retrieves Response.Status for a BeaconException. Missing beacons map to NOT_FOUND, unavailable beacons map to
+     * SERVICE_UNAVAILABLE, beacons which timed out map to GATEWAY_TIMEOUT, queries the adapter does not support map to
+     * NOT_IMPLEMENTED, invalid requests map to BAD_REQUEST and everything else maps to INTERNAL_SERVER_ERROR.
+     *
+     * @param ex beacon exception
+     * @return response status
+     */
+    public static Status getBeaconStatus(BeaconException ex) {
+        if (ex instanceof BeaconNotFoundException) {
+            return Status.NOT_FOUND;
+        } else if (ex instanceof BeaconUnavailableException) {
+            return Status.SERVICE_UNAVAILABLE;
+        } else if (ex instanceof BeaconTimeoutException) {
+            return Status.GATEWAY_TIMEOUT;
+        } else if (ex instanceof UnsupportedQueryException) {
+            return Status.NOT_IMPLEMENTED;
+        }
+
+        switch (ex.getReason()) {
+            case INVALID_REQUEST:
+                return Status.BAD_REQUEST;
+            default:
+                return Status.INTERNAL_SERVER_ERROR;
+        }
+    }
 }
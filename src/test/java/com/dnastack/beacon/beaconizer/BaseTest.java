@@ -37,6 +37,18 @@ import org.junit.runner.Description;
  */
 public abstract class BaseTest {
 
+    /**
+     * Registry deployed in place of the one in the build output: the sample beacon, a synthetic beacon, a synthetic
+     * beacon slow enough to miss short query timeouts, and a synthetic beacon whose queries always fail, so that its
+     * circuit opens once ten calls have been recorded
+     */
+    public static final String TEST_REGISTRY = "test-beacons.json";
+    public static final String SAMPLE_BEACON = "beacon_id";
+    public static final String SYNTHETIC_BEACON = "synthetic_beacon";
+    public static final String SLOW_BEACON = "slow_synthetic_beacon";
+    public static final long SLOW_BEACON_LATENCY = 2000;
+    public static final String FAILING_BEACON = "failing_synthetic_beacon";
+
     @Rule
     public TestRule watcher = new TestWatcher() {
 
@@ -52,6 +64,8 @@ public abstract class BaseTest {
                                    .loadPomFromFile("pom.xml")
                                    .importBuildOutput()
                                    .as(WebArchive.class);
+        war.delete("/WEB-INF/classes/beacons.json");
+        war.addAsResource(TEST_REGISTRY, "beacons.json");
         System.out.println("WAR name: " + war.getName());
         return war;
     }
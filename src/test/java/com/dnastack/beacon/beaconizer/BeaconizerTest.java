@@ -25,11 +25,21 @@ package com.dnastack.beacon.beaconizer;
 
 import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
 import com.dnastack.beacon.beaconizer.dao.impl.BeaconizerDaoImpl;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.model.BeaconizerAlleleResponse;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
 import com.jayway.restassured.http.ContentType;
 import com.jayway.restassured.internal.mapper.ObjectMapperType;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
 import org.ga4gh.beacon.Beacon;
 import org.ga4gh.beacon.BeaconAlleleRequest;
 import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconError;
 import org.jboss.arquillian.container.test.api.RunAsClient;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.test.api.ArquillianResource;
@@ -37,16 +47,25 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import static com.dnastack.beacon.beaconizer.rest.api.Beaconizer.APPLICATION_NDJSON;
 import static com.jayway.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
 
 /**
- * Rest-Tests for Beaconizer using the SampleBeaconAdapter by default
+ * Rest-Tests for Beaconizer against the sample and synthetic beacons of the test registry
  *
  * @author patmagee
  */
@@ -74,6 +93,79 @@ public class BeaconizerTest extends BaseTest {
                       .as(Beacon[].class, ObjectMapperType.GSON)[0];
     }
 
+    private Beacon getBeacon(String name) {
+        return given().accept(ContentType.JSON).get(url + name).then().extract().as(Beacon.class, ObjectMapperType.GSON);
+    }
+
+    private static BeaconAlleleResponse getResponse(BeaconizerAlleleResponse out, String name) {
+        for (BeaconAlleleResponse response : out.getBeaconAlleleResponses()) {
+            if (name.equals(response.getBeaconId())) {
+                return response;
+            }
+        }
+        throw new AssertionError("No response from " + name);
+    }
+
+    private BeaconAlleleRequest getRequest(String name, long start) {
+        BeaconAlleleRequest request = getBeacon(name).getSampleAlleleRequests().get(0);
+        request.setStart(start);
+        return request;
+    }
+
+    private List<BeaconAlleleResponse> postBatch(String name, String contentType, String body) throws URISyntaxException {
+        String path = url.toURI().getRawPath().concat(name + "/query/batch");
+
+        String out = given().contentType(contentType)
+                            .accept(APPLICATION_NDJSON)
+                            .body(body)
+                            .post(path)
+                            .then()
+                            .assertThat()
+                            .statusCode(200)
+                            .contentType(APPLICATION_NDJSON)
+                            .extract()
+                            .asString();
+
+        List<BeaconAlleleResponse> responses = new ArrayList<>();
+        for (String line : out.split("\n")) {
+            if (!line.isEmpty()) {
+                responses.add(JsonUtils.getGson().fromJson(line, BeaconAlleleResponse.class));
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Query the failing beacon until its circuit opens. Its metadata is cached first, because the open circuit rejects
+     * the metadata calls of the beacon as well.
+     */
+    private void openCircuit() throws URISyntaxException {
+        BeaconAlleleRequest request = getBeacon(FAILING_BEACON).getSampleAlleleRequests().get(0);
+        String path = url.toURI().getRawPath().concat(FAILING_BEACON + "/query");
+
+        for (int i = 0; i < 30; i++) {
+            int status = given().accept(ContentType.JSON)
+                                .contentType(ContentType.JSON)
+                                .body(request, ObjectMapperType.GSON)
+                                .post(path)
+                                .then()
+                                .extract()
+                                .statusCode();
+            if (status == 503) {
+                return;
+            }
+        }
+        throw new AssertionError("The circuit of " + FAILING_BEACON + " did not open");
+    }
+
+    private static String toNdjson(List<BeaconAlleleRequest> requests) {
+        StringBuilder body = new StringBuilder();
+        for (BeaconAlleleRequest request : requests) {
+            body.append(JsonUtils.getGson().toJson(request)).append('\n');
+        }
+        return body.toString();
+    }
+
     /**
      * Ensure that posts to the beacon endpoint are not supported
      */
@@ -165,6 +257,30 @@ public class BeaconizerTest extends BaseTest {
         assertThat(testBeacon).isEqualToComparingFieldByField(beacon);
     }
 
+    /**
+     * Ensure that a client which already has the beacon gets NOT_MODIFIED
+     */
+    @Test
+    public void testGetBeaconNotModified() {
+        Beacon beacon = getBeacon();
+        String etag = given().accept(ContentType.JSON)
+                             .get(url + beacon.getId())
+                             .then()
+                             .assertThat()
+                             .statusCode(200)
+                             .header("ETag", not(isEmptyOrNullString()))
+                             .extract()
+                             .header("ETag");
+
+        given().accept(ContentType.JSON)
+               .header("If-None-Match", etag)
+               .get(url + beacon.getId())
+               .then()
+               .assertThat()
+               .statusCode(304)
+               .header("ETag", etag);
+    }
+
     @Test
     public void testGetBeaconError() {
         given().accept(ContentType.JSON)
@@ -241,6 +357,42 @@ public class BeaconizerTest extends BaseTest {
 
     }
 
+    /**
+     * Test to make sure that the /query endpoint also speaks the Avro binary encoding of the beacon model
+     */
+    @Test
+    public void testPostAlleleAvro() throws URISyntaxException, IOException {
+
+        Beacon beacon = getBeacon();
+        BeaconAlleleRequest request = beacon.getSampleAlleleRequests().get(0);
+
+        String path = url.toURI().getRawPath().concat(beacon.getId() + "/query");
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(body, null);
+        new SpecificDatumWriter<>(BeaconAlleleRequest.class).write(request, encoder);
+        encoder.flush();
+
+        byte[] bytes = given().contentType("avro/binary")
+                              .accept("avro/binary")
+                              .body(body.toByteArray())
+                              .post(path)
+                              .then()
+                              .assertThat()
+                              .statusCode(200)
+                              .contentType("avro/binary")
+                              .extract()
+                              .asByteArray();
+        BeaconAlleleResponse out = new SpecificDatumReader<>(BeaconAlleleResponse.class).read(null,
+                                                                                             DecoderFactory.get()
+                                                                                                           .binaryDecoder(bytes, null));
+
+        assertThat(out.getAlleleRequest()).isEqualByComparingTo(request);
+        assertThat(out.getExists()).isTrue();
+        assertThat(out.getBeaconId()).isEqualTo(beacon.getId());
+        assertThat(out.getError()).isNull();
+    }
+
     /**
      * Test to ensure that Delete is not supported
      */
@@ -399,4 +551,483 @@ public class BeaconizerTest extends BaseTest {
         assertThat(out.getDatasetAlleleResponses()).isNullOrEmpty();
         assertThat(out.getDatasetAlleleResponses()).isNullOrEmpty();
     }
+
+    /**
+     * Test to make sure that a beacon which cannot be called because its circuit is open is answered with the
+     * SERVICE_UNAVAILABLE status, and an error response which does not claim an answer
+     */
+    @Test
+    public void testGetAlleleWithOpenCircuit() throws URISyntaxException {
+        openCircuit();
+        BeaconAlleleRequest request = getRequest(FAILING_BEACON, 51000L);
+
+        String path = url.toURI().getRawPath().concat(FAILING_BEACON + "/query");
+
+        BeaconAlleleResponse out = given().accept(ContentType.JSON)
+                                          .queryParam("referenceName", request.getReferenceName())
+                                          .queryParam("start", request.getStart())
+                                          .queryParam("referenceBases", request.getReferenceBases())
+                                          .queryParam("alternateBases", request.getAlternateBases())
+                                          .queryParam("assemblyId", request.getAssemblyId())
+                                          .get(path)
+                                          .then()
+                                          .assertThat()
+                                          .statusCode(503)
+                                          .contentType(ContentType.JSON)
+                                          .extract()
+                                          .as(BeaconAlleleResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getBeaconId()).isEqualTo(FAILING_BEACON);
+        assertThat(out.getExists()).isNull();
+        assertThat(out.getError()).isNotNull();
+        assertThat(out.getError().getErrorCode()).isEqualTo(503);
+        assertThat(out.getAlleleRequest()).isNotNull();
+    }
+
+    /**
+     * Test to make sure that a region query to a beacon whose circuit is open is answered straight away with the
+     * SERVICE_UNAVAILABLE status and an error response, rather than with what looks like an answer
+     */
+    @Test
+    public void testPostRegionWithOpenCircuit() throws URISyntaxException {
+        openCircuit();
+        BeaconRegionRequest request = new BeaconRegionRequest();
+        request.setReferenceName("1");
+        request.setStart(51000L);
+        request.setEnd(52000L);
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Arrays.asList(getBeacon(FAILING_BEACON).getDatasets().get(0).getId()));
+
+        String path = url.toURI().getRawPath().concat(FAILING_BEACON + "/query/region");
+
+        BeaconRegionResponse out = given().contentType(ContentType.JSON)
+                                          .accept(ContentType.JSON)
+                                          .body(request, ObjectMapperType.GSON)
+                                          .post(path)
+                                          .then()
+                                          .assertThat()
+                                          .statusCode(503)
+                                          .contentType(ContentType.JSON)
+                                          .extract()
+                                          .as(BeaconRegionResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getBeaconId()).isEqualTo(FAILING_BEACON);
+        assertThat(out.getExists()).isNull();
+        assertThat(out.getVariantCount()).isNull();
+        assertThat(out.getError()).isNotNull();
+        assertThat(out.getError().getErrorCode()).isEqualTo(503);
+    }
+
+    /**
+     * Test to make sure that a GET to the /query endpoint of the beaconizer asks every beacon, and that the answer is
+     * combined from theirs. Uses the sampleAlleleRequest provided by the synthetic beacon
+     */
+    @Test
+    public void testGetBeaconizerAllele() throws URISyntaxException {
+        BeaconAlleleRequest request = getBeacon(SYNTHETIC_BEACON).getSampleAlleleRequests().get(0);
+
+        String path = url.toURI().getRawPath().concat("query");
+
+        BeaconizerAlleleResponse out = given().accept(ContentType.JSON)
+                                              .queryParam("referenceName", request.getReferenceName())
+                                              .queryParam("start", request.getStart())
+                                              .queryParam("referenceBases", request.getReferenceBases())
+                                              .queryParam("alternateBases", request.getAlternateBases())
+                                              .queryParam("assemblyId", request.getAssemblyId())
+                                              .queryParam("datasetIds", request.getDatasetIds())
+                                              .queryParam("includeDatasetResponses", request.getIncludeDatasetResponses())
+                                              .get(path)
+                                              .then()
+                                              .assertThat()
+                                              .statusCode(200)
+                                              .extract()
+                                              .as(BeaconizerAlleleResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getAlleleRequest()).isNotNull();
+        assertThat(out.getExists()).isTrue();
+        assertThat(out.getBeaconAlleleResponses()).extracting("beaconId")
+                                                  .containsOnly(SAMPLE_BEACON, SYNTHETIC_BEACON, SLOW_BEACON, FAILING_BEACON);
+        for (String name : new String[]{SYNTHETIC_BEACON, SLOW_BEACON}) {
+            BeaconAlleleResponse response = getResponse(out, name);
+            assertThat(response.getExists()).isTrue();
+            assertThat(response.getError()).isNull();
+        }
+    }
+
+    /**
+     * Test to make sure that a POST to the /query endpoint of the beaconizer asks every beacon, and that the answer is
+     * combined from theirs. Uses the sampleAlleleRequest provided by the synthetic beacon
+     */
+    @Test
+    public void testPostBeaconizerAllele() throws URISyntaxException {
+        BeaconAlleleRequest request = getBeacon(SYNTHETIC_BEACON).getSampleAlleleRequests().get(0);
+
+        String path = url.toURI().getRawPath().concat("query");
+
+        BeaconizerAlleleResponse out = given().contentType(ContentType.JSON)
+                                              .accept(ContentType.JSON)
+                                              .body(request, ObjectMapperType.GSON)
+                                              .post(path)
+                                              .then()
+                                              .assertThat()
+                                              .statusCode(200)
+                                              .extract()
+                                              .as(BeaconizerAlleleResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getAlleleRequest()).isEqualByComparingTo(request);
+        assertThat(out.getExists()).isTrue();
+        assertThat(out.getBeaconAlleleResponses()).extracting("beaconId")
+                                                  .containsOnly(SAMPLE_BEACON, SYNTHETIC_BEACON, SLOW_BEACON, FAILING_BEACON);
+        for (String name : new String[]{SYNTHETIC_BEACON, SLOW_BEACON}) {
+            BeaconAlleleResponse response = getResponse(out, name);
+            assertThat(response.getAlleleRequest()).isEqualByComparingTo(request);
+            assertThat(response.getExists()).isTrue();
+            assertThat(response.getError()).isNull();
+        }
+    }
+
+    /**
+     * Test to make sure that a beacon which does not answer within the timeout of a GET to the /query endpoint of the
+     * beaconizer is answered for with a GATEWAY_TIMEOUT placeholder, without waiting for it. The variant is not asked
+     * for by any other test, so that no beacon has it cached
+     */
+    @Test
+    public void testGetBeaconizerAlleleWithTimeout() throws URISyntaxException {
+        BeaconAlleleRequest request = getBeacon(SYNTHETIC_BEACON).getSampleAlleleRequests().get(0);
+
+        String path = url.toURI().getRawPath().concat("query");
+
+        long begin = System.nanoTime();
+        BeaconizerAlleleResponse out = given().accept(ContentType.JSON)
+                                              .queryParam("referenceName", request.getReferenceName())
+                                              .queryParam("start", 20000L)
+                                              .queryParam("referenceBases", request.getReferenceBases())
+                                              .queryParam("alternateBases", request.getAlternateBases())
+                                              .queryParam("assemblyId", request.getAssemblyId())
+                                              .queryParam("timeout", 500)
+                                              .get(path)
+                                              .then()
+                                              .assertThat()
+                                              .statusCode(200)
+                                              .extract()
+                                              .as(BeaconizerAlleleResponse.class, ObjectMapperType.GSON);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        assertThat(elapsed).isLessThan(SLOW_BEACON_LATENCY);
+        assertThat(out.getExists()).isTrue();
+        assertThat(out.getBeaconAlleleResponses()).extracting("beaconId")
+                                                  .containsOnly(SAMPLE_BEACON, SYNTHETIC_BEACON, SLOW_BEACON, FAILING_BEACON);
+
+        BeaconAlleleResponse synthetic = getResponse(out, SYNTHETIC_BEACON);
+        assertThat(synthetic.getExists()).isTrue();
+        assertThat(synthetic.getError()).isNull();
+
+        BeaconAlleleResponse slow = getResponse(out, SLOW_BEACON);
+        assertThat(slow.getExists()).isNull();
+        assertThat(slow.getError()).isNotNull();
+        assertThat(slow.getError().getErrorCode()).isEqualTo(504);
+        assertThat(slow.getAlleleRequest()).isNotNull();
+    }
+
+    /**
+     * Test to make sure that a beacon which does not answer within the timeout of a POST to the /query endpoint of the
+     * beaconizer is answered for with a GATEWAY_TIMEOUT placeholder. The variant is not asked for by any other test, so
+     * that no beacon has it cached
+     */
+    @Test
+    public void testPostBeaconizerAlleleWithTimeout() throws URISyntaxException {
+        BeaconAlleleRequest request = getBeacon(SYNTHETIC_BEACON).getSampleAlleleRequests().get(0);
+        request.setStart(30000L);
+
+        String path = url.toURI().getRawPath().concat("query");
+
+        BeaconizerAlleleResponse out = given().contentType(ContentType.JSON)
+                                              .accept(ContentType.JSON)
+                                              .queryParam("timeout", 500)
+                                              .body(request, ObjectMapperType.GSON)
+                                              .post(path)
+                                              .then()
+                                              .assertThat()
+                                              .statusCode(200)
+                                              .extract()
+                                              .as(BeaconizerAlleleResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getAlleleRequest()).isEqualByComparingTo(request);
+        assertThat(out.getExists()).isTrue();
+        assertThat(getResponse(out, SYNTHETIC_BEACON).getError()).isNull();
+
+        BeaconAlleleResponse slow = getResponse(out, SLOW_BEACON);
+        assertThat(slow.getExists()).isNull();
+        assertThat(slow.getError()).isNotNull();
+        assertThat(slow.getError().getErrorCode()).isEqualTo(504);
+        assertThat(slow.getAlleleRequest()).isEqualByComparingTo(request);
+    }
+
+    /**
+     * Test to insure that a post of an invalid request to the /query endpoint of the beaconizer is rejected as a whole
+     */
+    @Test
+    public void testPostBeaconizerInvalidRequest() throws URISyntaxException {
+        BeaconAlleleRequest request = getBeacon(SYNTHETIC_BEACON).getSampleAlleleRequests().get(0);
+        request.setReferenceName(null);
+
+        String path = url.toURI().getRawPath().concat("query");
+
+        given().contentType(ContentType.JSON)
+               .accept(ContentType.JSON)
+               .body(request, ObjectMapperType.GSON)
+               .post(path)
+               .then()
+               .assertThat()
+               .statusCode(400);
+    }
+
+    /**
+     * Test to make sure that the batch endpoint answers a Json Array of requests with one line per request
+     */
+    @Test
+    public void testPostBatchJsonArray() throws URISyntaxException {
+        List<BeaconAlleleRequest> requests = Arrays.asList(getRequest(SYNTHETIC_BEACON, 40000L),
+                                                           getRequest(SYNTHETIC_BEACON, 40001L),
+                                                           getRequest(SYNTHETIC_BEACON, 40002L));
+
+        List<BeaconAlleleResponse> out = postBatch(SYNTHETIC_BEACON,
+                                                   MediaType.APPLICATION_JSON,
+                                                   JsonUtils.getGson().toJson(requests));
+
+        assertThat(out).hasSize(requests.size());
+        assertThat(out).extracting("alleleRequest").containsOnlyElementsOf(requests);
+        for (BeaconAlleleResponse response : out) {
+            assertThat(response.getBeaconId()).isEqualTo(SYNTHETIC_BEACON);
+            assertThat(response.getExists()).isTrue();
+            assertThat(response.getError()).isNull();
+        }
+    }
+
+    /**
+     * Test to make sure that the batch endpoint answers newline delimited Json requests with one line per request
+     */
+    @Test
+    public void testPostBatchNdjson() throws URISyntaxException {
+        List<BeaconAlleleRequest> requests = Arrays.asList(getRequest(SYNTHETIC_BEACON, 41000L),
+                                                           getRequest(SYNTHETIC_BEACON, 41001L),
+                                                           getRequest(SYNTHETIC_BEACON, 41002L));
+
+        List<BeaconAlleleResponse> out = postBatch(SYNTHETIC_BEACON, APPLICATION_NDJSON, toNdjson(requests));
+
+        assertThat(out).hasSize(requests.size());
+        assertThat(out).extracting("alleleRequest").containsOnlyElementsOf(requests);
+        for (BeaconAlleleResponse response : out) {
+            assertThat(response.getBeaconId()).isEqualTo(SYNTHETIC_BEACON);
+            assertThat(response.getExists()).isTrue();
+            assertThat(response.getError()).isNull();
+        }
+    }
+
+    /**
+     * Test to make sure that an invalid request of a batch is answered with an error line, and does not fail the rest
+     * of the batch
+     */
+    @Test
+    public void testPostBatchWithInvalidRequest() throws URISyntaxException {
+        BeaconAlleleRequest invalid = getRequest(SYNTHETIC_BEACON, 42001L);
+        invalid.setReferenceName(null);
+        List<BeaconAlleleRequest> requests = Arrays.asList(getRequest(SYNTHETIC_BEACON, 42000L),
+                                                           invalid,
+                                                           getRequest(SYNTHETIC_BEACON, 42002L));
+
+        List<BeaconAlleleResponse> out = postBatch(SYNTHETIC_BEACON, APPLICATION_NDJSON, toNdjson(requests));
+
+        assertThat(out).hasSize(requests.size());
+        for (BeaconAlleleResponse response : out) {
+            if (response.getAlleleRequest().getStart() == 42001L) {
+                assertThat(response.getExists()).isNull();
+                assertThat(response.getError()).isNotNull();
+                assertThat(response.getError().getErrorCode()).isEqualTo(400);
+            } else {
+                assertThat(response.getExists()).isTrue();
+                assertThat(response.getError()).isNull();
+            }
+        }
+    }
+
+    /**
+     * Test to make sure that missing and malformed requests of a batch are each answered with an error line without an
+     * allele request, and do not fail the rest of the batch
+     */
+    @Test
+    public void testPostBatchWithNullAndMalformedRequests() throws URISyntaxException {
+        String body = JsonUtils.getGson().toJson(getRequest(SYNTHETIC_BEACON, 42100L)) + "\n"
+                + "null\n"
+                + "{\"referenceName\": \n"
+                + JsonUtils.getGson().toJson(getRequest(SYNTHETIC_BEACON, 42103L)) + "\n";
+
+        List<BeaconAlleleResponse> out = postBatch(SYNTHETIC_BEACON, APPLICATION_NDJSON, body);
+
+        assertThat(out).hasSize(4);
+        int errors = 0;
+        for (BeaconAlleleResponse response : out) {
+            if (response.getAlleleRequest() == null) {
+                errors++;
+                assertThat(response.getExists()).isNull();
+                assertThat(response.getError()).isNotNull();
+                assertThat(response.getError().getErrorCode()).isEqualTo(400);
+            } else {
+                assertThat(response.getAlleleRequest().getStart()).isIn(42100L, 42103L);
+                assertThat(response.getExists()).isTrue();
+                assertThat(response.getError()).isNull();
+            }
+        }
+        assertThat(errors).isEqualTo(2);
+    }
+
+    /**
+     * Test to make sure that the responses of a batch are written as soon as they are available rather than in the
+     * order of the requests: the last request is cached beforehand, so its response is written before the responses
+     * of the requests which have to wait for the slow beacon
+     */
+    @Test
+    public void testPostBatchOrder() throws URISyntaxException {
+        BeaconAlleleRequest cached = getRequest(SLOW_BEACON, 43002L);
+        given().contentType(ContentType.JSON)
+               .accept(ContentType.JSON)
+               .body(cached, ObjectMapperType.GSON)
+               .post(url.toURI().getRawPath().concat(SLOW_BEACON + "/query"))
+               .then()
+               .assertThat()
+               .statusCode(200);
+
+        List<BeaconAlleleRequest> requests = Arrays.asList(getRequest(SLOW_BEACON, 43000L),
+                                                           getRequest(SLOW_BEACON, 43001L),
+                                                           cached);
+
+        List<BeaconAlleleResponse> out = postBatch(SLOW_BEACON, APPLICATION_NDJSON, toNdjson(requests));
+
+        assertThat(out).hasSize(requests.size());
+        assertThat(out.get(0).getAlleleRequest()).isEqualByComparingTo(cached);
+        assertThat(out).extracting("alleleRequest").containsOnlyElementsOf(requests);
+    }
+
+    /**
+     * Test to make sure that a batch for a beacon which does not exist fails as a whole
+     */
+    @Test
+    public void testPostBatchError() throws URISyntaxException {
+        String path = url.toURI().getRawPath().concat("INVALID/query/batch");
+
+        given().contentType(APPLICATION_NDJSON)
+               .body(toNdjson(Arrays.asList(getRequest(SYNTHETIC_BEACON, 44000L))))
+               .post(path)
+               .then()
+               .assertThat()
+               .statusCode(404);
+    }
+
+    /**
+     * Test to make sure that you can get a BeaconRegionResponse from the /query/region endpoint of a beacon whose adapter
+     * supports region queries
+     */
+    @Test
+    public void testGetRegion() throws URISyntaxException {
+        Beacon beacon = getBeacon(SYNTHETIC_BEACON);
+        String path = url.toURI().getRawPath().concat(SYNTHETIC_BEACON + "/query/region");
+
+        BeaconRegionResponse out = given().accept(ContentType.JSON)
+                                          .queryParam("referenceName", "1")
+                                          .queryParam("start", 10000L)
+                                          .queryParam("end", 20000L)
+                                          .queryParam("assemblyId", "grch37")
+                                          .queryParam("datasetIds", beacon.getDatasets().get(0).getId())
+                                          .queryParam("includeDatasetResponses", true)
+                                          .get(path)
+                                          .then()
+                                          .assertThat()
+                                          .statusCode(200)
+                                          .contentType(ContentType.JSON)
+                                          .extract()
+                                          .as(BeaconRegionResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getBeaconId()).isEqualTo(SYNTHETIC_BEACON);
+        assertThat(out.getError()).isNull();
+        assertThat(out.getExists()).isTrue();
+        assertThat(out.getVariantCount()).isPositive();
+        assertThat(out.getRegionRequest()).isNotNull();
+        assertThat(out.getRegionRequest().getEnd()).isEqualTo(20000L);
+        assertThat(out.getDatasetRegionResponses()).isNotEmpty();
+    }
+
+    /**
+     * Test to make sure that you can post a BeaconRegionRequest to the /query/region endpoint of a beacon whose adapter
+     * supports region queries
+     */
+    @Test
+    public void testPostRegion() throws URISyntaxException {
+        BeaconRegionRequest request = new BeaconRegionRequest();
+        request.setReferenceName("1");
+        request.setStart(10000L);
+        request.setEnd(20000L);
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Arrays.asList(getBeacon(SYNTHETIC_BEACON).getDatasets().get(0).getId()));
+        request.setIncludeDatasetResponses(false);
+
+        String path = url.toURI().getRawPath().concat(SYNTHETIC_BEACON + "/query/region");
+
+        BeaconRegionResponse out = given().contentType(ContentType.JSON)
+                                          .accept(ContentType.JSON)
+                                          .body(request, ObjectMapperType.GSON)
+                                          .post(path)
+                                          .then()
+                                          .assertThat()
+                                          .statusCode(200)
+                                          .extract()
+                                          .as(BeaconRegionResponse.class, ObjectMapperType.GSON);
+
+        assertThat(out.getBeaconId()).isEqualTo(SYNTHETIC_BEACON);
+        assertThat(out.getError()).isNull();
+        assertThat(out.getExists()).isTrue();
+        assertThat(out.getRegionRequest()).isEqualTo(request);
+        assertThat(out.getDatasetRegionResponses()).isNullOrEmpty();
+    }
+
+    /**
+     * Test to ensure that a region request with its end before its start returns a BeaconError
+     */
+    @Test
+    public void testGetRegionWithInvalidRegion() throws URISyntaxException {
+        String path = url.toURI().getRawPath().concat(SYNTHETIC_BEACON + "/query/region");
+
+        BeaconError error = given().accept(ContentType.JSON)
+                                   .queryParam("referenceName", "1")
+                                   .queryParam("start", 20000L)
+                                   .queryParam("end", 10000L)
+                                   .queryParam("assemblyId", "grch37")
+                                   .get(path)
+                                   .then()
+                                   .assertThat()
+                                   .statusCode(400)
+                                   .extract()
+                                   .as(BeaconError.class, ObjectMapperType.GSON);
+
+        assertThat(error.getErrorCode()).isEqualTo(400);
+        assertThat(error.getMessage()).isEqualTo("End position cannot be before the start position");
+    }
+
+    /**
+     * Test to ensure that a region request to a beacon whose adapter does not support region queries is answered with
+     * NOT_IMPLEMENTED
+     */
+    @Test
+    public void testGetRegionNotImplemented() throws URISyntaxException {
+        String path = url.toURI().getRawPath().concat(SAMPLE_BEACON + "/query/region");
+
+        given().accept(ContentType.JSON)
+               .queryParam("referenceName", "1")
+               .queryParam("start", 10000L)
+               .queryParam("end", 20000L)
+               .queryParam("assemblyId", "grch37")
+               .get(path)
+               .then()
+               .assertThat()
+               .statusCode(501);
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters;
+
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.google.gson.Gson;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconDatasetAlleleResponse;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of the synthetic adapter: answers depend only on the request and the configuration, while errors and latency
+ * are injected as configured
+ */
+public class SyntheticBeaconAdapterTest {
+
+    /**
+     * @param values names and values of config values, in pairs
+     */
+    private static SyntheticBeaconAdapter adapter(String... values) {
+        StringBuilder config = new StringBuilder("{\"name\":\"synthetic\",\"adapterClass\":\"" + SyntheticBeaconAdapter.class.getName() + "\",\"configValues\":[");
+        for (int i = 0; i < values.length; i += 2) {
+            config.append(i == 0 ? "" : ",").append("{\"name\":\"").append(values[i]).append("\",\"value\":\"").append(values[i + 1]).append("\"}");
+        }
+        config.append("]}");
+
+        SyntheticBeaconAdapter adapter = new SyntheticBeaconAdapter();
+        adapter.initAdapter(new Gson().fromJson(config.toString(), AdapterConfig.class));
+        return adapter;
+    }
+
+    private static BeaconAlleleRequest request(long start, boolean includeDatasetResponses) {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName("1");
+        request.setStart(start);
+        request.setReferenceBases("A");
+        request.setAlternateBases("C");
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Collections.singletonList("synthetic-dataset-0"));
+        request.setIncludeDatasetResponses(includeDatasetResponses);
+        return request;
+    }
+
+    private static BeaconRegionRequest regionRequest(long start, long end) {
+        BeaconRegionRequest request = new BeaconRegionRequest();
+        request.setReferenceName("1");
+        request.setStart(start);
+        request.setEnd(end);
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Collections.singletonList("synthetic-dataset-0"));
+        request.setIncludeDatasetResponses(true);
+        return request;
+    }
+
+    @Test
+    public void testSameRequestGetsSameAnswer() throws Exception {
+        SyntheticBeaconAdapter first = adapter("datasets", "3");
+        SyntheticBeaconAdapter second = adapter("datasets", "3");
+
+        for (long start = 0; start < 100; start++) {
+            BeaconAlleleResponse expected = first.getBeaconAlleleResponse(request(start, true));
+            BeaconAlleleResponse actual = second.getBeaconAlleleResponse(request(start, true));
+
+            assertThat(actual.getExists()).isEqualTo(expected.getExists());
+            assertThat(actual.getDatasetAlleleResponses()).hasSize(3);
+            for (int i = 0; i < 3; i++) {
+                BeaconDatasetAlleleResponse dataset = actual.getDatasetAlleleResponses().get(i);
+                assertThat(dataset.getDatasetId()).isEqualTo("synthetic-dataset-" + i);
+                assertThat(dataset.getExists()).isEqualTo(expected.getDatasetAlleleResponses().get(i).getExists());
+                assertThat(dataset.getFrequency()).isEqualTo(expected.getDatasetAlleleResponses().get(i).getFrequency());
+                assertThat(dataset.getVariantCount()).isEqualTo(expected.getDatasetAlleleResponses().get(i).getVariantCount());
+            }
+        }
+    }
+
+    @Test
+    public void testQueryParametersGetSameAnswerAsRequest() throws Exception {
+        SyntheticBeaconAdapter adapter = adapter();
+
+        for (long start = 0; start < 100; start++) {
+            BeaconAlleleResponse response = adapter.getBeaconAlleleResponse("1", start, "A", "C", "grch37", null, false);
+
+            assertThat(response.getBeaconId()).isEqualTo("synthetic");
+            assertThat(response.getExists()).isEqualTo(adapter.getBeaconAlleleResponse(request(start, false)).getExists());
+            assertThat(response.getDatasetAlleleResponses()).isNull();
+        }
+    }
+
+    @Test
+    public void testExistsRate() throws Exception {
+        SyntheticBeaconAdapter none = adapter("existsRate", "0");
+        SyntheticBeaconAdapter all = adapter("existsRate", "1");
+        SyntheticBeaconAdapter half = adapter();
+
+        int exists = 0;
+        for (long start = 0; start < 1000; start++) {
+            assertThat(none.getBeaconAlleleResponse(request(start, false)).getExists()).isFalse();
+            assertThat(all.getBeaconAlleleResponse(request(start, false)).getExists()).isTrue();
+            if (half.getBeaconAlleleResponse(request(start, false)).getExists()) {
+                exists++;
+            }
+        }
+        assertThat(exists).isBetween(400, 600);
+    }
+
+    @Test
+    public void testSameRegionGetsSameAnswer() throws Exception {
+        SyntheticBeaconAdapter first = adapter("datasets", "4");
+        SyntheticBeaconAdapter second = adapter("datasets", "4");
+
+        for (long start = 0; start < 100; start++) {
+            BeaconRegionResponse expected = first.getBeaconRegionResponse(regionRequest(start, start + 1000));
+            BeaconRegionResponse actual = second.getBeaconRegionResponse(regionRequest(start, start + 1000));
+
+            assertThat(actual.getVariantCount()).isEqualTo(expected.getVariantCount());
+            assertThat(actual.getExists()).isEqualTo(actual.getVariantCount() > 0);
+
+            long variantCount = 0;
+            for (BeaconDatasetAlleleResponse dataset : actual.getDatasetRegionResponses()) {
+                variantCount += dataset.getVariantCount();
+            }
+            assertThat(variantCount).isEqualTo(actual.getVariantCount());
+        }
+    }
+
+    @Test
+    public void testErrorRate() throws Exception {
+        SyntheticBeaconAdapter failing = adapter("errorRate", "1");
+
+        try {
+            failing.getBeaconAlleleResponse(request(0, false));
+            fail("Every call should fail with an error rate of 1");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).isEqualTo("Synthetic error");
+        }
+        try {
+            failing.getBeacon();
+            fail("Metadata requests should fail like queries by default");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).isEqualTo("Synthetic error");
+        }
+
+        assertThat(adapter("errorRate", "1", "failMetadata", "false").getBeacon().getId()).isEqualTo("synthetic");
+    }
+
+    @Test
+    public void testFixedLatency() throws Exception {
+        SyntheticBeaconAdapter adapter = adapter("latency", "50");
+
+        long start = System.nanoTime();
+        adapter.getBeaconAlleleResponse(request(0, false));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50L);
+    }
+
+    @Test
+    public void testBeaconDescribesDatasets() throws Exception {
+        SyntheticBeaconAdapter adapter = adapter("datasets", "2");
+
+        assertThat(adapter.getBeacon().getDatasets()).hasSize(2);
+        assertThat(adapter.getBeacon().getDatasets().get(1).getId()).isEqualTo("synthetic-dataset-1");
+        assertThat(adapter.getBeacon().getSampleAlleleRequests().get(0).getDatasetIds())
+                .containsExactly("synthetic-dataset-0", "synthetic-dataset-1");
+    }
+}
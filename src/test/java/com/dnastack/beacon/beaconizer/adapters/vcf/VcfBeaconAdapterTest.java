@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.adapters.vcf;
+
+import com.dnastack.beacon.beaconizer.model.BeaconRegionRequest;
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.google.gson.Gson;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconDatasetAlleleResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Builds a variant index from small VCF files and queries it through the adapter
+ */
+public class VcfBeaconAdapterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VcfBeaconAdapter adapter;
+
+    private Path vcf(String name, String... records) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(name);
+        StringBuilder content = new StringBuilder("##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+        for (String record : records) {
+            content.append(record).append('\n');
+        }
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        VcfIndexBuilder builder = new VcfIndexBuilder("GRCh37");
+        builder.addDataset("cohort-1",
+                           vcf("cohort-1.vcf",
+                               "chr1\t10001\t.\tA\tC\t.\tPASS\t.",
+                               "1\t20001\t.\tG\tA,T\t.\tPASS\t.",
+                               "1\t30001\t.\tACGTN\tA\t.\tPASS\t.",
+                               "2\t500\t.\tC\t<DEL>\t.\tPASS\t."));
+        builder.addDataset("cohort-2", vcf("cohort-2.vcf", "1\t10001\t.\tA\tC\t.\tPASS\t.", "X\t42\t.\tT\tTA\t.\tPASS\t."));
+        Path index = folder.getRoot().toPath().resolve("variants.idx");
+        assertThat(builder.write(index)).isEqualTo(5);
+
+        String config = "{\"name\":\"vcf\",\"adapterClass\":\"" + VcfBeaconAdapter.class.getName()
+                + "\",\"configValues\":[{\"name\":\"index\",\"value\":\"" + index.toString().replace("\\", "\\\\") + "\"}]}";
+        adapter = new VcfBeaconAdapter();
+        adapter.initAdapter(new Gson().fromJson(config, AdapterConfig.class));
+    }
+
+    private BeaconAlleleResponse query(String referenceName, long start, String ref, String alt, String... datasetIds) throws BeaconException {
+        return adapter.getBeaconAlleleResponse(referenceName, start, ref, alt, "GRCh37", Arrays.asList(datasetIds), true);
+    }
+
+    @Test
+    public void findsVariantsInEveryDataset() throws BeaconException {
+        BeaconAlleleResponse response = query("1", 10000, "A", "C");
+
+        assertThat(response.getExists()).isTrue();
+        assertThat(response.getDatasetAlleleResponses()).extracting(BeaconDatasetAlleleResponse::getExists)
+                                                        .containsExactly(true, true);
+        assertThat(query("chrX", 41, "t", "ta", "cohort-2").getExists()).isTrue();
+    }
+
+    @Test
+    public void splitsMultiAllelicRecords() throws BeaconException {
+        assertThat(query("1", 20000, "G", "A").getExists()).isTrue();
+        assertThat(query("1", 20000, "G", "T").getExists()).isTrue();
+        assertThat(query("1", 20000, "G", "C").getExists()).isFalse();
+    }
+
+    @Test
+    public void findsAllelesWhichCannotBePacked() throws BeaconException {
+        assertThat(query("1", 30000, "ACGTN", "A").getExists()).isTrue();
+        assertThat(query("1", 30000, "ACGTN", "C").getExists()).isFalse();
+    }
+
+    @Test
+    public void onlyConsidersRequestedDatasets() throws BeaconException {
+        BeaconAlleleResponse response = query("1", 20000, "G", "A", "cohort-2", "unknown");
+
+        assertThat(response.getExists()).isFalse();
+        assertThat(response.getDatasetAlleleResponses()).extracting(BeaconDatasetAlleleResponse::getDatasetId)
+                                                        .containsExactly("cohort-2");
+    }
+
+    @Test
+    public void skipsSymbolicAlleles() throws BeaconException {
+        assertThat(query("2", 499, "C", "<DEL>").getExists()).isFalse();
+        assertThat(adapter.getBeacon().getDatasets()).extracting(dataset -> dataset.getVariantCount())
+                                                     .containsExactly(4L, 2L);
+    }
+
+    private BeaconRegionResponse queryRegion(String referenceName, long start, long end, String... datasetIds) throws BeaconException {
+        BeaconRegionRequest request = new BeaconRegionRequest();
+        request.setReferenceName(referenceName);
+        request.setStart(start);
+        request.setEnd(end);
+        request.setAssemblyId("GRCh37");
+        request.setDatasetIds(Arrays.asList(datasetIds));
+        request.setIncludeDatasetResponses(true);
+        return adapter.getBeaconRegionResponse(request);
+    }
+
+    @Test
+    public void countsVariantsInRegions() throws BeaconException {
+        BeaconRegionResponse response = queryRegion("1", 10000, 20001);
+
+        assertThat(response.getExists()).isTrue();
+        assertThat(response.getVariantCount()).isEqualTo(3);
+        assertThat(response.getDatasetRegionResponses()).extracting(BeaconDatasetAlleleResponse::getVariantCount)
+                                                        .containsExactly(3L, 1L);
+        assertThat(queryRegion("1", 0, 1000000, "cohort-2").getVariantCount()).isEqualTo(1);
+        assertThat(queryRegion("1", 10001, 20000).getExists()).isFalse();
+        assertThat(queryRegion("1", 20000, 20000).getExists()).isFalse();
+        assertThat(queryRegion("Y", 0, 1000000).getExists()).isFalse();
+    }
+
+    @Test
+    public void rejectsOtherAssemblies() {
+        try {
+            adapter.getBeaconAlleleResponse("1", 10000L, "A", "C", "GRCh38", Collections.emptyList(), false);
+            fail("Expected the request to be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("GRCh38");
+        }
+    }
+}
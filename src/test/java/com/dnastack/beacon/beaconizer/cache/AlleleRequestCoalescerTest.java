@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of the coalescing of identical allele requests within a window of 100 ms
+ */
+public class AlleleRequestCoalescerTest {
+
+    private static final long WINDOW = 100;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private AlleleRequestCoalescer coalescer;
+
+    private static AlleleRequestKey key(String beaconName, long start) {
+        return AlleleRequestKey.of(beaconName, "1", start, "A", "C", "grch37", Arrays.asList("a", "b"), true);
+    }
+
+    private CompletableFuture<BeaconAlleleResponse> load(AlleleRequestKey key, CompletableFuture<BeaconAlleleResponse> call) {
+        return coalescer.load(key, () -> {
+            loads.incrementAndGet();
+            return call;
+        });
+    }
+
+    @Before
+    public void setUp() {
+        System.setProperty(AlleleRequestCoalescer.WINDOW_PROPERTY, String.valueOf(WINDOW));
+        coalescer = new AlleleRequestCoalescer();
+        coalescer.init();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(AlleleRequestCoalescer.WINDOW_PROPERTY);
+    }
+
+    @Test
+    public void testRequestsWithinWindowShareCall() throws Exception {
+        CompletableFuture<BeaconAlleleResponse> call = new CompletableFuture<>();
+        CompletableFuture<BeaconAlleleResponse> first = load(key("sample", 10000L), call);
+        CompletableFuture<BeaconAlleleResponse> second = load(key("sample", 10000L), new CompletableFuture<>());
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(second.isDone()).isFalse();
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        call.complete(response);
+
+        assertThat(first.get()).isSameAs(response);
+        assertThat(second.get()).isSameAs(response);
+        assertThat(coalescer.getCoalesced()).containsEntry("sample", 1L);
+    }
+
+    @Test
+    public void testWindowExpiryStartsNewCall() throws Exception {
+        load(key("sample", 10000L), new CompletableFuture<>());
+        Thread.sleep(WINDOW + 50);
+
+        CompletableFuture<BeaconAlleleResponse> call = new CompletableFuture<>();
+        CompletableFuture<BeaconAlleleResponse> late = load(key("sample", 10000L), call);
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(coalescer.getCoalesced()).isEmpty();
+
+        // The call still in progress from before the window does not answer later requests
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        call.complete(response);
+        assertThat(late.get()).isSameAs(response);
+    }
+
+    @Test
+    public void testCompletedCallIsNotShared() {
+        load(key("sample", 10000L), CompletableFuture.completedFuture(new BeaconAlleleResponse()));
+        load(key("sample", 10000L), CompletableFuture.completedFuture(new BeaconAlleleResponse()));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDifferentRequestsDoNotShareCall() {
+        load(key("sample", 10000L), new CompletableFuture<>());
+        load(key("sample", 10001L), new CompletableFuture<>());
+        load(key("other", 10000L), new CompletableFuture<>());
+
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFailureIsShared() throws InterruptedException {
+        CompletableFuture<BeaconAlleleResponse> call = new CompletableFuture<>();
+        CompletableFuture<BeaconAlleleResponse> first = load(key("sample", 10000L), call);
+        CompletableFuture<BeaconAlleleResponse> second = load(key("sample", 10000L), new CompletableFuture<>());
+
+        IllegalStateException failure = new IllegalStateException("failure");
+        call.completeExceptionally(failure);
+
+        for (CompletableFuture<BeaconAlleleResponse> future : Arrays.asList(first, second)) {
+            try {
+                future.get();
+                fail("The call failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isSameAs(failure);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelledCallerDoesNotCancelCall() throws Exception {
+        CompletableFuture<BeaconAlleleResponse> call = new CompletableFuture<>();
+        CompletableFuture<BeaconAlleleResponse> first = load(key("sample", 10000L), call);
+        CompletableFuture<BeaconAlleleResponse> second = load(key("sample", 10000L), new CompletableFuture<>());
+
+        first.cancel(true);
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        call.complete(response);
+
+        assertThat(second.get()).isSameAs(response);
+    }
+
+    @Test
+    public void testInvalidatedCallIsNotShared() {
+        load(key("sample", 10000L), new CompletableFuture<>());
+        coalescer.invalidateAll(Collections.singleton("sample"));
+        load(key("sample", 10000L), new CompletableFuture<>());
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testZeroWindowDisablesCoalescing() {
+        System.setProperty(AlleleRequestCoalescer.WINDOW_PROPERTY, "0");
+        coalescer.init();
+
+        load(key("sample", 10000L), new CompletableFuture<>());
+        load(key("sample", 10000L), new CompletableFuture<>());
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
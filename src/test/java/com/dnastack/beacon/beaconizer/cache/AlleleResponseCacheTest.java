@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.google.gson.Gson;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconDatasetAlleleResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the local allele response cache: normalization of the keys, the time to live of each beacon, the bound in
+ * bytes, and the copies handed to each caller
+ */
+public class AlleleResponseCacheTest {
+
+    private static final String SHORT_LIVED_BEACON = "short_lived";
+
+    private final AtomicLong time = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private AlleleResponseCache cache;
+
+    private static BeaconAlleleRequest request(long start, List<String> datasetIds, Boolean includeDatasetResponses) {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName("1");
+        request.setStart(start);
+        request.setReferenceBases("A");
+        request.setAlternateBases("C");
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(datasetIds);
+        request.setIncludeDatasetResponses(includeDatasetResponses);
+        return request;
+    }
+
+    private static BeaconAlleleRequest request(long start) {
+        return request(start, Arrays.asList("a", "b"), true);
+    }
+
+    private BeaconAlleleResponse get(String beaconName, BeaconAlleleRequest request) throws Exception {
+        return cache.get(AlleleRequestKey.of(beaconName, request), request, () -> {
+            loads.incrementAndGet();
+            BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+            datasetResponse.setDatasetId("a");
+            datasetResponse.setExists(true);
+
+            BeaconAlleleResponse response = new BeaconAlleleResponse();
+            response.setBeaconId(beaconName);
+            response.setExists(true);
+            response.setAlleleRequest(request);
+            response.setDatasetAlleleResponses(new ArrayList<>(Arrays.asList(datasetResponse)));
+            return CompletableFuture.completedFuture(response);
+        }).get();
+    }
+
+    private void start() {
+        cache = new AlleleResponseCache();
+        cache.dao = new BeaconizerDao() {
+
+            @Override
+            public AdapterConfig find(String name) {
+                if (!SHORT_LIVED_BEACON.equals(name)) {
+                    return null;
+                }
+                return new Gson().fromJson("{\"name\": \"" + name + "\", \"configValues\": [{\"name\": \""
+                                                   + AlleleResponseCache.TTL_PROPERTY + "\", \"value\": \"1000\"}]}",
+                                           AdapterConfig.class);
+            }
+
+            @Override
+            public List<String> listRegisteredBeacons() {
+                return Arrays.asList("sample", SHORT_LIVED_BEACON);
+            }
+        };
+        cache.alleleRequestCoalescer = new AlleleRequestCoalescer();
+        cache.alleleRequestCoalescer.init();
+        cache.sharedAlleleResponseCache = new SharedAlleleResponseCache();
+        cache.ticker = time::get;
+        cache.init();
+    }
+
+    @Before
+    public void setUp() {
+        start();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(AlleleResponseCache.MAX_BYTES_PROPERTY);
+    }
+
+    @Test
+    public void testKeysIgnoreDatasetOrderAndMissingFlag() {
+        AlleleRequestKey key = AlleleRequestKey.of("sample", request(10000L, Arrays.asList("b", "a"), null));
+        AlleleRequestKey equivalent = AlleleRequestKey.of("sample", request(10000L, Arrays.asList("a", "b"), false));
+
+        assertThat(key).isEqualTo(equivalent);
+        assertThat(key.hashCode()).isEqualTo(equivalent.hashCode());
+        assertThat(key.getDatasetIds()).containsExactly("a", "b");
+        assertThat(key).isNotEqualTo(AlleleRequestKey.of("sample", request(10000L, Arrays.asList("a", "b"), true)));
+        assertThat(key).isNotEqualTo(AlleleRequestKey.of("other", request(10000L, Arrays.asList("a", "b"), null)));
+
+        AlleleRequestKey withoutDatasets = AlleleRequestKey.of("sample", request(10000L, null, null));
+        assertThat(withoutDatasets).isEqualTo(AlleleRequestKey.of("sample", request(10000L, new ArrayList<>(), false)));
+    }
+
+    @Test
+    public void testEquivalentRequestsShareEntry() throws Exception {
+        get("sample", request(10000L, Arrays.asList("b", "a"), null));
+        get("sample", request(10000L, Arrays.asList("a", "b"), false));
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEntriesExpireAfterTtlOfTheirBeacon() throws Exception {
+        get("sample", request(10000L));
+        get(SHORT_LIVED_BEACON, request(10000L));
+        assertThat(loads.get()).isEqualTo(2);
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        get("sample", request(10000L));
+        get(SHORT_LIVED_BEACON, request(10000L));
+
+        // Only the beacon configured with a time to live of a second is called again
+        assertThat(loads.get()).isEqualTo(3);
+
+        time.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        get("sample", request(10000L));
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testMaxBytesEvictsEntries() throws Exception {
+        System.setProperty(AlleleResponseCache.MAX_BYTES_PROPERTY, "4000");
+        start();
+
+        for (long start = 0; start < 100; start++) {
+            get("sample", request(start));
+        }
+
+        for (int i = 0; i < 50 && cache.getSize() > 10; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(cache.getSize()).isLessThanOrEqualTo(10);
+        assertThat(cache.getStats().evictionCount()).isGreaterThanOrEqualTo(90);
+    }
+
+    @Test
+    public void testCallersGetTheirOwnCopy() throws Exception {
+        BeaconAlleleRequest firstRequest = request(10000L, Arrays.asList("a", "b"), true);
+        BeaconAlleleRequest secondRequest = request(10000L, Arrays.asList("b", "a"), true);
+
+        BeaconAlleleResponse first = get("sample", firstRequest);
+        BeaconAlleleResponse second = get("sample", secondRequest);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(first.getAlleleRequest()).isSameAs(firstRequest);
+        assertThat(second.getAlleleRequest()).isSameAs(secondRequest);
+
+        first.setExists(false);
+        first.setAlleleRequest(null);
+        BeaconAlleleResponse third = get("sample", firstRequest);
+        assertThat(third.getExists()).isTrue();
+        assertThat(third.getAlleleRequest()).isSameAs(firstRequest);
+        assertThat(second.getExists()).isTrue();
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.resilience.AdapterInvoker;
+import com.dnastack.beacon.beaconizer.util.BeaconAdapterFactory;
+import com.dnastack.beacon.beaconizer.util.BeaconExecutor;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import org.ga4gh.beacon.Beacon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.Trigger;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of the beacon metadata cache: concurrent loads of a beacon share one adapter call, cached beacons are reloaded
+ * in the background while the previous value keeps being served, and loads which were running when the beacon was
+ * invalidated are not cached
+ */
+public class BeaconMetadataCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<CompletableFuture<Beacon>> pending = Collections.synchronizedList(new ArrayList<>());
+    private final List<Callable<?>> refreshes = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile String description = "first";
+
+    private TestScheduler scheduler;
+    private BeaconMetadataCache cache;
+
+    private static Beacon beacon(String description) {
+        Beacon beacon = new Beacon();
+        beacon.setId("sample");
+        beacon.setName("Sample");
+        beacon.setDescription(description);
+        return beacon;
+    }
+
+    private static String description(BeaconMetadataCache.CachedBeacon cached) {
+        return cached == null ? null : cached.getBeacon().getDescription();
+    }
+
+    private Beacon getBeacon(Method method) throws BeaconException {
+        if (!method.getName().equals("getBeacon")) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        calls.incrementAndGet();
+        if (description == null) {
+            throw new BeaconException("Beacon is down");
+        }
+        return beacon(description);
+    }
+
+    @Before
+    public void setUp() {
+        // The adapter API is only needed for getBeacon, so the adapter is a proxy answering that method alone
+        BeaconAdapter adapter = (BeaconAdapter) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                                        new Class<?>[]{BeaconAdapter.class},
+                                                                        (proxy, method, args) -> getBeacon(method));
+
+        scheduler = new TestScheduler();
+        cache = new BeaconMetadataCache();
+        cache.dao = new BeaconizerDao() {
+
+            @Override
+            public AdapterConfig find(String name) {
+                return null;
+            }
+
+            @Override
+            public List<String> listRegisteredBeacons() {
+                return Collections.singletonList("sample");
+            }
+        };
+        cache.beaconAdapterFactory = new BeaconAdapterFactory() {
+
+            @Override
+            public BeaconAdapter getAdapter(String name) {
+                return adapter;
+            }
+        };
+        cache.adapterInvoker = new AdapterInvoker() {
+
+            @Override
+            public <T> T invoke(String name, AdapterInvoker.AdapterCall<T> call) throws BeaconException {
+                return call.call();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> CompletableFuture<T> invokeAsync(String name, AdapterInvoker.AdapterCall<T> call) {
+                // Completed by the test, calling the adapter at that point
+                CompletableFuture<Beacon> result = new CompletableFuture<>();
+                pending.add(result);
+                return (CompletableFuture<T>) result;
+            }
+        };
+        cache.beaconExecutor = new BeaconExecutor() {
+
+            @Override
+            public <T> Future<T> submit(Callable<T> task) {
+                refreshes.add(task);
+                return new CompletableFuture<>();
+            }
+        };
+        cache.scheduler = scheduler;
+        cache.init();
+    }
+
+    @After
+    public void tearDown() {
+        cache.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Complete the adapter calls in progress with the current description
+     */
+    private void completeCalls() {
+        List<CompletableFuture<Beacon>> calls;
+        synchronized (pending) {
+            calls = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (CompletableFuture<Beacon> call : calls) {
+            this.calls.incrementAndGet();
+            call.complete(beacon(description));
+        }
+    }
+
+    /**
+     * Run the refresh task and the reloads it submits
+     */
+    private void refresh() throws Exception {
+        scheduler.refresh.run();
+        List<Callable<?>> tasks;
+        synchronized (refreshes) {
+            tasks = new ArrayList<>(refreshes);
+            refreshes.clear();
+        }
+        for (Callable<?> task : tasks) {
+            task.call();
+        }
+    }
+
+    @Test
+    public void testConcurrentLoadsShareOneCall() throws Exception {
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> first = cache.get("sample");
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> second = cache.get("sample");
+
+        assertThat(pending).hasSize(1);
+        assertThat(first.isDone()).isFalse();
+
+        completeCalls();
+
+        assertThat(description(first.get())).isEqualTo("first");
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(calls.get()).isEqualTo(1);
+
+        // Cached from now on
+        assertThat(cache.get("sample").get()).isSameAs(first.get());
+        assertThat(pending).isEmpty();
+    }
+
+    @Test
+    public void testCallerGivingUpDoesNotCancelSharedLoad() throws Exception {
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> first = cache.get("sample");
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> second = cache.get("sample");
+
+        first.cancel(true);
+        completeCalls();
+
+        assertThat(description(second.get())).isEqualTo("first");
+        assertThat(description(cache.getIfPresent("sample"))).isEqualTo("first");
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> loading = cache.get("sample");
+        pending.remove(0).completeExceptionally(new BeaconException("Beacon is down"));
+
+        try {
+            loading.get();
+            fail("Failed load should fail the callers");
+        } catch (Exception e) {
+            assertThat(e.getCause()).isInstanceOf(BeaconException.class);
+        }
+        assertThat(cache.getIfPresent("sample")).isNull();
+
+        cache.get("sample");
+        assertThat(pending).hasSize(1);
+    }
+
+    @Test
+    public void testRefreshReplacesCachedBeaconInBackground() throws Exception {
+        cache.get("sample");
+        completeCalls();
+        BeaconMetadataCache.CachedBeacon cached = cache.getIfPresent("sample");
+
+        // Unchanged metadata keeps its representation
+        refresh();
+        assertThat(cache.getIfPresent("sample").getRepresentation()).isSameAs(cached.getRepresentation());
+
+        description = "second";
+        refresh();
+        assertThat(description(cache.get("sample").get())).isEqualTo("second");
+        assertThat(cache.getIfPresent("sample").getRepresentation()).isNotSameAs(cached.getRepresentation());
+        assertThat(pending).isEmpty();
+    }
+
+    @Test
+    public void testFailedRefreshKeepsPreviousBeacon() throws Exception {
+        cache.get("sample");
+        completeCalls();
+
+        description = null;
+        refresh();
+
+        assertThat(description(cache.getIfPresent("sample"))).isEqualTo("first");
+    }
+
+    @Test
+    public void testLoadRunningDuringInvalidateIsNotCached() throws Exception {
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> stale = cache.get("sample");
+        cache.invalidate("sample");
+        completeCalls();
+
+        // The caller still gets its answer, but the old adapter's beacon is not cached
+        assertThat(description(stale.get())).isEqualTo("first");
+        assertThat(cache.getIfPresent("sample")).isNull();
+
+        description = "second";
+        CompletableFuture<BeaconMetadataCache.CachedBeacon> fresh = cache.get("sample");
+        completeCalls();
+        assertThat(description(fresh.get())).isEqualTo("second");
+        assertThat(description(cache.getIfPresent("sample"))).isEqualTo("second");
+    }
+
+    @Test
+    public void testRefreshRunningDuringInvalidateIsNotCached() throws Exception {
+        cache.get("sample");
+        completeCalls();
+
+        description = "second";
+        scheduler.refresh.run();
+        cache.invalidate("sample");
+        for (Callable<?> task : refreshes) {
+            task.call();
+        }
+
+        assertThat(cache.getIfPresent("sample")).isNull();
+    }
+
+    /**
+     * Scheduler which runs tasks on a single thread, except the periodic refresh, which the test runs itself
+     */
+    private static class TestScheduler extends ScheduledThreadPoolExecutor implements ManagedScheduledExecutorService {
+
+        private Runnable refresh;
+
+        private TestScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            refresh = command;
+            return schedule(() -> {
+            }, 1, TimeUnit.DAYS);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
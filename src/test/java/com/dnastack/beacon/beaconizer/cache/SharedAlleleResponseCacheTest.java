@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.cache;
+
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconError;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the cluster-wide response cache running on two local nodes, each with its own cache container
+ */
+public class SharedAlleleResponseCacheTest {
+
+    private EmbeddedCacheManager firstContainer;
+    private EmbeddedCacheManager secondContainer;
+
+    private SharedAlleleResponseCache first;
+    private SharedAlleleResponseCache second;
+
+    private static EmbeddedCacheManager clusteredContainer(String nodeName) {
+        GlobalConfigurationBuilder builder = GlobalConfigurationBuilder.defaultClusteredBuilder();
+        builder.globalJmxStatistics().allowDuplicateDomains(true);
+        builder.transport()
+               .clusterName("beaconizer-test")
+               .nodeName(nodeName)
+               .addProperty("configurationFile", "jgroups-loopback.xml");
+        return new DefaultCacheManager(builder.build());
+    }
+
+    private static SharedAlleleResponseCache start(EmbeddedCacheManager container) {
+        SharedAlleleResponseCache cache = new SharedAlleleResponseCache();
+        cache.start(container);
+        container.getCache(SharedAlleleResponseCache.CACHE_NAME);
+        return cache;
+    }
+
+    private static AlleleRequestKey key(String beaconName) {
+        return AlleleRequestKey.of(beaconName, "1", 10000L, "A", "C", "grch37", Arrays.asList("b", "a"), true);
+    }
+
+    private static BeaconAlleleResponse response(String beaconName) {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName("1");
+        request.setStart(10000L);
+        request.setReferenceBases("A");
+        request.setAlternateBases("C");
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Arrays.asList("a", "b"));
+        request.setIncludeDatasetResponses(true);
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId(beaconName);
+        response.setExists(true);
+        response.setAlleleRequest(request);
+        return response;
+    }
+
+    @Before
+    public void setUp() {
+        firstContainer = clusteredContainer("first");
+        secondContainer = clusteredContainer("second");
+        first = start(firstContainer);
+        second = start(secondContainer);
+        assertThat(firstContainer.getMembers()).hasSize(2);
+    }
+
+    @After
+    public void tearDown() {
+        secondContainer.stop();
+        firstContainer.stop();
+    }
+
+    @Test
+    public void testResponseIsSharedBetweenNodes() throws Exception {
+        assertThat(first.isEnabled()).isTrue();
+        assertThat(second.get(key("sample")).get()).isNull();
+
+        BeaconAlleleResponse response = response("sample");
+        first.put(key("sample"), response, 60000L);
+
+        BeaconAlleleResponse shared = awaitShared(second, key("sample"));
+        assertThat(shared).isEqualTo(response);
+        assertThat(second.getHits()).isEqualTo(1);
+        assertThat(second.getMisses()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void testErrorResponseIsNotShared() throws Exception {
+        BeaconError error = new BeaconError();
+        error.setErrorCode(500);
+        error.setMessage("failure");
+        BeaconAlleleResponse response = response("sample");
+        response.setError(error);
+
+        first.put(key("sample"), response, 60000L);
+        Thread.sleep(500);
+
+        assertThat(second.get(key("sample")).get()).isNull();
+        assertThat(first.get(key("sample")).get()).isNull();
+    }
+
+    @Test
+    public void testInvalidateRemovesBeaconFromEveryNode() throws Exception {
+        first.put(key("sample"), response("sample"), 60000L);
+        first.put(key("other"), response("other"), 60000L);
+        awaitShared(second, key("sample"));
+        awaitShared(second, key("other"));
+
+        first.invalidateAll(Collections.singleton("sample"));
+
+        assertThat(awaitInvalidated(first, key("sample"))).isTrue();
+        assertThat(awaitInvalidated(second, key("sample"))).isTrue();
+        assertThat(second.get(key("other")).get()).isEqualTo(response("other"));
+    }
+
+    @Test
+    public void testLocalContainerDisablesSharing() throws Exception {
+        GlobalConfigurationBuilder builder = new GlobalConfigurationBuilder();
+        builder.globalJmxStatistics().allowDuplicateDomains(true);
+        EmbeddedCacheManager local = new DefaultCacheManager(builder.build());
+        try {
+            SharedAlleleResponseCache cache = new SharedAlleleResponseCache();
+            cache.start(local);
+            cache.put(key("sample"), response("sample"), 60000L);
+
+            assertThat(cache.isEnabled()).isFalse();
+            assertThat(cache.get(key("sample")).get()).isNull();
+            assertThat(cache.getMisses()).isZero();
+        } finally {
+            local.stop();
+        }
+    }
+
+    private static BeaconAlleleResponse awaitShared(SharedAlleleResponseCache cache, AlleleRequestKey key) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            BeaconAlleleResponse response = cache.get(key).get();
+            if (response != null) {
+                return response;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+
+    private static boolean awaitInvalidated(SharedAlleleResponseCache cache, AlleleRequestKey key) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(key).get() == null) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
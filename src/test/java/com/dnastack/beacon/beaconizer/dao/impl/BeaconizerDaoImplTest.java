@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.dao.impl;
+
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of the reloading of a registry file: changes are detected by size and modification time, the new definitions
+ * replace the old ones as a whole, and invalid definitions leave the current registry in place
+ */
+public class BeaconizerDaoImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path registry;
+    private long modified = 1000000000000L;
+
+    private BeaconizerDaoImpl dao;
+
+    private static String beacon(String name, String description) {
+        return "{\"name\": \"" + name + "\", \"adapterClass\": \"com.example.Adapter\", \"configValues\": [{\"name\": "
+                + "\"description\", \"value\": \"" + description + "\"}]}";
+    }
+
+    /**
+     * Write the registry, moving its modification time forward
+     */
+    private void write(String... beacons) throws IOException {
+        Files.write(registry, ("[" + String.join(", ", beacons) + "]").getBytes(StandardCharsets.UTF_8));
+        modified += 1000;
+        Files.setLastModifiedTime(registry, FileTime.fromMillis(modified));
+    }
+
+    private String description(String name) throws BeaconNotFoundException {
+        return ConfigUtils.getConfigValue(dao.find(name), "description");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        registry = folder.getRoot().toPath().resolve("beacons.json");
+        write(beacon("sample", "first"), beacon("other", "first"), beacon("another", "first"));
+        System.setProperty(BeaconizerDaoImpl.CONFIG_PATH_PROPERTY, registry.toString());
+        dao = new BeaconizerDaoImpl();
+        dao.init();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(BeaconizerDaoImpl.CONFIG_PATH_PROPERTY);
+    }
+
+    @Test
+    public void testBeaconsAreListedByName() {
+        assertThat(dao.listRegisteredBeacons()).containsExactly("another", "other", "sample");
+    }
+
+    @Test
+    public void testUnchangedFileIsNotReloaded() throws Exception {
+        assertThat(dao.reload()).isEmpty();
+
+        // Same size and modification time, so the new content is not read
+        FileTime time = Files.getLastModifiedTime(registry);
+        byte[] content = Files.readAllBytes(registry);
+        Files.write(registry, new String(content, StandardCharsets.UTF_8).replace("first", "other")
+                                                                           .getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(registry, time);
+
+        assertThat(dao.reload()).isEmpty();
+        assertThat(description("sample")).isEqualTo("first");
+    }
+
+    @Test
+    public void testChangedModificationTimeReloadsOnlyChangedBeacons() throws Exception {
+        write(beacon("sample", "fixed"), beacon("other", "first"), beacon("another", "first"));
+
+        assertThat(dao.reload()).containsOnly("sample");
+        assertThat(description("sample")).isEqualTo("fixed");
+    }
+
+    @Test
+    public void testChangedSizeReportsAddedAndRemovedBeacons() throws Exception {
+        FileTime time = Files.getLastModifiedTime(registry);
+        Files.write(registry,
+                    ("[" + beacon("sample", "first") + ", " + beacon("added", "first") + "]").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(registry, time);
+
+        assertThat(dao.reload()).containsOnly("added", "other", "another");
+        assertThat(dao.listRegisteredBeacons()).containsExactly("added", "sample");
+        assertThat(dao.isRegistered("other")).isFalse();
+        try {
+            dao.find("other");
+            fail("Removed beacon should not be found");
+        } catch (BeaconNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReloadSwapsRegistryAsAWhole() throws Exception {
+        List<String> before = dao.listRegisteredBeacons();
+        write(beacon("sample", "second"), beacon("added", "second"));
+
+        dao.reload();
+
+        // Readers holding the previous registry keep seeing it unchanged
+        assertThat(before).containsExactly("another", "other", "sample");
+        assertThat(dao.listRegisteredBeacons()).containsExactly("added", "sample");
+        assertThat(description("sample")).isEqualTo("second");
+        assertThat(description("added")).isEqualTo("second");
+    }
+
+    @Test
+    public void testDuplicateNamesKeepCurrentRegistry() throws Exception {
+        write(beacon("sample", "second"), beacon("sample", "third"));
+
+        try {
+            dao.reload();
+            fail("Duplicate names should be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("sample");
+        }
+        assertThat(dao.listRegisteredBeacons()).containsExactly("another", "other", "sample");
+        assertThat(description("sample")).isEqualTo("first");
+
+        // The registry is read again once it is fixed
+        write(beacon("sample", "second"));
+        assertThat(dao.reload()).containsOnly("sample", "other", "another");
+        assertThat(description("sample")).isEqualTo("second");
+    }
+
+    @Test
+    public void testMalformedFileKeepsCurrentRegistry() throws Exception {
+        write(beacon("sample", "second"), "{\"name\": ");
+
+        try {
+            dao.reload();
+            fail("Malformed registry should be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("Could not parse");
+        }
+        assertThat(description("sample")).isEqualTo("first");
+    }
+}
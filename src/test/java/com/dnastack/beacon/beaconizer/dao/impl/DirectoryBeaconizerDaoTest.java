@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.dao.impl;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.util.ConfigUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of a registry directory holding a sharded file, a single definition file and a file with one definition per
+ * array: lookups across the files, reloads which only report the definitions whose content changed, and files which
+ * are missing or malformed
+ */
+public class DirectoryBeaconizerDaoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long modified = 1000000000000L;
+
+    private DirectoryBeaconizerDao dao;
+
+    private static String beacon(String name, String description) {
+        return "{\"name\": \"" + name + "\", \"adapterClass\": \"com.example.Adapter\", \"configValues\": [{\"name\": "
+                + "\"description\", \"value\": \"" + description + "\"}]}";
+    }
+
+    private static String replica(String name, String group) {
+        return "{\"name\": \"" + name + "\", \"adapterClass\": \"com.example.Adapter\", \"configValues\": [{\"name\": \""
+                + BeaconizerDao.REPLICA_GROUP_PROPERTY + "\", \"value\": \"" + group + "\"}]}";
+    }
+
+    private static String shard(String... beacons) {
+        return "[" + String.join(",\n", beacons) + "]";
+    }
+
+    /**
+     * Write a file of the registry, moving its modification time forward
+     */
+    private void write(String file, String content) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(file);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        modified += 1000;
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modified));
+    }
+
+    private String description(String name) throws BeaconNotFoundException {
+        return ConfigUtils.getConfigValue(dao.find(name), "description");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        write("shard-1.json", shard(beacon("sample", "first"), beacon("other", "first"), replica("replica-a", "group")));
+        write("shard-2.json", beacon("single", "first"));
+        write("shard-3.json", shard(replica("replica-b", "group")));
+        write("notes.txt", "Not a registry file");
+        dao = new DirectoryBeaconizerDao(folder.getRoot().toPath(), 100);
+    }
+
+    @Test
+    public void testBeaconsAreFoundInEveryFile() throws Exception {
+        assertThat(dao.listRegisteredBeacons()).containsExactly("other", "replica-a", "replica-b", "sample", "single");
+        assertThat(description("sample")).isEqualTo("first");
+        assertThat(description("other")).isEqualTo("first");
+        assertThat(description("single")).isEqualTo("first");
+        assertThat(dao.find("replica-b").getName()).isEqualTo("replica-b");
+        assertThat(dao.isRegistered("single")).isTrue();
+        assertThat(dao.isRegistered("unknown")).isFalse();
+        assertThat(dao.getReplicaGroups()).containsEntry("replica-a", "group")
+                                          .containsEntry("replica-b", "group")
+                                          .hasSize(2);
+    }
+
+    @Test
+    public void testUnknownBeaconIsNotFound() {
+        try {
+            dao.find("unknown");
+            fail("Unknown beacon should not be found");
+        } catch (BeaconNotFoundException e) {
+            assertThat(e.getMessage()).contains("unknown");
+        }
+    }
+
+    @Test
+    public void testParsedDefinitionsAreCached() throws Exception {
+        assertThat(dao.find("other")).isSameAs(dao.find("other"));
+    }
+
+    @Test
+    public void testReloadReportsOnlyDefinitionsWhoseContentChanged() throws Exception {
+        AdapterConfig other = dao.find("other");
+        dao.find("sample");
+
+        write("shard-1.json", shard(beacon("sample", "second"), beacon("other", "first"), replica("replica-a", "group")));
+
+        assertThat(dao.reload()).containsOnly("sample");
+        assertThat(description("sample")).isEqualTo("second");
+        assertThat(dao.find("other")).isSameAs(other);
+    }
+
+    @Test
+    public void testReformattedFileChangesNothing() throws Exception {
+        write("shard-2.json", "\n\n  " + beacon("single", "first") + "\n");
+
+        assertThat(dao.reload()).isEmpty();
+        assertThat(description("single")).isEqualTo("first");
+    }
+
+    @Test
+    public void testUnchangedDirectoryIsNotRescanned() throws Exception {
+        assertThat(dao.reload()).isEmpty();
+    }
+
+    @Test
+    public void testAddedAndRemovedFilesAreReported() throws Exception {
+        Files.delete(folder.getRoot().toPath().resolve("shard-3.json"));
+        write("shard-4.json", shard(beacon("added", "first"), beacon("also-added", "first")));
+
+        assertThat(dao.reload()).containsOnly("replica-b", "added", "also-added");
+        assertThat(dao.listRegisteredBeacons()).containsExactly("added", "also-added", "other", "replica-a", "sample", "single");
+        assertThat(dao.isRegistered("replica-b")).isFalse();
+        assertThat(description("also-added")).isEqualTo("first");
+        assertThat(dao.getReplicaGroups()).containsEntry("replica-a", "group").hasSize(1);
+    }
+
+    @Test
+    public void testFileRemovedBeforeReloadIsNotFound() throws Exception {
+        Files.delete(folder.getRoot().toPath().resolve("shard-2.json"));
+
+        try {
+            dao.find("single");
+            fail("Beacon of a removed file should not be found");
+        } catch (BeaconNotFoundException e) {
+            assertThat(e.getMessage()).contains("Could not load");
+        }
+    }
+
+    @Test
+    public void testMalformedFileKeepsCurrentIndex() throws Exception {
+        dao.find("sample");
+        write("shard-1.json", shard(beacon("sample", "second")) + ", {");
+
+        try {
+            dao.reload();
+            fail("Malformed file should be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("shard-1.json");
+        }
+        assertThat(dao.listRegisteredBeacons()).contains("other");
+        assertThat(description("sample")).isEqualTo("first");
+    }
+
+    @Test
+    public void testDefinitionWithoutAdapterClassIsRejected() throws Exception {
+        dao.find("single");
+        write("shard-2.json", "{\"name\": \"single\"}");
+
+        try {
+            dao.reload();
+            fail("Definition without adapterClass should be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("adapterClass");
+        }
+        assertThat(description("single")).isEqualTo("first");
+    }
+
+    @Test
+    public void testDuplicateNamesAcrossFilesAreRejected() throws Exception {
+        dao.find("single");
+        write("shard-2.json", beacon("sample", "second"));
+
+        try {
+            dao.reload();
+            fail("Duplicate names should be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("sample");
+        }
+        assertThat(description("sample")).isEqualTo("first");
+        assertThat(description("single")).isEqualTo("first");
+    }
+
+    @Test
+    public void testDefinitionChangedSinceIndexedIsNotServed() throws Exception {
+        write("shard-1.json", shard(beacon("sample", "first"), beacon("other", "unvalidated"), replica("replica-a", "group")));
+
+        assertThat(description("sample")).isEqualTo("first");
+        try {
+            dao.find("other");
+            fail("Definition which was not indexed should not be served");
+        } catch (BeaconNotFoundException e) {
+            assertThat(e.getMessage()).contains("Could not load");
+        }
+
+        assertThat(dao.reload()).containsOnly("other");
+        assertThat(description("other")).isEqualTo("unvalidated");
+    }
+
+    @Test
+    public void testMalformedDirectoryIsRejectedAtStartup() throws Exception {
+        write("shard-2.json", "[1, 2]");
+
+        try {
+            new DirectoryBeaconizerDao(folder.getRoot().toPath(), 100);
+            fail("Malformed definitions should be rejected");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).contains("name");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the latency quantiles, and of the window of recent latencies they are computed over
+ */
+public class LatencyHistogramTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private LatencyHistogram histogram;
+    private long start;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+        start = System.nanoTime();
+    }
+
+    private void recordMillis(long from, long to, long now) {
+        for (long millis = from; millis <= to; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis), now);
+        }
+    }
+
+    @Test
+    public void testNothingRecorded() {
+        assertThat(histogram.getQuantileSeconds(start, 0.5, 0.99)).containsExactly(0.0, 0.0);
+        assertThat(histogram.getCount()).isZero();
+    }
+
+    @Test
+    public void testQuantiles() {
+        recordMillis(1, 1000, start);
+
+        double[] quantiles = histogram.getQuantileSeconds(start, 0.5, 0.9, 0.99);
+        assertThat(quantiles[0]).isGreaterThan(0.5 * 0.94).isLessThan(0.5 * 1.06);
+        assertThat(quantiles[1]).isGreaterThan(0.9 * 0.94).isLessThan(0.9 * 1.06);
+        assertThat(quantiles[2]).isGreaterThan(0.99 * 0.94).isLessThan(0.99 * 1.06);
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getSumSeconds()).isGreaterThan(500).isLessThan(501);
+    }
+
+    @Test
+    public void testQuantilesCoverTheLastTenMinutes() {
+        recordMillis(1000, 1000, start);
+        recordMillis(10, 10, start + 5 * MINUTE);
+
+        assertThat(histogram.getQuantileSeconds(start + 7 * MINUTE, 1.0)[0]).isGreaterThan(0.9);
+        assertThat(histogram.getQuantileSeconds(start + 7 * MINUTE, 0.5)[0]).isLessThan(0.011);
+    }
+
+    @Test
+    public void testOldLatenciesLeaveTheQuantiles() {
+        recordMillis(1000, 1000, start);
+        recordMillis(10, 10, start + 9 * MINUTE);
+
+        assertThat(histogram.getQuantileSeconds(start + 11 * MINUTE, 1.0)[0]).isLessThan(0.011);
+        assertThat(histogram.getQuantileSeconds(start + 20 * MINUTE, 1.0)).containsExactly(0.0);
+        assertThat(histogram.getCount()).isEqualTo(2);
+        assertThat(histogram.getSumSeconds()).isGreaterThan(1.0);
+    }
+
+    @Test
+    public void testSliceIsReplacedWhenItsTimeComesRound() {
+        recordMillis(1000, 1000, start);
+        recordMillis(10, 10, start + 10 * MINUTE);
+
+        assertThat(histogram.getQuantileSeconds(start + 10 * MINUTE, 0.0, 1.0)[1]).isLessThan(0.011);
+    }
+}
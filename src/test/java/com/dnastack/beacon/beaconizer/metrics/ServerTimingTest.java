@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.metrics;
+
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming.Phase;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the Server-Timing header value: phases in their fixed order with their descriptions and durations in
+ * milliseconds, phases which were not reached left out, and the total always last
+ */
+public class ServerTimingTest {
+
+    @Test
+    public void testPhasesAreReportedInOrder() {
+        ServerTiming timing = new ServerTiming();
+        timing.add(Phase.ADAPTER, TimeUnit.MICROSECONDS.toNanos(182310));
+        timing.add(Phase.PARSE, TimeUnit.MICROSECONDS.toNanos(84));
+        timing.add(Phase.VALIDATE, TimeUnit.MICROSECONDS.toNanos(2));
+        timing.add(Phase.LOOKUP, TimeUnit.MICROSECONDS.toNanos(4));
+
+        assertThat(timing.toHeader()).startsWith("parse;desc=\"JSON parse\";dur=0.084, "
+                                                         + "validate;desc=\"Request validation\";dur=0.002, "
+                                                         + "lookup;desc=\"Adapter lookup\";dur=0.004, "
+                                                         + "adapter;desc=\"Adapter execution\";dur=182.310, "
+                                                         + "total;desc=\"Total\";dur=");
+    }
+
+    @Test
+    public void testDurationsOfAPhaseAddUp() {
+        ServerTiming timing = new ServerTiming();
+        timing.add(Phase.ADAPTER, TimeUnit.MILLISECONDS.toNanos(1));
+        timing.add(Phase.ADAPTER, TimeUnit.MICROSECONDS.toNanos(1500));
+
+        assertThat(timing.toHeader()).startsWith("adapter;desc=\"Adapter execution\";dur=2.500, total;");
+    }
+
+    @Test
+    public void testOnlyTotalIsReportedWithoutPhases() throws Exception {
+        ServerTiming timing = new ServerTiming();
+        Thread.sleep(5);
+
+        String header = timing.toHeader();
+        assertThat(header).matches("total;desc=\"Total\";dur=\\d+\\.\\d{3}");
+        assertThat(Double.parseDouble(header.substring(header.indexOf("dur=") + 4))).isGreaterThanOrEqualTo(5.0);
+    }
+}
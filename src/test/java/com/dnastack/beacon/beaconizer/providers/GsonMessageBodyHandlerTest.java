@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import com.dnastack.beacon.beaconizer.model.BeaconRegionResponse;
+import com.dnastack.beacon.beaconizer.util.JsonUtils;
+import com.google.gson.reflect.TypeToken;
+import org.ga4gh.beacon.Beacon;
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.junit.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the JSON provider: only the beacon model is handled, and text outside of ASCII, including characters which
+ * straddle the per-thread buffers, survives a round trip
+ */
+public class GsonMessageBodyHandlerTest {
+
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+
+    private static final Type BEACONS = new TypeToken<List<Beacon>>() {
+    }.getType();
+
+    private final GsonMessageBodyHandler handler = new GsonMessageBodyHandler();
+
+    private static Beacon beacon(String description) {
+        Beacon beacon = new Beacon();
+        beacon.setId("sample");
+        beacon.setName("Échantillon");
+        beacon.setDescription(description);
+        return beacon;
+    }
+
+    /**
+     * Text of the passed length made of one, two, three and four byte UTF-8 characters
+     */
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder();
+        String[] characters = {"a", "é", "日", "🧬"};
+        for (int i = 0; text.length() < length; i++) {
+            text.append(characters[i % characters.length]);
+        }
+        return text.toString();
+    }
+
+    private byte[] write(Object entity, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.writeTo(entity, entity.getClass(), type, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T read(Class<?> aClass, Type type, InputStream in) throws IOException {
+        return (T) handler.readFrom((Class<Object>) aClass, type, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, in);
+    }
+
+    @Test
+    public void testOnlyBeaconModelIsHandled() {
+        assertThat(handler.isReadable(Beacon.class, Beacon.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isTrue();
+        assertThat(handler.isWriteable(BeaconAlleleResponse.class, BeaconAlleleResponse.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isTrue();
+        assertThat(handler.isWriteable(BeaconRegionResponse.class, BeaconRegionResponse.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isTrue();
+        assertThat(handler.isWriteable(List.class, BEACONS, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isTrue();
+
+        assertThat(handler.isReadable(String.class, String.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+        assertThat(handler.isWriteable(Map.class, Map.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+        assertThat(handler.isWriteable(List.class, List.class, ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+        assertThat(handler.isWriteable(List.class, new TypeToken<List<String>>() {
+        }.getType(), ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)).isFalse();
+    }
+
+    @Test
+    public void testWrittenJsonIsUtf8() throws Exception {
+        Beacon beacon = beacon(text(20000));
+
+        byte[] json = write(beacon, Beacon.class);
+
+        assertThat(new String(json, StandardCharsets.UTF_8)).isEqualTo(JsonUtils.getGson().toJson(beacon));
+        assertThat(json).isEqualTo(JsonUtils.toJsonBytes(beacon));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Beacon beacon = beacon(text(20000));
+
+        Beacon read = read(Beacon.class, Beacon.class, new ByteArrayInputStream(write(beacon, Beacon.class)));
+
+        assertThat(read.getName()).isEqualTo("Échantillon");
+        assertThat(read.getDescription()).isEqualTo(beacon.getDescription());
+    }
+
+    @Test
+    public void testRoundTripOfCollection() throws Exception {
+        List<Beacon> beacons = new ArrayList<>(Arrays.asList(beacon("première"), beacon(text(100))));
+
+        List<Beacon> read = read(List.class, BEACONS, new ByteArrayInputStream(write(beacons, BEACONS)));
+
+        assertThat(read).hasSize(2);
+        assertThat(read.get(0).getDescription()).isEqualTo("première");
+        assertThat(read.get(1).getDescription()).isEqualTo(text(100));
+    }
+
+    @Test
+    public void testCharactersSplitAcrossReadsAreDecoded() throws Exception {
+        Beacon beacon = beacon(text(1000));
+        byte[] json = write(beacon, Beacon.class);
+
+        // Hands out one byte at a time, so every multi-byte character arrives in pieces
+        InputStream trickle = new ByteArrayInputStream(json) {
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        Beacon read = read(Beacon.class, Beacon.class, trickle);
+
+        assertThat(read.getDescription()).isEqualTo(beacon.getDescription());
+    }
+}
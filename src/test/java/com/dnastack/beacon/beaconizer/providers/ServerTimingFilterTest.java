@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.providers;
+
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming;
+import com.dnastack.beacon.beaconizer.metrics.ServerTiming.Phase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests that the timing of a request is bound to the container thread only while it handles the request, also when
+ * the response is written on another thread, and that the response filter reports it in the Server-Timing header
+ */
+public class ServerTimingFilterTest {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private ServletRequest request;
+    private ServerTimingBindingFilter bindingFilter;
+
+    /**
+     * Proxy of an interface which only implements the attribute methods, backed by the attributes of the test
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T withAttributes(Class<T> type) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAttribute":
+                case "getProperty":
+                    return attributes.get((String) args[0]);
+                case "setAttribute":
+                case "setProperty":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Before
+    public void setUp() {
+        request = withAttributes(ServletRequest.class);
+        bindingFilter = new ServerTimingBindingFilter();
+        bindingFilter.enabled = true;
+    }
+
+    @After
+    public void tearDown() {
+        ServerTiming.bind(null);
+    }
+
+    @Test
+    public void testTimingIsBoundWhileThreadHandlesRequest() throws Exception {
+        ServerTiming[] bound = new ServerTiming[1];
+        bindingFilter.doFilter(request, null, (servletRequest, servletResponse) -> bound[0] = ServerTiming.current());
+
+        assertThat(bound[0]).isNotNull();
+        assertThat(attributes.get(ServerTiming.REQUEST_PROPERTY)).isSameAs(bound[0]);
+        assertThat(ServerTiming.current()).isNull();
+    }
+
+    @Test
+    public void testTimingIsUnboundWhenRequestFails() throws Exception {
+        try {
+            bindingFilter.doFilter(request, null, (servletRequest, servletResponse) -> {
+                throw new ServletException("Request failed");
+            });
+            fail("Failure should reach the container");
+        } catch (ServletException e) {
+            assertThat(ServerTiming.current()).isNull();
+        }
+    }
+
+    @Test
+    public void testAsynchronousResponseIsTimedWithoutBindingResumingThread() throws Exception {
+        ServerTimingFilter filter = new ServerTimingFilter();
+        ContainerRequestContext requestContext = withAttributes(ContainerRequestContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        ContainerResponseContext responseContext = (ContainerResponseContext) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ContainerResponseContext.class},
+                (proxy, method, args) -> headers);
+
+        // The request thread binds the timing and returns, the response is filtered on the thread which resumes it
+        CompletableFuture<Boolean> resumed = new CompletableFuture<>();
+        bindingFilter.doFilter(request, null, (servletRequest, servletResponse) -> {
+            filter.filter(requestContext);
+            ServerTiming.current().add(Phase.ADAPTER, TimeUnit.MILLISECONDS.toNanos(3));
+            new Thread(() -> {
+                try {
+                    filter.filter(requestContext, responseContext);
+                    resumed.complete(ServerTiming.current() == null);
+                } catch (IOException e) {
+                    resumed.completeExceptionally(e);
+                }
+            }).start();
+        });
+
+        assertThat(resumed.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ServerTiming.current()).isNull();
+        assertThat((String) headers.getFirst(ServerTiming.HEADER)).startsWith("adapter;desc=\"Adapter execution\";dur=3.000, total;");
+    }
+
+    @Test
+    public void testDisabledFilterDoesNotTime() throws Exception {
+        bindingFilter.enabled = false;
+        ServerTiming[] bound = new ServerTiming[1];
+        bindingFilter.doFilter(request, null, (servletRequest, servletResponse) -> bound[0] = ServerTiming.current());
+
+        assertThat(bound[0]).isNull();
+        assertThat(attributes).isEmpty();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.resilience;
+
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.model.BeaconLimitStatus;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.dnastack.beacon.utils.Reason;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.Trigger;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of the order in which the replicas of a beacon are called: replicas which answered by their average latency,
+ * then replicas which failed, as if they had taken the whole deadline, then replicas which were never called. Also
+ * checks that the limit status of a beacon is only reported once it has been called.
+ */
+public class AdapterInvokerTest {
+
+    private static final List<String> REPLICAS = Arrays.asList("a", "b", "c");
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private TestScheduler scheduler;
+    private AdapterInvoker invoker;
+
+    @Before
+    public void setUp() {
+        Map<String, String> groups = new HashMap<>();
+        for (String replica : REPLICAS) {
+            groups.put(replica, "group");
+        }
+
+        scheduler = new TestScheduler();
+        invoker = new AdapterInvoker();
+        invoker.dao = new BeaconizerDao() {
+
+            @Override
+            public AdapterConfig find(String name) {
+                return null;
+            }
+
+            @Override
+            public List<String> listRegisteredBeacons() {
+                return REPLICAS;
+            }
+
+            @Override
+            public Map<String, String> getReplicaGroups() {
+                return groups;
+            }
+        };
+        invoker.threadFactory = Thread::new;
+        invoker.scheduler = scheduler;
+        invoker.init();
+    }
+
+    @After
+    public void tearDown() {
+        invoker.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Call the replica group, recording the replicas called
+     *
+     * @param failing replicas which fail
+     * @return replica which answered
+     */
+    private String call(String... failing) throws BeaconException {
+        calls.clear();
+        List<String> failingReplicas = Arrays.asList(failing);
+        return FutureUtils.await(invoker.invokeReplicatedAsync("a", replica -> {
+            calls.add(replica);
+            if (failingReplicas.contains(replica)) {
+                throw new BeaconException(Reason.ERROR, "Replica " + replica + " failed");
+            }
+            return replica;
+        }));
+    }
+
+    @Test
+    public void testReplicasAreGroupedByConfig() {
+        assertThat(invoker.getReplicas("b")).containsExactly("a", "b", "c");
+        assertThat(invoker.getReplicas("other")).containsExactly("other");
+    }
+
+    @Test
+    public void testUnmeasuredReplicasAreCalledInAlphabeticalOrder() throws BeaconException {
+        assertThat(call()).isEqualTo("a");
+        assertThat(calls).containsExactly("a");
+    }
+
+    @Test
+    public void testFasterReplicaIsCalledFirst() throws BeaconException {
+        invoker.invoke("a", () -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            return "a";
+        });
+        invoker.invoke("b", () -> "b");
+
+        assertThat(call()).isEqualTo("b");
+        assertThat(calls).containsExactly("b");
+    }
+
+    @Test
+    public void testFailingReplicaGoesBehindMeasuredReplicas() throws BeaconException {
+        assertThat(call("a")).isEqualTo("b");
+        assertThat(calls).containsExactly("a", "b");
+
+        try {
+            call("a", "b", "c");
+            fail("Every replica failed");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).isEqualTo("Replica c failed");
+        }
+        assertThat(calls).containsExactly("b", "a", "c");
+    }
+
+    @Test
+    public void testInvalidRequestIsNotFailedOver() {
+        try {
+            FutureUtils.await(invoker.invokeReplicatedAsync("a", replica -> {
+                calls.add(replica);
+                throw new BeaconException(Reason.INVALID_REQUEST, "Invalid request");
+            }));
+            fail("The request was invalid");
+        } catch (BeaconException e) {
+            assertThat(e.getReason()).isEqualTo(Reason.INVALID_REQUEST);
+        }
+        assertThat(calls).containsExactly("a");
+    }
+
+    @Test
+    public void testLimitStatusIfPresentDoesNotCreateLimits() throws BeaconException {
+        assertThat(invoker.getLimitStatusIfPresent("b")).isNull();
+        assertThat(invoker.getLimitStatusIfPresent("b")).isNull();
+
+        invoker.invoke("b", () -> "b");
+
+        BeaconLimitStatus status = invoker.getLimitStatusIfPresent("b");
+        assertThat(status).isNotNull();
+        assertThat(status.getBeaconId()).isEqualTo("b");
+        assertThat(status.getCircuitState()).isEqualTo("CLOSED");
+
+        invoker.invalidate("b");
+        assertThat(invoker.getLimitStatusIfPresent("b")).isNull();
+    }
+
+    /**
+     * Scheduled executor standing in for the one of the container, without trigger support. Nothing runs sooner than a
+     * second: replicas measured by these tests answer within microseconds, and their hedges would otherwise race the
+     * calls they back up.
+     */
+    private static class TestScheduler extends ScheduledThreadPoolExecutor implements ManagedScheduledExecutorService {
+
+        private static final long MIN_DELAY = 1000L;
+
+        private TestScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return super.schedule(command, Math.max(unit.toMillis(delay), MIN_DELAY), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
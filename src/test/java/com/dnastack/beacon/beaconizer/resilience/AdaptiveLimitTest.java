@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the growth and back-off of the adaptive concurrency limit
+ */
+public class AdaptiveLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static void fill(AdaptiveLimit limit) {
+        while (limit.getInFlight() < limit.getLimit()) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+    }
+
+    @Test
+    public void testCallsOverTheLimitAreRejected() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 10);
+        fill(limit);
+
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+        assertThat(limit.getRejected()).isEqualTo(1);
+
+        limit.releaseIgnored();
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsSteady() {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 10);
+        for (int i = 0; i < 100; i++) {
+            fill(limit);
+            limit.release(RTT);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void testLimitDoesNotGrowWhileMostlyUnused() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+            limit.release(RTT);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void testLimitBacksOffWhenLatencyRises() {
+        AdaptiveLimit limit = new AdaptiveLimit(100, 100);
+        for (int i = 0; i < 10; i++) {
+            fill(limit);
+            limit.release(RTT);
+        }
+        int steady = limit.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            fill(limit);
+            limit.release(RTT * 10);
+        }
+
+        assertThat(limit.getLimit()).isLessThan(steady);
+    }
+
+    @Test
+    public void testLimitBacksOffOnDroppedCalls() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 100);
+        assertThat(limit.tryAcquire()).isTrue();
+
+        limit.releaseDropped();
+
+        assertThat(limit.getLimit()).isEqualTo(18);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    public void testLimitNeverDropsBelowOne() {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10);
+        for (int i = 0; i < 20; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+            limit.releaseDropped();
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(1);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+}
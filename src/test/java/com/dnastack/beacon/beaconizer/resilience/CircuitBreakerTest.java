@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.resilience;
+
+import com.dnastack.beacon.beaconizer.resilience.CircuitBreaker.Epoch;
+import com.dnastack.beacon.beaconizer.resilience.CircuitBreaker.State;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the transitions of the circuit breaker. The circuit opens once half of the last 4 calls failed, or all of
+ * them took 100 ms or more, and stays open for 50 ms before letting 2 probes through.
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(4, 4, 0.5, 1.0, 100, OPEN_MILLIS, 2);
+    }
+
+    private static void open(CircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    private static void awaitHalfOpen() throws InterruptedException {
+        Thread.sleep(OPEN_MILLIS + 20);
+    }
+
+    @Test
+    public void testCircuitStaysClosedBelowTheMinimumCalls() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isNotNull();
+    }
+
+    @Test
+    public void testCircuitOpensOnFailureRate() {
+        CircuitBreaker breaker = newBreaker();
+        breaker.onSuccess(breaker.tryAcquirePermission(), FAST);
+        breaker.onSuccess(breaker.tryAcquirePermission(), FAST);
+        breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+
+        breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isNull();
+    }
+
+    @Test
+    public void testCircuitOpensOnSlowCallRate() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(breaker.tryAcquirePermission(), SLOW);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    public void testFastFailuresAreNotSlowCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 1.0, 0.5, 100, OPEN_MILLIS, 2);
+        breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+        breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+        breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+        breaker.onSuccess(breaker.tryAcquirePermission(), FAST);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void testCircuitClosesAfterSuccessfulProbes() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        awaitHalfOpen();
+
+        Epoch first = breaker.tryAcquirePermission();
+        assertThat(first).isNotNull();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        Epoch second = breaker.tryAcquirePermission();
+        assertThat(second).isNotNull();
+        assertThat(breaker.tryAcquirePermission()).isNull();
+
+        breaker.onSuccess(first, FAST);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onSuccess(second, FAST);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isNotNull();
+    }
+
+    @Test
+    public void testFailedProbeReopensCircuit() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        awaitHalfOpen();
+
+        breaker.onFailure(breaker.tryAcquirePermission(), FAST);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isNull();
+    }
+
+    @Test
+    public void testSlowProbeReopensCircuit() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        awaitHalfOpen();
+
+        breaker.onSuccess(breaker.tryAcquirePermission(), SLOW);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    public void testIgnoredProbeIsGivenBack() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        awaitHalfOpen();
+
+        assertThat(breaker.tryAcquirePermission()).isNotNull();
+        Epoch second = breaker.tryAcquirePermission();
+        assertThat(second).isNotNull();
+        assertThat(breaker.tryAcquirePermission()).isNull();
+
+        breaker.onIgnored(second);
+
+        assertThat(breaker.tryAcquirePermission()).isNotNull();
+    }
+
+    @Test
+    public void testOutcomesOfStalePermissionsAreDropped() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        Epoch closed = breaker.tryAcquirePermission();
+        open(breaker);
+        awaitHalfOpen();
+
+        Epoch probe = breaker.tryAcquirePermission();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+
+        // Granted while the circuit was closed, so neither counts as a probe
+        breaker.onFailure(closed, SLOW);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onSuccess(closed, FAST);
+        breaker.onSuccess(probe, FAST);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+    }
+}
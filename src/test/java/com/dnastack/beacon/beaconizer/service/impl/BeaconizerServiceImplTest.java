@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.service.impl;
+
+import com.dnastack.beacon.beaconizer.cache.BeaconMetadataCache;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconNotFoundException;
+import com.dnastack.beacon.beaconizer.exceptions.BeaconUnavailableException;
+import com.dnastack.beacon.beaconizer.util.BeaconAdapterFactory;
+import com.dnastack.beacon.beaconizer.util.FutureUtils;
+import org.ga4gh.beacon.Beacon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.Trigger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the beacon listing: beacons which are not cached are loaded concurrently, and beacons which fail or do not
+ * answer within the deadline are listed as placeholders instead of failing or delaying the whole listing
+ */
+public class BeaconizerServiceImplTest {
+
+    private static final long DEADLINE = 200L;
+
+    private final List<String> loads = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile List<String> names = Arrays.asList("broken", "slow", "unknown");
+
+    private TestScheduler scheduler;
+    private BeaconizerServiceImpl service;
+
+    @Before
+    public void setUp() {
+        System.setProperty(BeaconizerServiceImpl.BEACONS_TIMEOUT_PROPERTY, String.valueOf(DEADLINE));
+        scheduler = new TestScheduler();
+
+        service = new BeaconizerServiceImpl();
+        service.beaconAdapterFactory = new BeaconAdapterFactory() {
+
+            @Override
+            public List<String> listRegisteredBeacons() {
+                return names;
+            }
+        };
+        service.beaconMetadataCache = new BeaconMetadataCache() {
+
+            @Override
+            public CachedBeacon getIfPresent(String name) {
+                return null;
+            }
+
+            @Override
+            public CompletableFuture<CachedBeacon> get(String name) {
+                loads.add(name);
+                switch (name) {
+                    case "broken":
+                        return FutureUtils.failed(new BeaconUnavailableException("Beacon is down"));
+                    case "slow":
+                        // Never answers
+                        return new CompletableFuture<>();
+                    default:
+                        return FutureUtils.failed(new BeaconNotFoundException("Beacon not found"));
+                }
+            }
+        };
+        service.scheduler = scheduler;
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(BeaconizerServiceImpl.BEACONS_TIMEOUT_PROPERTY);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFailedAndSlowBeaconsAreListedAsPlaceholders() throws Exception {
+        long begin = System.nanoTime();
+        List<Beacon> beacons = service.getBeacons();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        // Every beacon is loaded at once, and the slow one only holds the listing up to the deadline
+        assertThat(loads).containsExactly("broken", "slow", "unknown");
+        assertThat(elapsed).isGreaterThanOrEqualTo(DEADLINE).isLessThan(DEADLINE * 10);
+
+        // Registration order is kept whatever order the beacons complete in
+        assertThat(beacons).hasSize(3);
+        assertThat(beacons.get(0).getId()).isEqualTo("broken");
+        assertThat(beacons.get(0).getInfo()).containsEntry(BeaconizerServiceImpl.ERROR_CODE_INFO_KEY, "503")
+                                            .containsEntry(BeaconizerServiceImpl.ERROR_MESSAGE_INFO_KEY, "Beacon is down");
+
+        assertThat(beacons.get(1).getId()).isEqualTo("slow");
+        assertThat(beacons.get(1).getInfo()).containsEntry(BeaconizerServiceImpl.ERROR_CODE_INFO_KEY, "504")
+                                            .containsEntry(BeaconizerServiceImpl.ERROR_MESSAGE_INFO_KEY,
+                                                           "Beacon did not respond within " + DEADLINE + " ms");
+
+        assertThat(beacons.get(2).getId()).isEqualTo("unknown");
+        assertThat(beacons.get(2).getInfo()).containsEntry(BeaconizerServiceImpl.ERROR_CODE_INFO_KEY, "404");
+    }
+
+    @Test
+    public void testListingDoesNotWaitForDeadlineWhenEveryBeaconCompletes() throws Exception {
+        names = Arrays.asList("broken", "unknown");
+        System.setProperty(BeaconizerServiceImpl.BEACONS_TIMEOUT_PROPERTY, "60000");
+
+        long begin = System.nanoTime();
+        List<Beacon> beacons = service.getBeacons();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin)).isLessThan(10000L);
+        assertThat(beacons).hasSize(2);
+        assertThat(beacons.get(0).getInfo()).containsEntry(BeaconizerServiceImpl.ERROR_CODE_INFO_KEY, "503");
+        assertThat(beacons.get(1).getInfo()).containsEntry(BeaconizerServiceImpl.ERROR_CODE_INFO_KEY, "404");
+    }
+
+    @Test
+    public void testEmptyRegistryIsListedWithoutLoading() throws Exception {
+        names = Collections.emptyList();
+
+        assertThat(service.getBeacons()).isEmpty();
+        assertThat(loads).isEmpty();
+    }
+
+    /**
+     * Scheduler which runs the deadlines on a single thread
+     */
+    private static class TestScheduler extends ScheduledThreadPoolExecutor implements ManagedScheduledExecutorService {
+
+        private TestScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
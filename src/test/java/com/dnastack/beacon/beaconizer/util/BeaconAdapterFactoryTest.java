@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.adapters.SyntheticBeaconAdapter;
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of adapter creation: concurrent first requests for a beacon share a single initialization, failed
+ * initializations are retried on the next request, and eager initialization creates every registered adapter up front
+ */
+public class BeaconAdapterFactoryTest {
+
+    private static final ConcurrentMap<String, AtomicInteger> INITS = new ConcurrentHashMap<>();
+    private static final Set<String> FAILING = ConcurrentHashMap.newKeySet();
+    private static volatile CountDownLatch release = new CountDownLatch(0);
+
+    private BeaconExecutor executor;
+    private BeaconAdapterFactory factory;
+
+    /**
+     * Adapter which counts its initializations, and can hold them or make them fail
+     */
+    public static class CountingAdapter extends SyntheticBeaconAdapter {
+
+        @Override
+        public void initAdapter(AdapterConfig adapterConfig) {
+            INITS.computeIfAbsent(adapterConfig.getName(), name -> new AtomicInteger()).incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (FAILING.contains(adapterConfig.getName())) {
+                throw new IllegalStateException("Backend of " + adapterConfig.getName() + " is down");
+            }
+            super.initAdapter(adapterConfig);
+        }
+    }
+
+    private static int inits(String name) {
+        AtomicInteger inits = INITS.get(name);
+        return inits == null ? 0 : inits.get();
+    }
+
+    @Before
+    public void setUp() {
+        INITS.clear();
+        FAILING.clear();
+        release = new CountDownLatch(0);
+
+        executor = new BeaconExecutor();
+        executor.threadFactory = Thread::new;
+        executor.init();
+
+        factory = new BeaconAdapterFactory();
+        factory.beaconExecutor = executor;
+        factory.dao = new BeaconizerDao() {
+
+            @Override
+            public AdapterConfig find(String name) {
+                String config = "{\"name\":\"" + name + "\",\"adapterClass\":\"" + CountingAdapter.class.getName() + "\",\"configValues\":[]}";
+                return new Gson().fromJson(config, AdapterConfig.class);
+            }
+
+            @Override
+            public List<String> listRegisteredBeacons() {
+                return Arrays.asList("first", "second", "third");
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(BeaconAdapterFactory.EAGER_INIT_PROPERTY);
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testConcurrentFirstRequestsShareOneInit() throws Exception {
+        release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BeaconAdapter>> adapters = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                adapters.add(callers.submit(() -> factory.getAdapter("first")));
+            }
+
+            // Give every caller the time to find the initialization in progress
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (inits("first") == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            BeaconAdapter adapter = adapters.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<BeaconAdapter> other : adapters) {
+                assertThat(other.get(10, TimeUnit.SECONDS)).isSameAs(adapter);
+            }
+            assertThat(inits("first")).isEqualTo(1);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedInitIsRetried() throws Exception {
+        FAILING.add("first");
+        try {
+            factory.getAdapter("first");
+            fail("Adapter whose backend is down should not be created");
+        } catch (BeaconException e) {
+            assertThat(e.getMessage()).isEqualTo("Backend of first is down");
+        }
+
+        FAILING.remove("first");
+        BeaconAdapter adapter = factory.getAdapter("first");
+
+        assertThat(factory.getAdapter("first")).isSameAs(adapter);
+        assertThat(inits("first")).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidatedAdapterIsCreatedAgain() throws Exception {
+        BeaconAdapter adapter = factory.getAdapter("first");
+        factory.invalidate("first");
+
+        assertThat(factory.getAdapter("first")).isNotSameAs(adapter);
+        assertThat(inits("first")).isEqualTo(2);
+    }
+
+    @Test
+    public void testEagerInitCreatesEveryAdapter() throws Exception {
+        System.setProperty(BeaconAdapterFactory.EAGER_INIT_PROPERTY, "true");
+        FAILING.add("second");
+
+        factory.init();
+
+        assertThat(inits("first")).isEqualTo(1);
+        assertThat(inits("second")).isEqualTo(1);
+        assertThat(inits("third")).isEqualTo(1);
+
+        // Created adapters are used as they are, failed ones are created again on first use
+        factory.getAdapter("first");
+        factory.getAdapter("third");
+        FAILING.remove("second");
+        factory.getAdapter("second");
+
+        assertThat(inits("first")).isEqualTo(1);
+        assertThat(inits("second")).isEqualTo(2);
+        assertThat(inits("third")).isEqualTo(1);
+    }
+
+    @Test
+    public void testAdaptersAreCreatedLazilyByDefault() {
+        factory.init();
+
+        assertThat(INITS).isEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of running many tasks at once on an executor with two threads and a queue of two tasks
+ */
+public class BeaconExecutorTest {
+
+    private BeaconExecutor executor;
+
+    @Before
+    public void setUp() {
+        System.setProperty(BeaconExecutor.POOL_SIZE_PROPERTY, "2");
+        System.setProperty(BeaconExecutor.QUEUE_SIZE_PROPERTY, "2");
+        executor = new BeaconExecutor();
+        executor.threadFactory = Thread::new;
+        executor.init();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        System.clearProperty(BeaconExecutor.POOL_SIZE_PROPERTY);
+        System.clearProperty(BeaconExecutor.QUEUE_SIZE_PROPERTY);
+    }
+
+    @Test
+    public void testTasksBeyondQueueRunOnCallingThread() throws Exception {
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                Thread.sleep(10);
+                return Thread.currentThread().getName();
+            });
+        }
+
+        List<Future<String>> futures = executor.invokeAll(tasks, 10000L);
+
+        assertThat(futures).hasSize(20);
+        List<String> threads = new ArrayList<>();
+        for (Future<String> future : futures) {
+            threads.add(future.get());
+        }
+        assertThat(threads).contains(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void testTasksStillRunningAtTimeoutAreCancelled() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        tasks.add(() -> true);
+        tasks.add(() -> blocked.await(10, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        List<Future<Boolean>> futures = executor.invokeAll(tasks, 100L);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000L);
+        assertThat(futures.get(0).get()).isTrue();
+        assertThat(futures.get(1).isCancelled()).isTrue();
+    }
+}
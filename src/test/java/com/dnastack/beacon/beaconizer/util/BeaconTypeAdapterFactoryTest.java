@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import org.ga4gh.beacon.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Round-trip tests ensuring the streaming adapters produce the same JSON as Gson's reflective adapters
+ */
+public class BeaconTypeAdapterFactoryTest {
+
+    private final Gson reflective = new GsonBuilder().create();
+
+    private final Gson streaming = new GsonBuilder().registerTypeAdapterFactory(new BeaconTypeAdapterFactory()).create();
+
+    private static BeaconAlleleRequest alleleRequest() {
+        BeaconAlleleRequest request = new BeaconAlleleRequest();
+        request.setReferenceName("1");
+        request.setStart(10000L);
+        request.setReferenceBases("A");
+        request.setAlternateBases("C");
+        request.setAssemblyId("grch37");
+        request.setDatasetIds(Arrays.asList("sample-1", "sample-2"));
+        request.setIncludeDatasetResponses(true);
+        return request;
+    }
+
+    private static BeaconAlleleResponse alleleResponse(int datasets) {
+        Map<String, String> info = new LinkedHashMap<>();
+        info.put("source", "test");
+        info.put("note \"quoted\"", "<html>&</html>");
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId("beacon_id");
+        response.setExists(true);
+        response.setAlleleRequest(alleleRequest());
+        response.setDatasetAlleleResponses(new ArrayList<>());
+        for (int i = 0; i < datasets; i++) {
+            BeaconDatasetAlleleResponse datasetResponse = new BeaconDatasetAlleleResponse();
+            datasetResponse.setDatasetId("sample-" + i);
+            datasetResponse.setExists(i % 2 == 0);
+            datasetResponse.setFrequency(0.5 / (i + 1));
+            datasetResponse.setVariantCount((long) i);
+            datasetResponse.setCallCount(2L * i);
+            datasetResponse.setSampleCount(3L * i);
+            datasetResponse.setNote("note " + i);
+            datasetResponse.setInfo(info);
+            response.getDatasetAlleleResponses().add(datasetResponse);
+        }
+        return response;
+    }
+
+    private static Beacon beacon() {
+        BeaconOrganization organization = new BeaconOrganization();
+        organization.setId("org");
+        organization.setName("Organization");
+
+        BeaconDataset dataset = new BeaconDataset();
+        dataset.setId("sample-1");
+        dataset.setName("Sample 1");
+        dataset.setAssemblyId("grch37");
+        dataset.setCreateDateTime("2016-01-01");
+        dataset.setUpdateDateTime("2016-01-02");
+        dataset.setVariantCount(100L);
+        dataset.setInfo(Collections.singletonMap("key", "value"));
+
+        Beacon beacon = new Beacon();
+        beacon.setId("beacon_id");
+        beacon.setName("Beacon");
+        beacon.setApiVersion("0.3.0");
+        beacon.setOrganization(organization);
+        beacon.setDescription("A é 😀 beacon");
+        beacon.setDatasets(Collections.singletonList(dataset));
+        beacon.setSampleAlleleRequests(Collections.singletonList(alleleRequest()));
+        beacon.setInfo(Collections.emptyMap());
+        return beacon;
+    }
+
+    private <T> void assertRoundTrip(T value, Class<T> type) {
+        String expected = reflective.toJson(value, type);
+
+        assertThat(streaming.toJson(value, type)).isEqualTo(expected);
+        assertThat(streaming.toJson(streaming.fromJson(expected, type), type)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testAlleleRequest() {
+        assertRoundTrip(alleleRequest(), BeaconAlleleRequest.class);
+    }
+
+    @Test
+    public void testAlleleRequestWithMissingFields() {
+        BeaconAlleleRequest request = alleleRequest();
+        request.setDatasetIds(null);
+        request.setIncludeDatasetResponses(null);
+        assertRoundTrip(request, BeaconAlleleRequest.class);
+    }
+
+    @Test
+    public void testAlleleResponse() {
+        assertRoundTrip(alleleResponse(20), BeaconAlleleResponse.class);
+    }
+
+    @Test
+    public void testErrorResponse() {
+        BeaconError error = new BeaconError();
+        error.setErrorCode(400);
+        error.setMessage("Reference bases cannot be null");
+
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId("beacon_id");
+        response.setError(error);
+        response.setAlleleRequest(alleleRequest());
+        assertRoundTrip(response, BeaconAlleleResponse.class);
+        assertRoundTrip(error, BeaconError.class);
+    }
+
+    @Test
+    public void testBeacon() {
+        assertRoundTrip(beacon(), Beacon.class);
+    }
+
+    @Test
+    public void testUnknownFieldsAreIgnored() {
+        BeaconAlleleRequest request = streaming.fromJson(
+                "{\"referenceName\":\"1\",\"unknown\":{\"nested\":[1,2]},\"start\":5,\"datasetIds\":null}",
+                BeaconAlleleRequest.class);
+
+        assertThat(request.getReferenceName()).isEqualTo("1");
+        assertThat(request.getStart()).isEqualTo(5L);
+    }
+
+    @Test
+    public void testMalformedNumberIsSyntaxError() {
+        for (String json : new String[]{"{\"start\":\"many\"}", "{\"error\":{\"errorCode\":\"bad\"}}"}) {
+            try {
+                streaming.fromJson(json, json.contains("error") ? BeaconAlleleResponse.class : BeaconAlleleRequest.class);
+                fail("Malformed number in " + json);
+            } catch (JsonSyntaxException e) {
+                assertThat(e.getCause()).isInstanceOf(NumberFormatException.class);
+            }
+        }
+    }
+}
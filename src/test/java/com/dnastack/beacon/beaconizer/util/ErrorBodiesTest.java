@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import org.ga4gh.beacon.BeaconAlleleResponse;
+import org.ga4gh.beacon.BeaconError;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that pre-rendered error bodies are the JSON Gson would write, and that only a bounded number of them is kept
+ */
+public class ErrorBodiesTest {
+
+    private static BeaconError error(int status, String message) {
+        BeaconError error = new BeaconError();
+        error.setErrorCode(status);
+        error.setMessage(message);
+        return error;
+    }
+
+    @Test
+    public void testErrorIsRenderedOnce() {
+        byte[] body = ErrorBodies.error(400, "Reference cannot be null");
+
+        assertThat(body).isEqualTo(JsonUtils.toJsonBytes(error(400, "Reference cannot be null")));
+        assertThat(ErrorBodies.error(400, "Reference cannot be null")).isSameAs(body);
+        assertThat(ErrorBodies.error(404, "Reference cannot be null")).isNotEqualTo(body);
+    }
+
+    @Test
+    public void testAlleleErrorMatchesGson() {
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setBeaconId("quoted \"beacon\" é");
+        response.setError(error(400, "Start position cannot be null"));
+
+        assertThat(ErrorBodies.alleleError("quoted \"beacon\" é", 400, "Start position cannot be null"))
+                .isEqualTo(JsonUtils.toJsonBytes(response));
+    }
+
+    @Test
+    public void testAlleleErrorWithoutBeaconId() {
+        BeaconAlleleResponse response = new BeaconAlleleResponse();
+        response.setError(error(404, "Beacon not found"));
+
+        assertThat(ErrorBodies.alleleError(null, 404, "Beacon not found")).isEqualTo(JsonUtils.toJsonBytes(response));
+    }
+
+    @Test
+    public void testVaryingMessagesAreNotKept() {
+        for (int i = 0; i < 1000; i++) {
+            ErrorBodies.error(500, UUID.randomUUID().toString());
+        }
+
+        String message = UUID.randomUUID().toString();
+        byte[] body = ErrorBodies.error(500, message);
+
+        assertThat(body).isEqualTo(JsonUtils.toJsonBytes(error(500, message)));
+        assertThat(ErrorBodies.error(500, message)).isNotSameAs(body);
+    }
+}
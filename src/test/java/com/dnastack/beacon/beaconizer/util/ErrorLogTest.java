@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.exceptions.BeaconException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.Trigger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that recorded errors are only counted, and written as one line per kind of error when the log is flushed
+ */
+public class ErrorLogTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ErrorLog.class.getName());
+
+    private final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+
+    private final Handler handler = new Handler() {
+
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private TestScheduler scheduler;
+    private ErrorLog errorLog;
+
+    private List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        synchronized (records) {
+            for (LogRecord record : records) {
+                messages.add(record.getLevel() + " " + record.getMessage());
+            }
+            records.clear();
+        }
+        Collections.sort(messages);
+        return messages;
+    }
+
+    @Before
+    public void setUp() {
+        LOGGER.addHandler(handler);
+        scheduler = new TestScheduler();
+        errorLog = new ErrorLog();
+        errorLog.scheduler = scheduler;
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ErrorLog.INTERVAL_PROPERTY);
+        LOGGER.removeHandler(handler);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testErrorsAreSummarizedPerKind() {
+        errorLog.init();
+        assertThat(scheduler.delay).isEqualTo(10000L);
+
+        for (int i = 0; i < 100; i++) {
+            errorLog.record(400, new BeaconException("Reference cannot be null " + i));
+        }
+        errorLog.record(503, "Service Unavailable", "Request did not complete within 60000 ms");
+        assertThat(records).isEmpty();
+
+        scheduler.flush.run();
+
+        assertThat(messages()).containsExactly("INFO 100 x 400 BeaconException in the last 10000 ms, e.g. Reference cannot be null 0",
+                                               "WARNING 1 x 503 Service Unavailable in the last 10000 ms, e.g. Request did not complete within 60000 ms");
+    }
+
+    @Test
+    public void testFlushOnlyWritesNewErrors() {
+        errorLog.init();
+        errorLog.record(400, "Bad Request", "first");
+        scheduler.flush.run();
+        messages();
+
+        scheduler.flush.run();
+        assertThat(messages()).isEmpty();
+
+        errorLog.record(400, "Bad Request", "second");
+        scheduler.flush.run();
+        assertThat(messages()).containsExactly("INFO 1 x 400 Bad Request in the last 10000 ms, e.g. second");
+    }
+
+    @Test
+    public void testShutdownWritesPendingErrors() {
+        errorLog.init();
+        errorLog.record(500, "Internal Server Error", "Adapter failed");
+
+        errorLog.shutdown();
+
+        assertThat(scheduler.task.isCancelled()).isTrue();
+        assertThat(messages()).containsExactly("WARNING 1 x 500 Internal Server Error in the last 10000 ms, e.g. Adapter failed");
+    }
+
+    @Test
+    public void testDisabledLogRecordsNothing() {
+        System.setProperty(ErrorLog.INTERVAL_PROPERTY, "0");
+        errorLog.init();
+        errorLog.record(500, new BeaconException("Adapter failed"));
+
+        errorLog.flush();
+        errorLog.shutdown();
+
+        assertThat(scheduler.flush).isNull();
+        assertThat(records).isEmpty();
+    }
+
+    /**
+     * Scheduler which keeps the flush task for the test to run
+     */
+    private static class TestScheduler extends ScheduledThreadPoolExecutor implements ManagedScheduledExecutorService {
+
+        private Runnable flush;
+        private long delay;
+        private ScheduledFuture<?> task;
+
+        private TestScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            this.flush = command;
+            this.delay = unit.toMillis(delay);
+            this.task = schedule(() -> {
+            }, 1, TimeUnit.DAYS);
+            return task;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, Trigger trigger) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import org.ga4gh.beacon.BeaconAlleleRequest;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests of reading requests from JSON arrays and newline delimited JSON, including null and malformed requests
+ */
+public class JsonStreamIteratorTest {
+
+    private static final String REQUEST = "{\"referenceName\":\"1\",\"start\":%d,\"referenceBases\":\"A\",\"alternateBases\":\"C\",\"assemblyId\":\"grch37\"}";
+
+    private static String request(long start) {
+        return String.format(REQUEST, start);
+    }
+
+    private static JsonStreamIterator<BeaconAlleleRequest> iterator(String json) {
+        return new JsonStreamIterator<>(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), BeaconAlleleRequest.class);
+    }
+
+    /**
+     * Read every element, recording malformed ones as the string "malformed" and null ones as "null"
+     */
+    private static List<Object> readAll(JsonStreamIterator<BeaconAlleleRequest> iterator) {
+        List<Object> read = new ArrayList<>();
+        while (iterator.hasNext()) {
+            try {
+                BeaconAlleleRequest request = iterator.next();
+                read.add(request == null ? "null" : request.getStart());
+            } catch (JsonParseException e) {
+                read.add("malformed");
+            }
+        }
+        return read;
+    }
+
+    @Test
+    public void testArray() {
+        assertThat(readAll(iterator(" \n[" + request(1) + ", " + request(2) + "]"))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testNdjson() {
+        assertThat(readAll(iterator(request(1) + "\n\n" + request(2) + "\r\n"))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testEmptyInput() {
+        assertThat(readAll(iterator(""))).isEmpty();
+        assertThat(readAll(iterator("[]"))).isEmpty();
+    }
+
+    @Test
+    public void testNullElements() {
+        assertThat(readAll(iterator("[" + request(1) + ", null, " + request(3) + "]"))).containsExactly(1L, "null", 3L);
+        assertThat(readAll(iterator(request(1) + "\nnull\n" + request(3)))).containsExactly(1L, "null", 3L);
+    }
+
+    @Test
+    public void testMalformedLineOnlyAffectsItself() {
+        String ndjson = request(1) + "\n{\"referenceName\": \n" + request(3) + "\n{\"start\": \"many\"}\n" + request(5);
+
+        assertThat(readAll(iterator(ndjson))).containsExactly(1L, "malformed", 3L, "malformed", 5L);
+    }
+
+    @Test
+    public void testMalformedElementEndsArray() {
+        String array = "[" + request(1) + ", {\"start\": \"many\"}, " + request(3) + "]";
+
+        assertThat(readAll(iterator(array))).containsExactly(1L, "malformed");
+    }
+
+    @Test
+    public void testNextAfterEnd() {
+        JsonStreamIterator<BeaconAlleleRequest> iterator = iterator(request(1));
+        iterator.next();
+
+        try {
+            iterator.next();
+            fail("The stream has ended");
+        } catch (NoSuchElementException e) {
+            assertThat(iterator.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void testUnreadableStream() {
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        JsonStreamIterator<BeaconAlleleRequest> iterator = new JsonStreamIterator<>(broken, BeaconAlleleRequest.class);
+
+        try {
+            iterator.hasNext();
+            fail("The stream cannot be read");
+        } catch (JsonIOException e) {
+            assertThat(iterator.hasNext()).isFalse();
+        }
+    }
+}
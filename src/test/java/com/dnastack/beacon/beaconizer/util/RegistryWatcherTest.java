@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Patrick Magee (patrickmageee@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.dnastack.beacon.beaconizer.util;
+
+import com.dnastack.beacon.adapter.api.BeaconAdapter;
+import com.dnastack.beacon.beaconizer.cache.AlleleResponseCache;
+import com.dnastack.beacon.beaconizer.cache.BeaconMetadataCache;
+import com.dnastack.beacon.beaconizer.dao.api.BeaconizerDao;
+import com.dnastack.beacon.beaconizer.resilience.AdapterInvoker;
+import com.dnastack.beacon.exceptions.BeaconException;
+import com.dnastack.beacon.utils.AdapterConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that a reload drops the adapter, cached responses and metadata, and limit state of the beacons which changed,
+ * and of no other beacon
+ */
+public class RegistryWatcherTest {
+
+    private final List<String> invalidated = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> created = Collections.synchronizedList(new ArrayList<>());
+
+    private Set<String> changed = Collections.emptySet();
+    private BeaconException failure;
+
+    private RegistryWatcher watcher;
+
+    @Before
+    public void setUp() {
+        watcher = new RegistryWatcher();
+        watcher.dao = new BeaconizerDao() {
+
+            @Override
+            public AdapterConfig find(String name) {
+                return null;
+            }
+
+            @Override
+            public List<String> listRegisteredBeacons() {
+                return Arrays.asList("sample", "other", "another");
+            }
+
+            @Override
+            public Set<String> reload() throws BeaconException {
+                if (failure != null) {
+                    throw failure;
+                }
+                return changed;
+            }
+        };
+        watcher.alleleResponseCache = new AlleleResponseCache() {
+
+            @Override
+            public void invalidateAll(Set<String> beaconNames) {
+                for (String name : beaconNames) {
+                    invalidated.add("responses:" + name);
+                }
+            }
+        };
+        watcher.beaconMetadataCache = new BeaconMetadataCache() {
+
+            @Override
+            public void invalidate(String name) {
+                invalidated.add("metadata:" + name);
+            }
+        };
+        watcher.adapterInvoker = new AdapterInvoker() {
+
+            @Override
+            public void invalidate(String name) {
+                invalidated.add("limits:" + name);
+            }
+        };
+        watcher.beaconAdapterFactory = new BeaconAdapterFactory() {
+
+            @Override
+            public void invalidate(String name) {
+                invalidated.add("adapter:" + name);
+            }
+
+            @Override
+            public BeaconAdapter getAdapter(String name) {
+                created.add(name);
+                return null;
+            }
+        };
+        watcher.beaconExecutor = new BeaconExecutor() {
+
+            @Override
+            public void executeOrRun(Runnable task) {
+                task.run();
+            }
+        };
+    }
+
+    @Test
+    public void testOnlyChangedBeaconsAreInvalidated() {
+        changed = new HashSet<>(Arrays.asList("sample", "removed"));
+
+        watcher.reload();
+
+        assertThat(invalidated).containsOnly("responses:sample",
+                                             "responses:removed",
+                                             "metadata:sample",
+                                             "metadata:removed",
+                                             "limits:sample",
+                                             "limits:removed",
+                                             "adapter:sample",
+                                             "adapter:removed");
+        assertThat(created).containsOnly("sample", "removed");
+    }
+
+    @Test
+    public void testUnchangedRegistryInvalidatesNothing() {
+        watcher.reload();
+
+        assertThat(invalidated).isEmpty();
+        assertThat(created).isEmpty();
+    }
+
+    @Test
+    public void testFailedReloadInvalidatesNothing() {
+        changed = Collections.singleton("sample");
+        failure = new BeaconException("Beacon sample is defined more than once");
+
+        watcher.reload();
+
+        assertThat(invalidated).isEmpty();
+        assertThat(created).isEmpty();
+    }
+}